@@ -0,0 +1,160 @@
+package org.bukkit.command;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable radix tree of lowercase command labels, which finds the label
+ * matching part of a command line while ignoring case. Labels have to be
+ * lowercased with {@link #toLowerCase(String)} to be found.
+ * <p>
+ * Lookups compare a character at a time, lowercasing as they go, so they
+ * neither copy nor lowercase the command line.
+ */
+final class CommandLabelTree {
+    private static final char[] NO_CHARS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root;
+
+    /**
+     * Builds a tree of the given labels
+     *
+     * @param labels the lowercase labels
+     */
+    CommandLabelTree(Collection<String> labels) {
+        List<String> sorted = new ArrayList<String>(labels);
+        Collections.sort(sorted);
+        root = build(sorted, 0, sorted.size(), 0, NO_CHARS);
+    }
+
+    /**
+     * Finds the label equal to part of a string, ignoring case
+     *
+     * @param line the string containing the label
+     * @param start the index of the first character of the label
+     * @param end the index after the last character of the label
+     * @return the matching lowercase label, or null if there is none
+     */
+    String find(String line, int start, int end) {
+        Node node = root;
+        int pos = start;
+
+        while (pos < end) {
+            node = node.child(Character.toLowerCase(line.charAt(pos)));
+            if (node == null) {
+                return null;
+            }
+
+            char[] chars = node.chars;
+            if (end - pos < chars.length) {
+                return null;
+            }
+            // The first character was matched when choosing the child
+            for (int i = 1; i < chars.length; i++) {
+                if (Character.toLowerCase(line.charAt(pos + i)) != chars[i]) {
+                    return null;
+                }
+            }
+            pos += chars.length;
+        }
+
+        return node.label;
+    }
+
+    /**
+     * Lowercases a label a character at a time, in the same way labels are
+     * compared when looked up, so the result does not depend on the
+     * default locale
+     *
+     * @param label the label
+     * @return the lowercase label
+     */
+    static String toLowerCase(String label) {
+        int length = label.length();
+        for (int i = 0; i < length; i++) {
+            char c = label.charAt(i);
+            if (Character.toLowerCase(c) != c) {
+                char[] chars = label.toCharArray();
+                for (int j = i; j < length; j++) {
+                    chars[j] = Character.toLowerCase(chars[j]);
+                }
+                return new String(chars);
+            }
+        }
+        return label;
+    }
+
+    /**
+     * Builds the node for the labels from index {@code from} to {@code to},
+     * which all share their first {@code depth} characters
+     */
+    private static Node build(List<String> labels, int from, int to, int depth, char[] chars) {
+        String label = null;
+        if (from < to && labels.get(from).length() == depth) {
+            label = labels.get(from);
+            from++;
+        }
+
+        List<Node> children = new ArrayList<Node>();
+        int groupStart = from;
+        while (groupStart < to) {
+            char first = labels.get(groupStart).charAt(depth);
+            int groupEnd = groupStart + 1;
+            while (groupEnd < to && labels.get(groupEnd).charAt(depth) == first) {
+                groupEnd++;
+            }
+
+            // Sorted, so the first and last labels of a group share the
+            // prefix all of them share
+            String low = labels.get(groupStart);
+            String high = labels.get(groupEnd - 1);
+            int prefix = depth + 1;
+            while (prefix < low.length() && prefix < high.length() && low.charAt(prefix) == high.charAt(prefix)) {
+                prefix++;
+            }
+
+            children.add(build(labels, groupStart, groupEnd, prefix, low.substring(depth, prefix).toCharArray()));
+            groupStart = groupEnd;
+        }
+
+        return new Node(chars, label, children.isEmpty() ? NO_CHILDREN : children.toArray(new Node[children.size()]));
+    }
+
+    private static final class Node {
+        private final char[] chars;
+        private final String label;
+        private final Node[] children;
+        // The first character of each child, in ascending order
+        private final char[] firsts;
+
+        private Node(char[] chars, String label, Node[] children) {
+            this.chars = chars;
+            this.label = label;
+            this.children = children;
+            this.firsts = new char[children.length];
+            for (int i = 0; i < children.length; i++) {
+                firsts[i] = children[i].chars[0];
+            }
+        }
+
+        private Node child(char c) {
+            int low = 0;
+            int high = firsts.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char midChar = firsts[mid];
+                if (midChar < c) {
+                    low = mid + 1;
+                } else if (midChar > c) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+    }
+}
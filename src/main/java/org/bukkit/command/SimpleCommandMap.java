@@ -1,7 +1,5 @@
 package org.bukkit.command;
 
-import static org.bukkit.util.Java15Compat.Arrays_copyOfRange;
-
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -25,6 +23,9 @@ public class SimpleCommandMap implements CommandMap {
     protected final Set<String> aliases = new HashSet<String>();
     private final Server server;
     protected static final Set<VanillaCommand> fallbackCommands = new HashSet<VanillaCommand>();
+    private static final String[] NO_ARGS = new String[0];
+    // The labels of knownCommands, rebuilt on first use after a change
+    private volatile CommandLabelTree labelTree = null;
 
     static {
         fallbackCommands.add(new ListCommand());
@@ -77,6 +78,7 @@ public class SimpleCommandMap implements CommandMap {
         register("bukkit", new ReloadCommand("reload"));
         register("bukkit", new PluginsCommand("plugins"));
         register("bukkit", new TimingsCommand("timings"));
+        register("bukkit", new PermissionProfileCommand("permprofile"));
     }
 
     /**
@@ -131,7 +133,7 @@ public class SimpleCommandMap implements CommandMap {
      *     unique name for the command
      */
     private synchronized boolean register(String label, String fallbackPrefix, Command command, boolean isAlias) {
-        String lowerLabel = label.trim().toLowerCase();
+        String lowerLabel = CommandLabelTree.toLowerCase(label.trim());
 
         if (isAlias && knownCommands.containsKey(lowerLabel)) {
             // Request is for an alias and it conflicts with a existing command or previous alias ignore it
@@ -139,7 +141,7 @@ public class SimpleCommandMap implements CommandMap {
             return false;
         }
 
-        String lowerPrefix = fallbackPrefix.trim().toLowerCase();
+        String lowerPrefix = CommandLabelTree.toLowerCase(fallbackPrefix.trim());
         boolean registerdPassedLabel = true;
 
         // If the command exists but is an alias we overwrite it, otherwise we rename it based on the fallbackPrefix
@@ -156,6 +158,7 @@ public class SimpleCommandMap implements CommandMap {
             command.setLabel(lowerLabel);
         }
         knownCommands.put(lowerLabel, command);
+        labelTree = null;
 
         return registerdPassedLabel;
     }
@@ -176,24 +179,73 @@ public class SimpleCommandMap implements CommandMap {
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Implementation note: the command line is split on single spaces in
+     * one pass, the same way as {@code commandLine.split(" ")}, and the label
+     * of a registered command is found without lowercasing it.
      */
     public boolean dispatch(CommandSender sender, String commandLine) throws CommandException {
-        String[] args = PATTERN_ON_SPACE.split(commandLine);
+        // Trailing spaces are dropped, as String.split drops trailing empty strings
+        int end = commandLine.length();
+        while (end > 0 && commandLine.charAt(end - 1) == ' ') {
+            end--;
+        }
 
-        if (args.length == 0) {
+        if (end == 0) {
             return false;
         }
 
-        String sentCommandLabel = args[0].toLowerCase();
-        Command target = getCommand(sentCommandLabel);
+        int labelEnd = commandLine.indexOf(' ');
+        if (labelEnd == -1 || labelEnd > end) {
+            labelEnd = end;
+        }
+
+        CommandLabelTree tree = getLabelTree();
+        String sentCommandLabel = tree.find(commandLine, 0, labelEnd);
+        Command target = sentCommandLabel == null ? null : knownCommands.get(sentCommandLabel);
 
         if (target == null) {
-            return false;
+            if (sentCommandLabel != null) {
+                // Removed from knownCommands directly
+                invalidate(tree);
+            }
+
+            sentCommandLabel = CommandLabelTree.toLowerCase(commandLine.substring(0, labelEnd));
+            target = getCommand(sentCommandLabel);
+
+            if (target == null) {
+                return false;
+            }
+            if (knownCommands.containsKey(sentCommandLabel)) {
+                // Added to knownCommands directly, after the tree was built
+                invalidate(tree);
+            }
+        }
+
+        String[] args = NO_ARGS;
+        if (labelEnd < end) {
+            int count = 0;
+            for (int i = labelEnd; i < end; i++) {
+                if (commandLine.charAt(i) == ' ') {
+                    count++;
+                }
+            }
+
+            args = new String[count];
+            int start = labelEnd + 1;
+            for (int i = 0; i < count; i++) {
+                int next = commandLine.indexOf(' ', start);
+                if (next == -1 || next > end) {
+                    next = end;
+                }
+                args[i] = commandLine.substring(start, next);
+                start = next + 1;
+            }
         }
 
         try {
             // Note: we don't return the result of target.execute as thats success / failure, we return handled (true) or not handled (false)
-            target.execute(sender, sentCommandLabel, Arrays_copyOfRange(args, 1, args.length));
+            target.execute(sender, sentCommandLabel, args);
         } catch (CommandException ex) {
             throw ex;
         } catch (Throwable ex) {
@@ -210,11 +262,36 @@ public class SimpleCommandMap implements CommandMap {
         }
         knownCommands.clear();
         aliases.clear();
+        labelTree = null;
         setDefaultCommands(server);
     }
 
+    private CommandLabelTree getLabelTree() {
+        CommandLabelTree tree = labelTree;
+        if (tree == null) {
+            synchronized (this) {
+                tree = labelTree;
+                if (tree == null) {
+                    tree = new CommandLabelTree(knownCommands.keySet());
+                    labelTree = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Drops a label tree found to be outdated, unless it was already
+     * replaced by a newer one
+     */
+    private synchronized void invalidate(CommandLabelTree tree) {
+        if (labelTree == tree) {
+            labelTree = null;
+        }
+    }
+
     public Command getCommand(String name) {
-        Command target = knownCommands.get(name.toLowerCase());
+        Command target = knownCommands.get(CommandLabelTree.toLowerCase(name));
         if (target == null) {
             target = getFallback(name);
         }
@@ -320,10 +397,12 @@ public class SimpleCommandMap implements CommandMap {
             // We register these as commands so they have absolute priority.
 
             if (targets.size() > 0) {
-                knownCommands.put(alias.toLowerCase(), new MultipleCommandAlias(alias.toLowerCase(), targets.toArray(new Command[0])));
+                String lowerAlias = CommandLabelTree.toLowerCase(alias);
+                knownCommands.put(lowerAlias, new MultipleCommandAlias(lowerAlias, targets.toArray(new Command[0])));
             } else {
-                knownCommands.remove(alias.toLowerCase());
+                knownCommands.remove(CommandLabelTree.toLowerCase(alias));
             }
+            labelTree = null;
 
             if (bad.length() > 0) {
                 server.getLogger().warning("The following command(s) could not be aliased under '" + alias + "' because they do not exist: " + bad);
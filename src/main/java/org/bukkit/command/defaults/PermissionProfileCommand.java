@@ -0,0 +1,88 @@
+package org.bukkit.command.defaults;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.permissions.PermissionProfiler;
+import org.bukkit.util.StringUtil;
+
+import com.google.common.collect.ImmutableList;
+
+public class PermissionProfileCommand extends BukkitCommand {
+    private static final List<String> PROFILE_SUBCOMMANDS = ImmutableList.of("off", "on", "report", "reset");
+    private static final int REPORT_LIMIT = 50;
+    private static final int SUMMARY_LIMIT = 5;
+
+    public PermissionProfileCommand(String name) {
+        super(name);
+        this.description = "Profiles permission checks to find permission-heavy plugins";
+        this.usageMessage = "/permprofile <on|off|reset|report>";
+        this.setPermission("bukkit.command.permprofile");
+    }
+
+    @Override
+    public boolean execute(CommandSender sender, String currentAlias, String[] args) {
+        if (!testPermission(sender)) return true;
+        if (args.length != 1)  {
+            sender.sendMessage(ChatColor.RED + "Usage: " + usageMessage);
+            return false;
+        }
+
+        if ("on".equals(args[0])) {
+            PermissionProfiler.setEnabled(true);
+            sender.sendMessage("Permission profiling enabled");
+        } else if ("off".equals(args[0])) {
+            PermissionProfiler.setEnabled(false);
+            sender.sendMessage("Permission profiling disabled");
+        } else if ("reset".equals(args[0])) {
+            PermissionProfiler.reset();
+            sender.sendMessage("Permission profile reset");
+        } else if ("report".equals(args[0])) {
+            PermissionProfiler.Report report = PermissionProfiler.getReport();
+            File timingFolder = new File("timings");
+            timingFolder.mkdirs();
+            int index = 0;
+            File permissions = new File(timingFolder, "permissions.txt");
+            while (permissions.exists()) permissions = new File(timingFolder, "permissions" + (++index) + ".txt");
+            PrintStream filePermissions = null;
+            try {
+                filePermissions = new PrintStream(permissions);
+                report.write(filePermissions, REPORT_LIMIT);
+                sender.sendMessage("Permission profile written to " + permissions.getPath());
+            } catch (IOException e) {
+            } finally {
+                if (filePermissions != null) {
+                    filePermissions.close();
+                }
+            }
+
+            sender.sendMessage("Permission checks: " + report.getChecks());
+            for (Map.Entry<String, Long> entry : report.getTopPlugins(SUMMARY_LIMIT)) {
+                sender.sendMessage("    " + entry.getKey() + ": " + entry.getValue());
+            }
+        } else {
+            sender.sendMessage(ChatColor.RED + "Usage: " + usageMessage);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public List<String> tabComplete(CommandSender sender, String alias, String[] args) {
+        Validate.notNull(sender, "Sender cannot be null");
+        Validate.notNull(args, "Arguments cannot be null");
+        Validate.notNull(alias, "Alias cannot be null");
+
+        if (args.length == 1) {
+            return StringUtil.copyPartialMatches(args[0], PROFILE_SUBCOMMANDS, new ArrayList<String>(PROFILE_SUBCOMMANDS.size()));
+        }
+        return ImmutableList.of();
+    }
+}
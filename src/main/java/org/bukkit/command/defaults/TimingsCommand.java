@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
@@ -12,6 +13,7 @@ import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.event.Event;
 import org.bukkit.event.HandlerList;
+import org.bukkit.plugin.LatencyHistogram;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.RegisteredListener;
 import org.bukkit.plugin.TimedRegisteredListener;
@@ -20,12 +22,12 @@ import org.bukkit.util.StringUtil;
 import com.google.common.collect.ImmutableList;
 
 public class TimingsCommand extends BukkitCommand {
-    private static final List<String> TIMINGS_SUBCOMMANDS = ImmutableList.of("merged", "reset", "separate");
+    private static final List<String> TIMINGS_SUBCOMMANDS = ImmutableList.of("histograms", "merged", "reset", "separate");
 
     public TimingsCommand(String name) {
         super(name);
         this.description = "Records timings for all plugin events";
-        this.usageMessage = "/timings <reset|merged|separate>";
+        this.usageMessage = "/timings <reset|merged|separate|histograms>";
         this.setPermission("bukkit.command.timings");
     }
 
@@ -51,6 +53,38 @@ public class TimingsCommand extends BukkitCommand {
                 }
             }
             sender.sendMessage("Timings reset");
+        } else if ("histograms".equals(args[0])) {
+            File timingFolder = new File("timings");
+            timingFolder.mkdirs();
+            int index = 0;
+            File histograms = new File(timingFolder, "histograms.txt");
+            while (histograms.exists()) histograms = new File(timingFolder, "histograms" + (++index) + ".txt");
+            PrintStream fileHistograms = null;
+            try {
+                fileHistograms = new PrintStream(histograms);
+                for (Plugin plugin : Bukkit.getPluginManager().getPlugins()) {
+                    fileHistograms.println(plugin.getDescription().getFullName());
+                    for (RegisteredListener listener : HandlerList.getRegisteredListeners(plugin)) {
+                        if (!(listener instanceof TimedRegisteredListener)) continue;
+                        for (Map.Entry<Class<? extends Event>, LatencyHistogram.Snapshot> entry : ((TimedRegisteredListener) listener).getHistograms().entrySet()) {
+                            LatencyHistogram.Snapshot histogram = entry.getValue();
+                            if (histogram.getCount() == 0) continue;
+                            fileHistograms.println("    " + entry.getKey().getSimpleName() + " " + listener.getPriority() + " (" + listener.getListener().getClass().getName() + ")"
+                                    + " Count: " + histogram.getCount()
+                                    + " Avg: " + histogram.getMean()
+                                    + " p50: " + histogram.getPercentile(50)
+                                    + " p99: " + histogram.getPercentile(99)
+                                    + " Max: " + histogram.getMax());
+                        }
+                    }
+                }
+                sender.sendMessage("Timing histograms written to " + histograms.getPath());
+            } catch (IOException e) {
+            } finally {
+                if (fileHistograms != null) {
+                    fileHistograms.close();
+                }
+            }
         } else if ("merged".equals(args[0]) || separate) {
 
             int index = 0;
@@ -0,0 +1,152 @@
+package org.bukkit.configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A path into a {@link MemorySection} or {@link ConfigurationSnapshot} which
+ * has already been split into its segments.
+ * <p>
+ * Looking a value up by String path splits the path again on every call.
+ * Plugins reading the same values repeatedly, for example from event
+ * handlers, may keep a ConfigPath in a constant instead:
+ * <pre>
+ * private static final ConfigPath TAG_SECONDS = ConfigPath.of("settings.combat.tag-seconds");
+ * ...
+ * int seconds = getConfig().getInt(TAG_SECONDS);
+ * </pre>
+ * Segments are used as keys as they are, regardless of the path separator
+ * of the {@link Configuration} they are used with.
+ */
+public final class ConfigPath {
+    private static final String[] EMPTY = new String[0];
+
+    private final String path;
+    private final char separator;
+    private final String[] segments;
+    private final int hash;
+
+    private ConfigPath(String path, char separator, String[] segments) {
+        this.path = path;
+        this.separator = separator;
+        this.segments = segments;
+        this.hash = Arrays.hashCode(segments);
+    }
+
+    /**
+     * Compiles a path using the default separator, '.'
+     *
+     * @param path Path to compile.
+     * @return Compiled path.
+     * @throws IllegalArgumentException Thrown if path is null.
+     */
+    public static ConfigPath of(String path) {
+        return of(path, '.');
+    }
+
+    /**
+     * Compiles a path using the given separator.
+     * <p>
+     * An empty path has no segments and refers to the section it is used
+     * with.
+     *
+     * @param path Path to compile.
+     * @param separator Char separating the segments of the path.
+     * @return Compiled path.
+     * @throws IllegalArgumentException Thrown if path is null.
+     */
+    public static ConfigPath of(String path, char separator) {
+        Validate.notNull(path, "Path cannot be null");
+
+        if (path.length() == 0) {
+            return new ConfigPath(path, separator, EMPTY);
+        }
+
+        List<String> segments = new ArrayList<String>();
+        // i1 is the leading (higher) index
+        // i2 is the trailing (lower) index
+        int i1 = -1, i2;
+        while ((i1 = path.indexOf(separator, i2 = i1 + 1)) != -1) {
+            segments.add(path.substring(i2, i1).intern());
+        }
+        segments.add(path.substring(i2).intern());
+
+        return new ConfigPath(path, separator, segments.toArray(new String[segments.size()]));
+    }
+
+    /**
+     * Gets the number of segments in this path.
+     *
+     * @return Number of segments.
+     */
+    public int size() {
+        return segments.length;
+    }
+
+    /**
+     * Gets a segment of this path.
+     *
+     * @param index Index of the segment, starting at 0.
+     * @return The segment.
+     * @throws ArrayIndexOutOfBoundsException Thrown if index is not below
+     *     {@link #size()}.
+     */
+    public String getSegment(int index) {
+        return segments[index];
+    }
+
+    /**
+     * Gets the separator this path was compiled with.
+     *
+     * @return Path separator.
+     */
+    public char getSeparator() {
+        return separator;
+    }
+
+    /**
+     * Joins the segments of this path with the given separator.
+     *
+     * @param separator Separator to join with.
+     * @return Path as a String.
+     */
+    public String toString(char separator) {
+        if (separator == this.separator) {
+            return path;
+        }
+
+        StringBuilder builder = new StringBuilder(path.length());
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) {
+                builder.append(separator);
+            }
+            builder.append(segments[i]);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ConfigPath)) {
+            return false;
+        }
+        ConfigPath other = (ConfigPath) obj;
+        return hash == other.hash && Arrays.equals(segments, other.segments);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,60 @@
+package org.bukkit.configuration;
+
+/**
+ * A change of a single value of a {@link MemoryConfiguration}.
+ * <p>
+ * Values are recorded as they were set, so a replaced or added {@link
+ * ConfigurationSection} is the live section, not a copy.
+ */
+public final class ConfigurationChange {
+    private final String path;
+    private final Object oldValue;
+    private final Object newValue;
+
+    /**
+     * Creates a change.
+     *
+     * @param path Path of the changed value, from the root {@link
+     *     Configuration}.
+     * @param oldValue Value before the change, or null if there was none.
+     * @param newValue Value after the change, or null if it was removed.
+     */
+    public ConfigurationChange(String path, Object oldValue, Object newValue) {
+        this.path = path;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    /**
+     * Gets the path of the changed value, from the root {@link
+     * Configuration}.
+     *
+     * @return Path of the value.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the value before the change.
+     *
+     * @return Previous value, or null if there was none.
+     */
+    public Object getOldValue() {
+        return oldValue;
+    }
+
+    /**
+     * Gets the value after the change.
+     *
+     * @return New value, or null if the value was removed.
+     */
+    public Object getNewValue() {
+        return newValue;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigurationChange{path=" + path + ", oldValue=" + oldValue + ", newValue=" + newValue + "}";
+    }
+}
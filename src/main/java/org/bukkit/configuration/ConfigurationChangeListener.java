@@ -0,0 +1,15 @@
+package org.bukkit.configuration;
+
+/**
+ * Receives every change of the values of a {@link MemoryConfiguration}.
+ *
+ * @see MemoryConfiguration#addChangeListener(ConfigurationChangeListener)
+ */
+public interface ConfigurationChangeListener {
+    /**
+     * Called after a value was set, replaced or removed.
+     *
+     * @param change The change
+     */
+    public void onChange(ConfigurationChange change);
+}
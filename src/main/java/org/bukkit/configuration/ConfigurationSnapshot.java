@@ -0,0 +1,798 @@
+package org.bukkit.configuration;
+
+import static org.bukkit.util.NumberConversions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.Vector;
+
+/**
+ * An immutable copy of the values of a {@link ConfigurationSection}.
+ * <p>
+ * A snapshot is taken once, for example after a plugin reloads its
+ * configuration, and may then be read from any thread without locking.
+ * Values are resolved against the defaults of the source when the snapshot is
+ * taken. The values of a snapshot and of every section within it are kept
+ * once, in a single table shared with the snapshots of those sections, so a
+ * lookup by path does not split the path or walk nested sections, and a
+ * lookup in a nested snapshot does not join its path to the given one.
+ * Numbers, booleans and the typed lists are converted up front so reading
+ * them does not allocate.
+ * <p>
+ * Lists are copied and cannot be modified. Other objects, such as
+ * {@link ItemStack}s, are shared with every reader of the snapshot and must
+ * not be modified.
+ */
+public final class ConfigurationSnapshot {
+    private final String name;
+    private final String currentPath;
+    private final char separator;
+    // The entries of the root snapshot and every snapshot within it, by path
+    // from the root, shared between all of them
+    private final Map<String, Entry> entries;
+    // The same entries, for lookups
+    private final PathTable lookup;
+    // The path of this snapshot from the root followed by the separator, or
+    // "" for the root, and its hash code
+    private final String prefix;
+    private final int prefixHash;
+    private final Set<String> keys;
+    private volatile Set<String> deepKeys;
+
+    /**
+     * Copies a section, adding its entries, and those of the sections within
+     * it, to the shared table. A nested snapshot adds its own entry first, so
+     * the table lists sections before their contents.
+     */
+    private ConfigurationSnapshot(ConfigurationSection section, char separator, Map<String, Entry> table, Map<String, Entry> entries, PathTable lookup, String path) {
+        this.name = section.getName();
+        this.currentPath = section.getCurrentPath();
+        this.separator = separator;
+        this.entries = entries;
+        this.lookup = lookup;
+        this.prefix = path == null ? "" : path + separator;
+        this.prefixHash = prefix.hashCode();
+        if (path != null) {
+            table.put(path, new Entry(this));
+        }
+
+        Set<String> sectionKeys = new LinkedHashSet<String>(section.getKeys(false));
+        ConfigurationSection defaults = section.getDefaultSection();
+        if (defaults != null) {
+            sectionKeys.addAll(defaults.getKeys(false));
+        }
+
+        Set<String> direct = new LinkedHashSet<String>();
+        for (String key : sectionKeys) {
+            Object value = section.get(key);
+            if (value == null) {
+                continue;
+            }
+
+            direct.add(key);
+
+            if (value instanceof ConfigurationSection) {
+                new ConfigurationSnapshot((ConfigurationSection) value, separator, table, entries, lookup, prefix + key);
+            } else if (value instanceof List) {
+                table.put(prefix + key, new Entry(section, key, (List<?>) value));
+            } else {
+                table.put(prefix + key, new Entry(copy(value)));
+            }
+        }
+
+        this.keys = Collections.unmodifiableSet(direct);
+        this.deepKeys = path == null ? entries.keySet() : null;
+        if (path == null) {
+            // Every nested snapshot added its entries by now
+            lookup.fill(table);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the given section, including any values it only
+     * has as defaults.
+     *
+     * @param section Section to copy.
+     * @return Snapshot of the section.
+     * @throws IllegalArgumentException Thrown if section is null.
+     */
+    public static ConfigurationSnapshot of(ConfigurationSection section) {
+        Validate.notNull(section, "Section cannot be null");
+
+        Configuration root = section.getRoot();
+        char separator = root == null ? '.' : root.options().pathSeparator();
+        Map<String, Entry> table = new LinkedHashMap<String, Entry>();
+        return new ConfigurationSnapshot(section, separator, table, Collections.unmodifiableMap(table), new PathTable(), null);
+    }
+
+    private static Object copy(Object value) {
+        if (value instanceof ItemStack) {
+            return ((ItemStack) value).clone();
+        }
+        if (value instanceof Vector) {
+            return ((Vector) value).clone();
+        }
+        return value;
+    }
+
+    /**
+     * Gets the name of the section this snapshot was taken of.
+     *
+     * @return Name of the section.
+     * @see ConfigurationSection#getName()
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the path of the section this snapshot was taken of, from its root
+     * {@link Configuration}.
+     *
+     * @return Path of the section.
+     * @see ConfigurationSection#getCurrentPath()
+     */
+    public String getCurrentPath() {
+        return currentPath;
+    }
+
+    /**
+     * Gets the char separating the segments of paths in this snapshot.
+     *
+     * @return Path separator.
+     */
+    public char getPathSeparator() {
+        return separator;
+    }
+
+    /**
+     * Gets the keys of this snapshot.
+     *
+     * @param deep Whether or not to include the paths of nested sections.
+     * @return Unmodifiable set of keys.
+     */
+    public Set<String> getKeys(boolean deep) {
+        if (!deep) {
+            return keys;
+        }
+
+        Set<String> result = deepKeys;
+        if (result == null) {
+            // Only nested snapshots have to pick their paths out of the table
+            Set<String> paths = new LinkedHashSet<String>();
+            for (String path : entries.keySet()) {
+                if (path.startsWith(prefix)) {
+                    paths.add(path.substring(prefix.length()));
+                }
+            }
+            deepKeys = result = Collections.unmodifiableSet(paths);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the values of this snapshot.
+     * <p>
+     * Nested sections are returned as {@link ConfigurationSnapshot}s.
+     *
+     * @param deep Whether or not to include the paths of nested sections.
+     * @return Map of keys and values.
+     */
+    public Map<String, Object> getValues(boolean deep) {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        for (String key : getKeys(deep)) {
+            result.put(key, entry(key).value);
+        }
+        return result;
+    }
+
+    /**
+     * Checks if this snapshot contains a value for the given path.
+     *
+     * @param path Path to check for existence.
+     * @return True if the path has a value.
+     */
+    public boolean contains(String path) {
+        return entry(path) != null;
+    }
+
+    /**
+     * Checks if this snapshot contains a value for the given compiled path.
+     *
+     * @param path Path to check for existence.
+     * @return True if the path has a value.
+     */
+    public boolean contains(ConfigPath path) {
+        return entry(path) != null;
+    }
+
+    /**
+     * Gets the requested Object by path.
+     *
+     * @param path Path of the Object to get.
+     * @return Requested Object, or null if there is none.
+     */
+    public Object get(String path) {
+        return get(path, null);
+    }
+
+    /**
+     * Gets the requested Object by path, returning a default value if not
+     * found.
+     *
+     * @param path Path of the Object to get.
+     * @param def The default value to return if the path is not found.
+     * @return Requested Object.
+     */
+    public Object get(String path, Object def) {
+        if (path.length() == 0) {
+            return this;
+        }
+        return value(entry(path), def);
+    }
+
+    /**
+     * Gets the requested Object by compiled path.
+     *
+     * @param path Path of the Object to get.
+     * @return Requested Object, or null if there is none.
+     */
+    public Object get(ConfigPath path) {
+        return get(path, null);
+    }
+
+    /**
+     * Gets the requested Object by compiled path, returning a default value
+     * if not found.
+     *
+     * @param path Path of the Object to get.
+     * @param def The default value to return if the path is not found.
+     * @return Requested Object.
+     */
+    public Object get(ConfigPath path, Object def) {
+        if (path.size() == 0) {
+            return this;
+        }
+        return value(entry(path), def);
+    }
+
+    /**
+     * Gets the requested String by path.
+     *
+     * @param path Path of the String to get.
+     * @return Requested String, or null if there is none.
+     */
+    public String getString(String path) {
+        return getString(path, null);
+    }
+
+    /**
+     * Gets the requested String by path, returning a default value if not
+     * found.
+     *
+     * @param path Path of the String to get.
+     * @param def The default value to return if the path is not found.
+     * @return Requested String.
+     */
+    public String getString(String path, String def) {
+        Entry entry = entry(path);
+        return entry != null ? entry.string : def;
+    }
+
+    /**
+     * Gets the requested String by compiled path.
+     *
+     * @param path Path of the String to get.
+     * @return Requested String, or null if there is none.
+     */
+    public String getString(ConfigPath path) {
+        return getString(path, null);
+    }
+
+    /**
+     * Gets the requested String by compiled path, returning a default value
+     * if not found.
+     *
+     * @param path Path of the String to get.
+     * @param def The default value to return if the path is not found.
+     * @return Requested String.
+     */
+    public String getString(ConfigPath path, String def) {
+        Entry entry = entry(path);
+        return entry != null ? entry.string : def;
+    }
+
+    /**
+     * Gets the requested int by path.
+     *
+     * @param path Path of the int to get.
+     * @return Requested int, or 0 if the path is not found or is not a
+     *     number.
+     */
+    public int getInt(String path) {
+        return getInt(path, 0);
+    }
+
+    /**
+     * Gets the requested int by path, returning a default value if not found.
+     *
+     * @param path Path of the int to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a number.
+     * @return Requested int.
+     */
+    public int getInt(String path, int def) {
+        Entry entry = entry(path);
+        return entry != null && entry.number ? entry.intValue : def;
+    }
+
+    /**
+     * Gets the requested int by compiled path.
+     *
+     * @param path Path of the int to get.
+     * @return Requested int, or 0 if the path is not found or is not a
+     *     number.
+     */
+    public int getInt(ConfigPath path) {
+        return getInt(path, 0);
+    }
+
+    /**
+     * Gets the requested int by compiled path, returning a default value if
+     * not found.
+     *
+     * @param path Path of the int to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a number.
+     * @return Requested int.
+     */
+    public int getInt(ConfigPath path, int def) {
+        Entry entry = entry(path);
+        return entry != null && entry.number ? entry.intValue : def;
+    }
+
+    /**
+     * Gets the requested long by path.
+     *
+     * @param path Path of the long to get.
+     * @return Requested long, or 0 if the path is not found or is not a
+     *     number.
+     */
+    public long getLong(String path) {
+        return getLong(path, 0);
+    }
+
+    /**
+     * Gets the requested long by path, returning a default value if not
+     * found.
+     *
+     * @param path Path of the long to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a number.
+     * @return Requested long.
+     */
+    public long getLong(String path, long def) {
+        Entry entry = entry(path);
+        return entry != null && entry.number ? entry.longValue : def;
+    }
+
+    /**
+     * Gets the requested long by compiled path.
+     *
+     * @param path Path of the long to get.
+     * @return Requested long, or 0 if the path is not found or is not a
+     *     number.
+     */
+    public long getLong(ConfigPath path) {
+        return getLong(path, 0);
+    }
+
+    /**
+     * Gets the requested long by compiled path, returning a default value if
+     * not found.
+     *
+     * @param path Path of the long to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a number.
+     * @return Requested long.
+     */
+    public long getLong(ConfigPath path, long def) {
+        Entry entry = entry(path);
+        return entry != null && entry.number ? entry.longValue : def;
+    }
+
+    /**
+     * Gets the requested double by path.
+     *
+     * @param path Path of the double to get.
+     * @return Requested double, or 0 if the path is not found or is not a
+     *     number.
+     */
+    public double getDouble(String path) {
+        return getDouble(path, 0);
+    }
+
+    /**
+     * Gets the requested double by path, returning a default value if not
+     * found.
+     *
+     * @param path Path of the double to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a number.
+     * @return Requested double.
+     */
+    public double getDouble(String path, double def) {
+        Entry entry = entry(path);
+        return entry != null && entry.number ? entry.doubleValue : def;
+    }
+
+    /**
+     * Gets the requested double by compiled path.
+     *
+     * @param path Path of the double to get.
+     * @return Requested double, or 0 if the path is not found or is not a
+     *     number.
+     */
+    public double getDouble(ConfigPath path) {
+        return getDouble(path, 0);
+    }
+
+    /**
+     * Gets the requested double by compiled path, returning a default value
+     * if not found.
+     *
+     * @param path Path of the double to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a number.
+     * @return Requested double.
+     */
+    public double getDouble(ConfigPath path, double def) {
+        Entry entry = entry(path);
+        return entry != null && entry.number ? entry.doubleValue : def;
+    }
+
+    /**
+     * Gets the requested boolean by path.
+     *
+     * @param path Path of the boolean to get.
+     * @return Requested boolean, or false if the path is not found or is not
+     *     a boolean.
+     */
+    public boolean getBoolean(String path) {
+        return getBoolean(path, false);
+    }
+
+    /**
+     * Gets the requested boolean by path, returning a default value if not
+     * found.
+     *
+     * @param path Path of the boolean to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a boolean.
+     * @return Requested boolean.
+     */
+    public boolean getBoolean(String path, boolean def) {
+        Entry entry = entry(path);
+        return entry != null && entry.value instanceof Boolean ? entry.booleanValue : def;
+    }
+
+    /**
+     * Gets the requested boolean by compiled path.
+     *
+     * @param path Path of the boolean to get.
+     * @return Requested boolean, or false if the path is not found or is not
+     *     a boolean.
+     */
+    public boolean getBoolean(ConfigPath path) {
+        return getBoolean(path, false);
+    }
+
+    /**
+     * Gets the requested boolean by compiled path, returning a default value
+     * if not found.
+     *
+     * @param path Path of the boolean to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a boolean.
+     * @return Requested boolean.
+     */
+    public boolean getBoolean(ConfigPath path, boolean def) {
+        Entry entry = entry(path);
+        return entry != null && entry.value instanceof Boolean ? entry.booleanValue : def;
+    }
+
+    /**
+     * Gets the requested List by path.
+     *
+     * @param path Path of the List to get.
+     * @return Requested unmodifiable List, or null if the path is not found
+     *     or is not a List.
+     */
+    public List<?> getList(String path) {
+        return getList(path, null);
+    }
+
+    /**
+     * Gets the requested List by path, returning a default value if not
+     * found.
+     *
+     * @param path Path of the List to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a List.
+     * @return Requested List.
+     */
+    public List<?> getList(String path, List<?> def) {
+        Entry entry = entry(path);
+        return entry != null && entry.list != null ? entry.list : def;
+    }
+
+    /**
+     * Gets the requested List by compiled path.
+     *
+     * @param path Path of the List to get.
+     * @return Requested unmodifiable List, or null if the path is not found
+     *     or is not a List.
+     */
+    public List<?> getList(ConfigPath path) {
+        return getList(path, null);
+    }
+
+    /**
+     * Gets the requested List by compiled path, returning a default value if
+     * not found.
+     *
+     * @param path Path of the List to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a List.
+     * @return Requested List.
+     */
+    public List<?> getList(ConfigPath path, List<?> def) {
+        Entry entry = entry(path);
+        return entry != null && entry.list != null ? entry.list : def;
+    }
+
+    /**
+     * Gets the requested List of String by path.
+     *
+     * @param path Path of the List to get.
+     * @return Requested unmodifiable List of String, empty if the path is not
+     *     found or is not a List.
+     * @see ConfigurationSection#getStringList(String)
+     */
+    public List<String> getStringList(String path) {
+        Entry entry = entry(path);
+        return entry != null && entry.list != null ? entry.stringList : Collections.<String>emptyList();
+    }
+
+    /**
+     * Gets the requested List of Integer by path.
+     *
+     * @param path Path of the List to get.
+     * @return Requested unmodifiable List of Integer, empty if the path is
+     *     not found or is not a List.
+     * @see ConfigurationSection#getIntegerList(String)
+     */
+    public List<Integer> getIntegerList(String path) {
+        Entry entry = entry(path);
+        return entry != null && entry.list != null ? entry.integerList : Collections.<Integer>emptyList();
+    }
+
+    /**
+     * Gets the requested List of Boolean by path.
+     *
+     * @param path Path of the List to get.
+     * @return Requested unmodifiable List of Boolean, empty if the path is
+     *     not found or is not a List.
+     * @see ConfigurationSection#getBooleanList(String)
+     */
+    public List<Boolean> getBooleanList(String path) {
+        Entry entry = entry(path);
+        return entry != null && entry.list != null ? entry.booleanList : Collections.<Boolean>emptyList();
+    }
+
+    /**
+     * Gets the requested List of Double by path.
+     *
+     * @param path Path of the List to get.
+     * @return Requested unmodifiable List of Double, empty if the path is not
+     *     found or is not a List.
+     * @see ConfigurationSection#getDoubleList(String)
+     */
+    public List<Double> getDoubleList(String path) {
+        Entry entry = entry(path);
+        return entry != null && entry.list != null ? entry.doubleList : Collections.<Double>emptyList();
+    }
+
+    /**
+     * Gets the requested List of Long by path.
+     *
+     * @param path Path of the List to get.
+     * @return Requested unmodifiable List of Long, empty if the path is not
+     *     found or is not a List.
+     * @see ConfigurationSection#getLongList(String)
+     */
+    public List<Long> getLongList(String path) {
+        Entry entry = entry(path);
+        return entry != null && entry.list != null ? entry.longList : Collections.<Long>emptyList();
+    }
+
+    /**
+     * Gets the requested List of Maps by path.
+     *
+     * @param path Path of the List to get.
+     * @return Requested unmodifiable List of Maps, empty if the path is not
+     *     found or is not a List.
+     * @see ConfigurationSection#getMapList(String)
+     */
+    public List<Map<?, ?>> getMapList(String path) {
+        Entry entry = entry(path);
+        return entry != null && entry.list != null ? entry.mapList : Collections.<Map<?, ?>>emptyList();
+    }
+
+    /**
+     * Gets the requested section by path.
+     *
+     * @param path Path of the section to get.
+     * @return Snapshot of the section, or null if the path is not found or
+     *     is not a section.
+     */
+    public ConfigurationSnapshot getSection(String path) {
+        Object value = get(path);
+        return value instanceof ConfigurationSnapshot ? (ConfigurationSnapshot) value : null;
+    }
+
+    /**
+     * Gets the requested section by compiled path.
+     *
+     * @param path Path of the section to get.
+     * @return Snapshot of the section, or null if the path is not found or
+     *     is not a section.
+     */
+    public ConfigurationSnapshot getSection(ConfigPath path) {
+        Object value = get(path);
+        return value instanceof ConfigurationSnapshot ? (ConfigurationSnapshot) value : null;
+    }
+
+    private Entry entry(String path) {
+        return lookup.get(prefix, prefixHash, path);
+    }
+
+    private Entry entry(ConfigPath path) {
+        return entry(path.toString(separator));
+    }
+
+    private static Object value(Entry entry, Object def) {
+        return entry != null ? entry.value : def;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+            .append(getClass().getSimpleName())
+            .append("[path='")
+            .append(getCurrentPath())
+            .append("']")
+            .toString();
+    }
+
+    /**
+     * An open addressing table of the entries by path from the root, which
+     * finds the entry of a path within a nested snapshot without joining the
+     * two paths. It is filled once, before the root snapshot is published.
+     */
+    private static final class PathTable {
+        private String[] paths;
+        private Entry[] values;
+        private int mask;
+
+        void fill(Map<String, Entry> entries) {
+            int size = 2;
+            while (size < entries.size() * 2) {
+                size <<= 1;
+            }
+            paths = new String[size];
+            values = new Entry[size];
+            mask = size - 1;
+
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                int index = spread(entry.getKey().hashCode()) & mask;
+                while (paths[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                paths[index] = entry.getKey();
+                values[index] = entry.getValue();
+            }
+        }
+
+        /**
+         * Gets the entry of prefix + path, continuing the hash code of the
+         * prefix over the path the same way String.hashCode() does
+         */
+        Entry get(String prefix, int prefixHash, String path) {
+            int hash;
+            if (prefix.length() == 0) {
+                hash = path.hashCode();
+            } else {
+                hash = prefixHash;
+                for (int i = 0; i < path.length(); i++) {
+                    hash = 31 * hash + path.charAt(i);
+                }
+            }
+
+            int length = prefix.length() + path.length();
+            int index = spread(hash) & mask;
+            String candidate;
+            while ((candidate = paths[index]) != null) {
+                if (candidate.length() == length && candidate.startsWith(prefix) && candidate.regionMatches(prefix.length(), path, 0, path.length())) {
+                    return values[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final String string;
+        private final boolean number;
+        private final int intValue;
+        private final long longValue;
+        private final double doubleValue;
+        private final boolean booleanValue;
+        private final List<?> list;
+        private final List<String> stringList;
+        private final List<Integer> integerList;
+        private final List<Boolean> booleanList;
+        private final List<Double> doubleList;
+        private final List<Long> longList;
+        private final List<Map<?, ?>> mapList;
+
+        Entry(Object value) {
+            this.value = value;
+            this.string = value.toString();
+            this.number = value instanceof Number;
+            this.intValue = number ? toInt(value) : 0;
+            this.longValue = number ? toLong(value) : 0;
+            this.doubleValue = number ? toDouble(value) : 0;
+            this.booleanValue = value instanceof Boolean && (Boolean) value;
+            this.list = null;
+            this.stringList = null;
+            this.integerList = null;
+            this.booleanList = null;
+            this.doubleList = null;
+            this.longList = null;
+            this.mapList = null;
+        }
+
+        Entry(ConfigurationSection section, String key, List<?> value) {
+            this.list = Collections.unmodifiableList(new ArrayList<Object>(value));
+            this.value = list;
+            this.string = value.toString();
+            this.number = false;
+            this.intValue = 0;
+            this.longValue = 0;
+            this.doubleValue = 0;
+            this.booleanValue = false;
+            // The section already knows how to convert its lists, so reuse it
+            this.stringList = Collections.unmodifiableList(section.getStringList(key));
+            this.integerList = Collections.unmodifiableList(section.getIntegerList(key));
+            this.booleanList = Collections.unmodifiableList(section.getBooleanList(key));
+            this.doubleList = Collections.unmodifiableList(section.getDoubleList(key));
+            this.longList = Collections.unmodifiableList(section.getLongList(key));
+            this.mapList = Collections.unmodifiableList(section.getMapList(key));
+        }
+    }
+}
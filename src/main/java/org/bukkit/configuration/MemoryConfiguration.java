@@ -1,6 +1,13 @@
 package org.bukkit.configuration;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.commons.lang.Validate;
 
@@ -12,6 +19,11 @@ import org.apache.commons.lang.Validate;
 public class MemoryConfiguration extends MemorySection implements Configuration {
     protected Configuration defaults;
     protected MemoryConfigurationOptions options;
+    // One change per path, in the order the paths first changed, and every
+    // changed path with all its parents, so isDirty does not scan the changes
+    private final Map<String, ConfigurationChange> changes = new LinkedHashMap<String, ConfigurationChange>();
+    private final Set<String> changedPrefixes = new HashSet<String>();
+    private final List<ConfigurationChangeListener> listeners = new CopyOnWriteArrayList<ConfigurationChangeListener>();
 
     /**
      * Creates an empty {@link MemoryConfiguration} with no default values.
@@ -76,4 +88,117 @@ public class MemoryConfiguration extends MemorySection implements Configuration
 
         return options;
     }
+
+    /**
+     * Registers a listener to be called after every change to the values of
+     * this configuration, including changes made while loading it.
+     *
+     * @param listener Listener to add
+     * @throws IllegalArgumentException Thrown if listener is null
+     */
+    public void addChangeListener(ConfigurationChangeListener listener) {
+        Validate.notNull(listener, "Listener may not be null");
+
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added by {@link
+     * #addChangeListener(ConfigurationChangeListener)}.
+     *
+     * @param listener Listener to remove
+     */
+    public void removeChangeListener(ConfigurationChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gets the changes recorded since they were last cleared, oldest first.
+     * <p>
+     * Changes to the same path are combined into one, holding the value
+     * before the first change and the value after the latest one, in the
+     * position of the first change. Changes are only recorded while {@link
+     * MemoryConfigurationOptions#trackChanges()} is enabled. A persistence
+     * layer may use them to write only what changed, and should call {@link
+     * #clearChanges()} once the changes are stored.
+     *
+     * @return Copy of the recorded changes
+     */
+    public List<ConfigurationChange> getChanges() {
+        return Collections.unmodifiableList(new ArrayList<ConfigurationChange>(changes.values()));
+    }
+
+    /**
+     * Forgets all recorded changes, marking this configuration as clean.
+     */
+    public void clearChanges() {
+        changes.clear();
+        changedPrefixes.clear();
+    }
+
+    /**
+     * Checks if any change was recorded since changes were last cleared.
+     *
+     * @return True if this configuration has unsaved changes
+     */
+    public boolean isDirty() {
+        return !changes.isEmpty();
+    }
+
+    /**
+     * Checks if a change was recorded at, below or above the given path
+     * since changes were last cleared.
+     * <p>
+     * A path is dirty when its value changed, when a value in a section at
+     * the path changed, or when a section containing the path was replaced.
+     *
+     * @param path Path to check
+     * @return True if the path has unsaved changes
+     */
+    public boolean isDirty(String path) {
+        Validate.notNull(path, "Path may not be null");
+
+        if (path.length() == 0) {
+            return isDirty();
+        }
+
+        // Changed at or below the path
+        if (changedPrefixes.contains(path)) {
+            return true;
+        }
+
+        // A section containing the path was replaced
+        char separator = options().pathSeparator();
+        for (int i = path.indexOf(separator); i != -1; i = path.indexOf(separator, i + 1)) {
+            if (changes.containsKey(path.substring(0, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isObserved() {
+        return (options != null && options.trackChanges()) || !listeners.isEmpty();
+    }
+
+    void changed(String path, Object oldValue, Object newValue) {
+        ConfigurationChange change = new ConfigurationChange(path, oldValue, newValue);
+
+        if (options != null && options.trackChanges()) {
+            ConfigurationChange previous = changes.get(path);
+            if (previous == null) {
+                changes.put(path, change);
+                char separator = options.pathSeparator();
+                for (int i = path.indexOf(separator); i != -1; i = path.indexOf(separator, i + 1)) {
+                    changedPrefixes.add(path.substring(0, i));
+                }
+                changedPrefixes.add(path);
+            } else {
+                changes.put(path, new ConfigurationChange(path, previous.getOldValue(), newValue));
+            }
+        }
+        for (ConfigurationChangeListener listener : listeners) {
+            listener.onChange(change);
+        }
+    }
 }
@@ -5,6 +5,8 @@ package org.bukkit.configuration;
  * MemoryConfiguration}
  */
 public class MemoryConfigurationOptions extends ConfigurationOptions {
+    private boolean trackChanges = false;
+
     protected MemoryConfigurationOptions(MemoryConfiguration configuration) {
         super(configuration);
     }
@@ -25,4 +27,34 @@ public class MemoryConfigurationOptions extends ConfigurationOptions {
         super.pathSeparator(value);
         return this;
     }
+
+    /**
+     * Checks if changes to the values of the {@link MemoryConfiguration} are
+     * recorded.
+     * <p>
+     * Recorded changes are available from {@link
+     * MemoryConfiguration#getChanges()} until they are cleared. The default
+     * value is false.
+     *
+     * @return Whether changes are recorded
+     */
+    public boolean trackChanges() {
+        return trackChanges;
+    }
+
+    /**
+     * Sets if changes to the values of the {@link MemoryConfiguration} are
+     * recorded.
+     * <p>
+     * Recorded changes are available from {@link
+     * MemoryConfiguration#getChanges()} until they are cleared. The default
+     * value is false.
+     *
+     * @param value Whether changes are recorded
+     * @return This object, for chaining
+     */
+    public MemoryConfigurationOptions trackChanges(boolean value) {
+        this.trackChanges = value;
+        return this;
+    }
 }
@@ -106,6 +106,19 @@ public class MemorySection implements ConfigurationSection {
         return get(path) != null;
     }
 
+    /**
+     * Checks if this {@link ConfigurationSection} contains the given compiled
+     * path.
+     *
+     * @param path Path to check for existence.
+     * @return True if this section contains the requested path, either via
+     *     default or being set.
+     * @see #contains(String)
+     */
+    public boolean contains(ConfigPath path) {
+        return get(path) != null;
+    }
+
     public boolean isSet(String path) {
         Configuration root = getRoot();
         if (root == null) {
@@ -117,6 +130,26 @@ public class MemorySection implements ConfigurationSection {
         return get(path, null) != null;
     }
 
+    /**
+     * Checks if this {@link ConfigurationSection} has a value set for the
+     * given compiled path.
+     *
+     * @param path Path to check for existence.
+     * @return True if this section contains the requested path, regardless of
+     *     having a default.
+     * @see #isSet(String)
+     */
+    public boolean isSet(ConfigPath path) {
+        Configuration root = getRoot();
+        if (root == null) {
+            return false;
+        }
+        if (root.options().copyDefaults()) {
+            return contains(path);
+        }
+        return get(path, null) != null;
+    }
+
     public String getCurrentPath() {
         return fullPath;
     }
@@ -184,18 +217,82 @@ public class MemorySection implements ConfigurationSection {
 
         String key = path.substring(i2);
         if (section == this) {
-            if (value == null) {
-                map.remove(key);
+            setLocal(key, value);
+        } else {
+            section.set(key, value);
+        }
+    }
+
+    /**
+     * Sets the specified compiled path to the given value.
+     *
+     * @param path Path of the object to set.
+     * @param value New value to set the path to.
+     * @see #set(String, Object)
+     */
+    public void set(ConfigPath path, Object value) {
+        Validate.notNull(path, "Path cannot be null");
+        Validate.isTrue(path.size() > 0, "Cannot set to an empty path");
+
+        Configuration root = getRoot();
+        if (root == null) {
+            throw new IllegalStateException("Cannot use section without a root");
+        }
+
+        final int last = path.size() - 1;
+        ConfigurationSection section = this;
+        for (int i = 0; i < last; i++) {
+            String node = path.getSegment(i);
+            ConfigurationSection subSection = getChildSection(section, node);
+            if (subSection == null) {
+                section = section.createSection(node);
             } else {
-                map.put(key, value);
+                section = subSection;
             }
+        }
+
+        String key = path.getSegment(last);
+        if (section instanceof MemorySection) {
+            ((MemorySection) section).setLocal(key, value);
         } else {
             section.set(key, value);
         }
     }
 
+    private void setLocal(String key, Object value) {
+        Object old;
+        if (value == null) {
+            old = map.remove(key);
+        } else {
+            old = map.put(key, value);
+        }
+        changed(key, old, value);
+    }
+
+    private void changed(String key, Object oldValue, Object newValue) {
+        if (root instanceof MemoryConfiguration && oldValue != newValue) {
+            MemoryConfiguration config = (MemoryConfiguration) root;
+            if (config.isObserved() && (oldValue == null || !oldValue.equals(newValue))) {
+                config.changed(createPath(this, key), oldValue, newValue);
+            }
+        }
+    }
+
     public Object get(String path) {
-        return get(path, getDefault(path));
+        Object val = get(path, null);
+        return (val != null) ? val : getDefault(path);
+    }
+
+    /**
+     * Gets the requested Object by compiled path.
+     *
+     * @param path Path of the Object to get.
+     * @return Requested Object.
+     * @see #get(String)
+     */
+    public Object get(ConfigPath path) {
+        Object val = get(path, null);
+        return (val != null) ? val : getDefault(path);
     }
 
     public Object get(String path, Object def) {
@@ -230,6 +327,58 @@ public class MemorySection implements ConfigurationSection {
         return section.get(key, def);
     }
 
+    /**
+     * Gets the requested Object by compiled path, returning a default value
+     * if not found.
+     *
+     * @param path Path of the Object to get.
+     * @param def The default value to return if the path is not found.
+     * @return Requested Object.
+     * @see #get(String, Object)
+     */
+    public Object get(ConfigPath path, Object def) {
+        Validate.notNull(path, "Path cannot be null");
+
+        final int last = path.size() - 1;
+        if (last < 0) {
+            return this;
+        }
+
+        if (getRoot() == null) {
+            throw new IllegalStateException("Cannot access section without a root");
+        }
+
+        ConfigurationSection section = this;
+        for (int i = 0; i < last; i++) {
+            section = getChildSection(section, path.getSegment(i));
+            if (section == null) {
+                return def;
+            }
+        }
+
+        String key = path.getSegment(last);
+        if (section instanceof MemorySection) {
+            Object result = ((MemorySection) section).map.get(key);
+            return (result == null) ? def : result;
+        }
+        return section.get(key, def);
+    }
+
+    /**
+     * Gets a direct child section without building a path, falling back to
+     * {@link #getConfigurationSection(String)} when the child is not set so
+     * sections that only exist in the defaults are still created.
+     */
+    private static ConfigurationSection getChildSection(ConfigurationSection section, String key) {
+        if (section instanceof MemorySection) {
+            Object val = ((MemorySection) section).map.get(key);
+            if (val != null) {
+                return (val instanceof ConfigurationSection) ? (ConfigurationSection) val : null;
+            }
+        }
+        return section.getConfigurationSection(key);
+    }
+
     public ConfigurationSection createSection(String path) {
         Validate.notEmpty(path, "Cannot create section at empty path");
         Configuration root = getRoot();
@@ -254,13 +403,45 @@ public class MemorySection implements ConfigurationSection {
 
         String key = path.substring(i2);
         if (section == this) {
-            ConfigurationSection result = new MemorySection(this, key);
-            map.put(key, result);
-            return result;
+            return createLocalSection(key);
         }
         return section.createSection(key);
     }
 
+    /**
+     * Creates an empty section at the specified compiled path, walking its
+     * segments in the same way as {@link #createSection(String)}.
+     */
+    private ConfigurationSection createSection(ConfigPath path) {
+        Validate.isTrue(path.size() > 0, "Cannot create section at empty path");
+
+        final int last = path.size() - 1;
+        ConfigurationSection section = this;
+        for (int i = 0; i < last; i++) {
+            String node = path.getSegment(i);
+            ConfigurationSection subSection = getChildSection(section, node);
+            if (subSection != null) {
+                section = subSection;
+            } else if (section instanceof MemorySection) {
+                section = ((MemorySection) section).createLocalSection(node);
+            } else {
+                section = section.createSection(node);
+            }
+        }
+
+        String key = path.getSegment(last);
+        if (section instanceof MemorySection) {
+            return ((MemorySection) section).createLocalSection(key);
+        }
+        return section.createSection(key);
+    }
+
+    private ConfigurationSection createLocalSection(String key) {
+        ConfigurationSection result = new MemorySection(this, key);
+        changed(key, map.put(key, result), result);
+        return result;
+    }
+
     public ConfigurationSection createSection(String path, Map<?, ?> map) {
         ConfigurationSection section = createSection(path);
 
@@ -277,8 +458,20 @@ public class MemorySection implements ConfigurationSection {
 
     // Primitives
     public String getString(String path) {
-        Object def = getDefault(path);
-        return getString(path, def != null ? def.toString() : null);
+        Object val = get(path);
+        return (val != null) ? val.toString() : null;
+    }
+
+    /**
+     * Gets the requested String by compiled path.
+     *
+     * @param path Path of the String to get.
+     * @return Requested String.
+     * @see #getString(String)
+     */
+    public String getString(ConfigPath path) {
+        Object val = get(path);
+        return (val != null) ? val.toString() : null;
     }
 
     public String getString(String path, String def) {
@@ -286,18 +479,66 @@ public class MemorySection implements ConfigurationSection {
         return (val != null) ? val.toString() : def;
     }
 
+    /**
+     * Gets the requested String by compiled path, returning a default value if
+     * not found.
+     *
+     * @param path Path of the String to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a String.
+     * @return Requested String.
+     * @see #getString(String, String)
+     */
+    public String getString(ConfigPath path, String def) {
+        Object val = get(path, def);
+        return (val != null) ? val.toString() : def;
+    }
+
     public boolean isString(String path) {
         Object val = get(path);
         return val instanceof String;
     }
 
     public int getInt(String path) {
-        Object def = getDefault(path);
-        return getInt(path, (def instanceof Number) ? toInt(def) : 0);
+        Object val = get(path, null);
+        if (!(val instanceof Number)) {
+            val = getDefault(path);
+        }
+        return (val instanceof Number) ? toInt(val) : 0;
+    }
+
+    /**
+     * Gets the requested int by compiled path.
+     *
+     * @param path Path of the int to get.
+     * @return Requested int.
+     * @see #getInt(String)
+     */
+    public int getInt(ConfigPath path) {
+        Object val = get(path, null);
+        if (!(val instanceof Number)) {
+            val = getDefault(path);
+        }
+        return (val instanceof Number) ? toInt(val) : 0;
     }
 
     public int getInt(String path, int def) {
-        Object val = get(path, def);
+        Object val = get(path, null);
+        return (val instanceof Number) ? toInt(val) : def;
+    }
+
+    /**
+     * Gets the requested int by compiled path, returning a default value if
+     * not found.
+     *
+     * @param path Path of the int to get.
+     * @param def The default value to return if the path is not found or is
+     *     not an int.
+     * @return Requested int.
+     * @see #getInt(String, int)
+     */
+    public int getInt(ConfigPath path, int def) {
+        Object val = get(path, null);
         return (val instanceof Number) ? toInt(val) : def;
     }
 
@@ -307,12 +548,45 @@ public class MemorySection implements ConfigurationSection {
     }
 
     public boolean getBoolean(String path) {
-        Object def = getDefault(path);
-        return getBoolean(path, (def instanceof Boolean) ? (Boolean) def : false);
+        Object val = get(path, null);
+        if (!(val instanceof Boolean)) {
+            val = getDefault(path);
+        }
+        return (val instanceof Boolean) ? (Boolean) val : false;
+    }
+
+    /**
+     * Gets the requested boolean by compiled path.
+     *
+     * @param path Path of the boolean to get.
+     * @return Requested boolean.
+     * @see #getBoolean(String)
+     */
+    public boolean getBoolean(ConfigPath path) {
+        Object val = get(path, null);
+        if (!(val instanceof Boolean)) {
+            val = getDefault(path);
+        }
+        return (val instanceof Boolean) ? (Boolean) val : false;
     }
 
     public boolean getBoolean(String path, boolean def) {
-        Object val = get(path, def);
+        Object val = get(path, null);
+        return (val instanceof Boolean) ? (Boolean) val : def;
+    }
+
+    /**
+     * Gets the requested boolean by compiled path, returning a default value if
+     * not found.
+     *
+     * @param path Path of the boolean to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a boolean.
+     * @return Requested boolean.
+     * @see #getBoolean(String, boolean)
+     */
+    public boolean getBoolean(ConfigPath path, boolean def) {
+        Object val = get(path, null);
         return (val instanceof Boolean) ? (Boolean) val : def;
     }
 
@@ -322,12 +596,45 @@ public class MemorySection implements ConfigurationSection {
     }
 
     public double getDouble(String path) {
-        Object def = getDefault(path);
-        return getDouble(path, (def instanceof Number) ? toDouble(def) : 0);
+        Object val = get(path, null);
+        if (!(val instanceof Number)) {
+            val = getDefault(path);
+        }
+        return (val instanceof Number) ? toDouble(val) : 0;
+    }
+
+    /**
+     * Gets the requested double by compiled path.
+     *
+     * @param path Path of the double to get.
+     * @return Requested double.
+     * @see #getDouble(String)
+     */
+    public double getDouble(ConfigPath path) {
+        Object val = get(path, null);
+        if (!(val instanceof Number)) {
+            val = getDefault(path);
+        }
+        return (val instanceof Number) ? toDouble(val) : 0;
     }
 
     public double getDouble(String path, double def) {
-        Object val = get(path, def);
+        Object val = get(path, null);
+        return (val instanceof Number) ? toDouble(val) : def;
+    }
+
+    /**
+     * Gets the requested double by compiled path, returning a default value if
+     * not found.
+     *
+     * @param path Path of the double to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a double.
+     * @return Requested double.
+     * @see #getDouble(String, double)
+     */
+    public double getDouble(ConfigPath path, double def) {
+        Object val = get(path, null);
         return (val instanceof Number) ? toDouble(val) : def;
     }
 
@@ -337,12 +644,45 @@ public class MemorySection implements ConfigurationSection {
     }
 
     public long getLong(String path) {
-        Object def = getDefault(path);
-        return getLong(path, (def instanceof Number) ? toLong(def) : 0);
+        Object val = get(path, null);
+        if (!(val instanceof Number)) {
+            val = getDefault(path);
+        }
+        return (val instanceof Number) ? toLong(val) : 0;
+    }
+
+    /**
+     * Gets the requested long by compiled path.
+     *
+     * @param path Path of the long to get.
+     * @return Requested long.
+     * @see #getLong(String)
+     */
+    public long getLong(ConfigPath path) {
+        Object val = get(path, null);
+        if (!(val instanceof Number)) {
+            val = getDefault(path);
+        }
+        return (val instanceof Number) ? toLong(val) : 0;
     }
 
     public long getLong(String path, long def) {
-        Object val = get(path, def);
+        Object val = get(path, null);
+        return (val instanceof Number) ? toLong(val) : def;
+    }
+
+    /**
+     * Gets the requested long by compiled path, returning a default value if
+     * not found.
+     *
+     * @param path Path of the long to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a long.
+     * @return Requested long.
+     * @see #getLong(String, long)
+     */
+    public long getLong(ConfigPath path, long def) {
+        Object val = get(path, null);
         return (val instanceof Number) ? toLong(val) : def;
     }
 
@@ -353,8 +693,26 @@ public class MemorySection implements ConfigurationSection {
 
     // Java
     public List<?> getList(String path) {
-        Object def = getDefault(path);
-        return getList(path, (def instanceof List) ? (List<?>) def : null);
+        Object val = get(path, null);
+        if (!(val instanceof List)) {
+            val = getDefault(path);
+        }
+        return (val instanceof List) ? (List<?>) val : null;
+    }
+
+    /**
+     * Gets the requested List by compiled path.
+     *
+     * @param path Path of the List to get.
+     * @return Requested List.
+     * @see #getList(String)
+     */
+    public List<?> getList(ConfigPath path) {
+        Object val = get(path, null);
+        if (!(val instanceof List)) {
+            val = getDefault(path);
+        }
+        return (val instanceof List) ? (List<?>) val : null;
     }
 
     public List<?> getList(String path, List<?> def) {
@@ -362,14 +720,42 @@ public class MemorySection implements ConfigurationSection {
         return (List<?>) ((val instanceof List) ? val : def);
     }
 
+    /**
+     * Gets the requested List by compiled path, returning a default value if
+     * not found.
+     *
+     * @param path Path of the List to get.
+     * @param def The default value to return if the path is not found or is
+     *     not a List.
+     * @return Requested List.
+     * @see #getList(String, List)
+     */
+    public List<?> getList(ConfigPath path, List<?> def) {
+        Object val = get(path, def);
+        return (List<?>) ((val instanceof List) ? val : def);
+    }
+
     public boolean isList(String path) {
         Object val = get(path);
         return val instanceof List;
     }
 
     public List<String> getStringList(String path) {
-        List<?> list = getList(path);
+        return toStringList(getList(path));
+    }
 
+    /**
+     * Gets the requested List of String by compiled path.
+     *
+     * @param path Path of the List to get.
+     * @return Requested List of String.
+     * @see #getStringList(String)
+     */
+    public List<String> getStringList(ConfigPath path) {
+        return toStringList(getList(path));
+    }
+
+    private List<String> toStringList(List<?> list) {
         if (list == null) {
             return new ArrayList<String>(0);
         }
@@ -616,8 +1002,11 @@ public class MemorySection implements ConfigurationSection {
 
     // Bukkit
     public Vector getVector(String path) {
-        Object def = getDefault(path);
-        return getVector(path, (def instanceof Vector) ? (Vector) def : null);
+        Object val = get(path, null);
+        if (!(val instanceof Vector)) {
+            val = getDefault(path);
+        }
+        return (val instanceof Vector) ? (Vector) val : null;
     }
 
     public Vector getVector(String path, Vector def) {
@@ -631,8 +1020,11 @@ public class MemorySection implements ConfigurationSection {
     }
 
     public OfflinePlayer getOfflinePlayer(String path) {
-        Object def = getDefault(path);
-        return getOfflinePlayer(path, (def instanceof OfflinePlayer) ? (OfflinePlayer) def : null);
+        Object val = get(path, null);
+        if (!(val instanceof OfflinePlayer)) {
+            val = getDefault(path);
+        }
+        return (val instanceof OfflinePlayer) ? (OfflinePlayer) val : null;
     }
 
     public OfflinePlayer getOfflinePlayer(String path, OfflinePlayer def) {
@@ -646,8 +1038,11 @@ public class MemorySection implements ConfigurationSection {
     }
 
     public ItemStack getItemStack(String path) {
-        Object def = getDefault(path);
-        return getItemStack(path, (def instanceof ItemStack) ? (ItemStack) def : null);
+        Object val = get(path, null);
+        if (!(val instanceof ItemStack)) {
+            val = getDefault(path);
+        }
+        return (val instanceof ItemStack) ? (ItemStack) val : null;
     }
 
     public ItemStack getItemStack(String path, ItemStack def) {
@@ -661,8 +1056,11 @@ public class MemorySection implements ConfigurationSection {
     }
 
     public Color getColor(String path) {
-        Object def = getDefault(path);
-        return getColor(path, (def instanceof Color) ? (Color) def : null);
+        Object val = get(path, null);
+        if (!(val instanceof Color)) {
+            val = getDefault(path);
+        }
+        return (val instanceof Color) ? (Color) val : null;
     }
 
     public Color getColor(String path, Color def) {
@@ -681,7 +1079,24 @@ public class MemorySection implements ConfigurationSection {
             return (val instanceof ConfigurationSection) ? (ConfigurationSection) val : null;
         }
 
-        val = get(path, getDefault(path));
+        val = getDefault(path);
+        return (val instanceof ConfigurationSection) ? createSection(path) : null;
+    }
+
+    /**
+     * Gets the requested ConfigurationSection by compiled path.
+     *
+     * @param path Path of the ConfigurationSection to get.
+     * @return Requested ConfigurationSection.
+     * @see #getConfigurationSection(String)
+     */
+    public ConfigurationSection getConfigurationSection(ConfigPath path) {
+        Object val = get(path, null);
+        if (val != null) {
+            return (val instanceof ConfigurationSection) ? (ConfigurationSection) val : null;
+        }
+
+        val = getDefault(path);
         return (val instanceof ConfigurationSection) ? createSection(path) : null;
     }
 
@@ -705,6 +1120,46 @@ public class MemorySection implements ConfigurationSection {
         return (defaults == null) ? null : defaults.get(createPath(this, path));
     }
 
+    protected Object getDefault(ConfigPath path) {
+        Validate.notNull(path, "Path cannot be null");
+
+        Configuration root = getRoot();
+        Configuration defaults = root == null ? null : root.getDefaults();
+        if (defaults == null) {
+            return null;
+        }
+        if (root == this && defaults instanceof MemorySection) {
+            return ((MemorySection) defaults).get(path);
+        }
+        if (defaults instanceof MemorySection && defaults.getDefaults() == null) {
+            // Walks the defaults by the names of this section and its
+            // parents, then by the segments of the path, as looking up the
+            // joined path would
+            ConfigurationSection section = findSection(defaults, this);
+            if (section == null) {
+                return null;
+            }
+            if (section instanceof MemorySection) {
+                return ((MemorySection) section).get(path, null);
+            }
+        }
+        return defaults.get(createPath(this, path.toString(root.options().pathSeparator())));
+    }
+
+    /**
+     * Finds the section of a configuration at the same path as a section of
+     * another configuration, without building the path
+     */
+    private static ConfigurationSection findSection(Configuration target, ConfigurationSection section) {
+        ConfigurationSection parent = section.getParent();
+        if (parent == null) {
+            return target;
+        }
+
+        ConfigurationSection targetParent = findSection(target, parent);
+        return targetParent == null ? null : getChildSection(targetParent, section.getName());
+    }
+
     protected void mapChildrenKeys(Set<String> output, ConfigurationSection section, boolean deep) {
         if (section instanceof MemorySection) {
             MemorySection sec = (MemorySection) section;
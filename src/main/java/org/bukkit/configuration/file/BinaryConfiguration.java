@@ -0,0 +1,587 @@
+package org.bukkit.configuration.file;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.Configuration;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+
+/**
+ * An implementation of {@link Configuration} which saves all files in a
+ * compact binary format.
+ * <p>
+ * The format holds the same values as {@link YamlConfiguration}: sections,
+ * strings, numbers, booleans, lists, maps, dates and {@link
+ * ConfigurationSerializable} objects, which are stored by their alias. A
+ * configuration can be loaded from yaml and saved in this format, or the
+ * other way around, without losing values. Every value is prefixed with its
+ * type and every string and collection with its length, so loading needs no
+ * parsing.
+ * <p>
+ * {@link #saveToString()} and {@link #loadFromString(String)} hold one byte
+ * of the binary format per char. Such a String has to be kept in ISO-8859-1
+ * if it is stored as text; files should be written with {@link #save(File)}
+ * and read with {@link #load(File)}.
+ * <p>
+ * Note that this implementation is not synchronized.
+ */
+public class BinaryConfiguration extends FileConfiguration {
+    private static final byte[] MAGIC = { 'B', 'C', 'F', 'G' };
+    private static final int VERSION = 1;
+
+    private static final int TYPE_SECTION = 1;
+    private static final int TYPE_STRING = 2;
+    private static final int TYPE_INT = 3;
+    private static final int TYPE_LONG = 4;
+    private static final int TYPE_DOUBLE = 5;
+    private static final int TYPE_FLOAT = 6;
+    private static final int TYPE_TRUE = 7;
+    private static final int TYPE_FALSE = 8;
+    private static final int TYPE_SHORT = 9;
+    private static final int TYPE_BYTE = 10;
+    private static final int TYPE_CHAR = 11;
+    private static final int TYPE_LIST = 12;
+    private static final int TYPE_MAP = 13;
+    private static final int TYPE_SERIALIZABLE = 14;
+    private static final int TYPE_BIG_INTEGER = 15;
+    private static final int TYPE_DATE = 16;
+    private static final int TYPE_NULL = 17;
+
+    /**
+     * Saves this configuration in the binary format.
+     *
+     * @return Bytes containing this configuration.
+     * @throws IllegalArgumentException Thrown if a value cannot be stored in
+     *     this format.
+     */
+    public byte[] saveToBytes() {
+        Output out = new Output();
+        out.writeBytes(MAGIC);
+        out.writeByte(VERSION);
+
+        String header = buildHeader();
+        out.writeString(header);
+        writeSection(out, this);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned String holds one byte of the binary format per char.
+     */
+    @Override
+    public String saveToString() {
+        return new String(saveToBytes(), Charsets.ISO_8859_1);
+    }
+
+    @Override
+    public void save(File file) throws IOException {
+        Validate.notNull(file, "File cannot be null");
+
+        ConfigurationFileWriter.write(file, saveToBytes());
+    }
+
+    @Override
+    public Future<Void> saveAsync(File file) {
+        Validate.notNull(file, "File cannot be null");
+
+        return ConfigurationFileWriter.writeAsync(file, saveToBytes());
+    }
+
+    /**
+     * Loads this configuration from bytes in the binary format.
+     * <p>
+     * If the bytes are invalid, this configuration is left unchanged.
+     *
+     * @param contents Bytes of a configuration to load.
+     * @throws InvalidConfigurationException Thrown if the bytes are not a
+     *     valid configuration.
+     * @throws IllegalArgumentException Thrown if contents is null.
+     */
+    public void loadFromBytes(byte[] contents) throws InvalidConfigurationException {
+        Validate.notNull(contents, "Contents cannot be null");
+
+        Input in = new Input(contents);
+        byte[] magic = in.readBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new InvalidConfigurationException("Not a binary configuration");
+        }
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new InvalidConfigurationException("Unsupported binary configuration version " + version);
+        }
+
+        String header = in.readString();
+        SectionValues values = readSection(in);
+        if (in.remaining() != 0) {
+            throw new InvalidConfigurationException("Unexpected data after configuration");
+        }
+
+        if (header.length() > 0) {
+            options().header(header);
+        }
+        applySection(values, this);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each char of the String is read as one byte of the binary format.
+     */
+    @Override
+    public void loadFromString(String contents) throws InvalidConfigurationException {
+        Validate.notNull(contents, "Contents cannot be null");
+
+        loadFromBytes(contents.getBytes(Charsets.ISO_8859_1));
+    }
+
+    @Override
+    public void load(InputStream stream) throws IOException, InvalidConfigurationException {
+        Validate.notNull(stream, "Stream cannot be null");
+
+        byte[] contents;
+        try {
+            contents = ByteStreams.toByteArray(stream);
+        } finally {
+            stream.close();
+        }
+        loadFromBytes(contents);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each char read is taken as one byte of the binary format.
+     */
+    @Override
+    public void load(Reader reader) throws IOException, InvalidConfigurationException {
+        Validate.notNull(reader, "Reader cannot be null");
+
+        String contents;
+        try {
+            contents = CharStreams.toString(reader);
+        } finally {
+            reader.close();
+        }
+        loadFromString(contents);
+    }
+
+    @Override
+    protected String buildHeader() {
+        if (options().copyHeader()) {
+            Configuration def = getDefaults();
+
+            if ((def != null) && (def instanceof FileConfiguration)) {
+                String defaultsHeader = ((FileConfiguration) def).options().header();
+
+                if ((defaultsHeader != null) && (defaultsHeader.length() > 0)) {
+                    return defaultsHeader;
+                }
+            }
+        }
+
+        String header = options().header();
+        return header == null ? "" : header;
+    }
+
+    private void writeSection(Output out, ConfigurationSection section) {
+        Map<String, Object> values = section.getValues(false);
+        out.writeVarInt(values.size());
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            out.writeString(entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private void writeValue(Output out, Object value) {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeVarLong((Integer) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeVarLong((Long) value);
+        } else if (value instanceof ConfigurationSection) {
+            out.writeByte(TYPE_SECTION);
+            writeSection(out, (ConfigurationSection) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(TYPE_LIST);
+            out.writeVarInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TYPE_MAP);
+            out.writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof ConfigurationSerializable) {
+            ConfigurationSerializable serializable = (ConfigurationSerializable) value;
+            Map<String, Object> values = serializable.serialize();
+            out.writeByte(TYPE_SERIALIZABLE);
+            out.writeString(ConfigurationSerialization.getAlias(serializable.getClass()));
+            out.writeVarInt(values.size());
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                out.writeString(entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeInt(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Short) {
+            out.writeByte(TYPE_SHORT);
+            out.writeVarLong((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(TYPE_CHAR);
+            out.writeVarInt((Character) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(TYPE_BIG_INTEGER);
+            out.writeString(value.toString());
+        } else if (value instanceof Date) {
+            out.writeByte(TYPE_DATE);
+            out.writeVarLong(((Date) value).getTime());
+        } else {
+            throw new IllegalArgumentException("Cannot store " + value.getClass().getName() + " in a binary configuration");
+        }
+    }
+
+    private SectionValues readSection(Input in) throws InvalidConfigurationException {
+        int size = in.readSize();
+        SectionValues values = new SectionValues(size);
+        for (int i = 0; i < size; i++) {
+            String key = in.readString();
+            values.put(key, readValue(in));
+        }
+        return values;
+    }
+
+    private Object readValue(Input in) throws InvalidConfigurationException {
+        int type = in.readByte();
+        switch (type) {
+        case TYPE_NULL:
+            return null;
+        case TYPE_SECTION:
+            return readSection(in);
+        case TYPE_STRING:
+            return in.readString();
+        case TYPE_INT:
+            return (int) in.readVarLong();
+        case TYPE_LONG:
+            return in.readVarLong();
+        case TYPE_DOUBLE:
+            return Double.longBitsToDouble(in.readLong());
+        case TYPE_FLOAT:
+            return Float.intBitsToFloat(in.readInt());
+        case TYPE_TRUE:
+            return Boolean.TRUE;
+        case TYPE_FALSE:
+            return Boolean.FALSE;
+        case TYPE_SHORT:
+            return (short) in.readVarLong();
+        case TYPE_BYTE:
+            return (byte) in.readByte();
+        case TYPE_CHAR:
+            return (char) in.readVarInt();
+        case TYPE_LIST: {
+            int size = in.readSize();
+            List<Object> list = new ArrayList<Object>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(readValue(in));
+            }
+            return list;
+        }
+        case TYPE_MAP: {
+            int size = in.readSize();
+            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            for (int i = 0; i < size; i++) {
+                Object key = readValue(in);
+                map.put(key, readValue(in));
+            }
+            return map;
+        }
+        case TYPE_SERIALIZABLE: {
+            String alias = in.readString();
+            int size = in.readSize();
+            Map<String, Object> args = new LinkedHashMap<String, Object>();
+            args.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, alias);
+            for (int i = 0; i < size; i++) {
+                String key = in.readString();
+                args.put(key, readValue(in));
+            }
+            try {
+                return ConfigurationSerialization.deserializeObject(args);
+            } catch (IllegalArgumentException ex) {
+                throw new InvalidConfigurationException("Could not deserialize object", ex);
+            }
+        }
+        case TYPE_BIG_INTEGER:
+            try {
+                return new BigInteger(in.readString());
+            } catch (NumberFormatException ex) {
+                throw new InvalidConfigurationException("Invalid number", ex);
+            }
+        case TYPE_DATE:
+            return new Date(in.readVarLong());
+        default:
+            throw new InvalidConfigurationException("Unknown value type " + type);
+        }
+    }
+
+    private void applySection(SectionValues values, ConfigurationSection section) {
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Object value = entry.getValue();
+
+            if (value instanceof SectionValues) {
+                applySection((SectionValues) value, section.createSection(entry.getKey()));
+            } else {
+                section.set(entry.getKey(), value);
+            }
+        }
+    }
+
+    /**
+     * Creates a new {@link BinaryConfiguration}, loading from the given file.
+     * <p>
+     * Any errors loading the Configuration will be logged and then ignored.
+     * If the specified input is not a valid config, a blank config will be
+     * returned.
+     *
+     * @param file Input file
+     * @return Resulting configuration
+     * @throws IllegalArgumentException Thrown if file is null
+     */
+    public static BinaryConfiguration loadConfiguration(File file) {
+        Validate.notNull(file, "File cannot be null");
+
+        BinaryConfiguration config = new BinaryConfiguration();
+
+        try {
+            config.load(file);
+        } catch (FileNotFoundException ex) {
+        } catch (IOException ex) {
+            Bukkit.getLogger().log(Level.SEVERE, "Cannot load " + file, ex);
+        } catch (InvalidConfigurationException ex) {
+            Bukkit.getLogger().log(Level.SEVERE, "Cannot load " + file , ex);
+        }
+
+        return config;
+    }
+
+    /**
+     * Values of a section read from the binary format, kept apart from plain
+     * maps until they are applied to this configuration
+     */
+    private static final class SectionValues extends LinkedHashMap<String, Object> {
+        private static final long serialVersionUID = 1L;
+
+        SectionValues(int size) {
+            super(Math.max(16, size * 2));
+        }
+    }
+
+    private static final class Output {
+        private byte[] buffer = new byte[256];
+        private int position;
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBytes(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, buffer, position, value.length);
+            position += value.length;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            // Zig-zag, so small negative numbers stay short
+            long encoded = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((encoded & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((encoded & 0x7F) | 0x80);
+                encoded >>>= 7;
+            }
+            buffer[position++] = (byte) encoded;
+        }
+
+        void writeString(String value) {
+            int length = value.length();
+            int i = 0;
+            ensure(length + 5);
+            // Most keys and values are ascii and can be copied directly
+            int start = position;
+            position += 1;
+            for (; i < length && i < 0x7F; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                buffer[position++] = (byte) c;
+            }
+            if (i == length) {
+                buffer[start] = (byte) length;
+                return;
+            }
+
+            position = start;
+            byte[] bytes = value.getBytes(Charsets.UTF_8);
+            writeVarInt(bytes.length);
+            writeBytes(bytes);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int length) {
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+    }
+
+    private static final class Input {
+        private final byte[] buffer;
+        private int position;
+
+        Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int remaining() {
+            return buffer.length - position;
+        }
+
+        int readByte() throws InvalidConfigurationException {
+            require(1);
+            return buffer[position++];
+        }
+
+        byte[] readBytes(int length) throws InvalidConfigurationException {
+            require(length);
+            byte[] result = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return result;
+        }
+
+        int readInt() throws InvalidConfigurationException {
+            require(4);
+            return ((buffer[position++] & 0xFF) << 24)
+                | ((buffer[position++] & 0xFF) << 16)
+                | ((buffer[position++] & 0xFF) << 8)
+                | (buffer[position++] & 0xFF);
+        }
+
+        long readLong() throws InvalidConfigurationException {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        int readVarInt() throws InvalidConfigurationException {
+            int result = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new InvalidConfigurationException("Malformed number");
+        }
+
+        long readVarLong() throws InvalidConfigurationException {
+            long encoded = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = readByte();
+                encoded |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (encoded >>> 1) ^ -(encoded & 1);
+                }
+            }
+            throw new InvalidConfigurationException("Malformed number");
+        }
+
+        int readSize() throws InvalidConfigurationException {
+            int size = readVarInt();
+            // Every element takes at least one byte
+            if (size < 0 || size > remaining()) {
+                throw new InvalidConfigurationException("Invalid length " + size);
+            }
+            return size;
+        }
+
+        String readString() throws InvalidConfigurationException {
+            int length = readSize();
+            String result = new String(buffer, position, length, Charsets.UTF_8);
+            position += length;
+            return result;
+        }
+
+        private void require(int length) throws InvalidConfigurationException {
+            if (length > buffer.length - position) {
+                throw new InvalidConfigurationException("Unexpected end of binary configuration");
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package org.bukkit.configuration.file;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writes saved configurations to disk.
+ * <p>
+ * Data is written to a temporary file next to the target, forced to disk
+ * and then renamed over the target, so a crash during a save leaves either
+ * the old or the new file behind, never a truncated one.
+ */
+final class ConfigurationFileWriter {
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Asynchronous saves run one at a time, in the order they were requested
+     */
+    static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Configuration Saver").setDaemon(true).build());
+    // Guarded by pending, as are the states and the sequence
+    private static final Map<File, PendingSave> pending = new HashMap<File, PendingSave>();
+    private static final Map<File, FileState> states = new HashMap<File, FileState>();
+    private static long sequence = 0;
+
+    private ConfigurationFileWriter() {}
+
+    /**
+     * Writes data to a file on the calling thread, replacing it atomically
+     * where the platform allows it.
+     * <p>
+     * Writes are ordered per file only, so this never waits for saves of
+     * other files. A save of the same file which was requested earlier and
+     * did not run yet is skipped once this data was written, so older data
+     * cannot be written over it.
+     *
+     * @param file the file to write
+     * @param data the contents, encoded with the platform's default charset
+     * @throws IOException if the file could not be written
+     */
+    static void write(File file, String data) throws IOException {
+        writeNow(file, data, null);
+    }
+
+    /**
+     * Writes raw data to a file on the calling thread, replacing it
+     * atomically where the platform allows it, in the same way as
+     * {@link #write(File, String)}
+     *
+     * @param file the file to write
+     * @param data the contents
+     * @throws IOException if the file could not be written
+     */
+    static void write(File file, byte[] data) throws IOException {
+        writeNow(file, null, data);
+    }
+
+    private static void writeNow(File file, String text, byte[] bytes) throws IOException {
+        File key = file.getAbsoluteFile();
+        FileState state;
+        long seq;
+        synchronized (pending) {
+            state = acquire(key);
+            seq = ++sequence;
+        }
+
+        try {
+            state.write(key, seq, text, bytes);
+        } finally {
+            release(key, state);
+        }
+    }
+
+    /**
+     * Gets the state of a file, which is kept while any write of the file
+     * is queued or running. Must be called while holding the pending lock.
+     */
+    private static FileState acquire(File key) {
+        FileState state = states.get(key);
+        if (state == null) {
+            state = new FileState();
+            states.put(key, state);
+        }
+        state.users++;
+        return state;
+    }
+
+    private static void release(File key, FileState state) {
+        synchronized (pending) {
+            if (--state.users == 0) {
+                states.remove(key);
+            }
+        }
+    }
+
+    private static void replace(File file, String text, byte[] bytes) throws IOException {
+        Files.createParentDirs(file);
+
+        File temp = File.createTempFile("." + file.getName() + "-", ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                FileChannel channel = out.getChannel();
+                if (bytes != null) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                } else {
+                    encode(channel, text);
+                }
+
+                channel.force(true);
+            } finally {
+                out.close();
+            }
+
+            if (!temp.renameTo(file)) {
+                // Some platforms cannot rename over an existing file, so the
+                // old file is moved aside until the new one is in place
+                moveAside(file, temp);
+            }
+            temp = null;
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private static void moveAside(File file, File temp) throws IOException {
+        File backup = new File(temp.getParentFile(), temp.getName() + ".old");
+        if (!file.renameTo(backup)) {
+            throw new IOException("Could not replace " + file);
+        }
+
+        if (!temp.renameTo(file)) {
+            if (!backup.renameTo(file)) {
+                throw new IOException("Could not move " + temp + " to " + file + ", the old file was left at " + backup);
+            }
+            throw new IOException("Could not move " + temp + " to " + file);
+        }
+        backup.delete();
+    }
+
+    private static void encode(FileChannel channel, String data) throws IOException {
+        CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.wrap(data);
+
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, buffer, true);
+            drain(channel, buffer);
+        } while (result.isOverflow());
+        do {
+            result = encoder.flush(buffer);
+            drain(channel, buffer);
+        } while (result.isOverflow());
+    }
+
+    /**
+     * Writes data to a file on the saver thread. If a save of the same file
+     * is still waiting to run, its data is replaced and its future returned
+     * instead of queuing another write.
+     *
+     * @param file the file to write
+     * @param data the contents
+     * @return a future completing once the latest data was written
+     */
+    static Future<Void> writeAsync(File file, String data) {
+        return schedule(file, data, null);
+    }
+
+    /**
+     * Writes raw data to a file on the saver thread, coalescing in the same
+     * way as {@link #writeAsync(File, String)}
+     *
+     * @param file the file to write
+     * @param data the contents
+     * @return a future completing once the latest data was written
+     */
+    static Future<Void> writeAsync(File file, byte[] data) {
+        return schedule(file, null, data);
+    }
+
+    private static Future<Void> schedule(File file, String text, byte[] bytes) {
+        File key = file.getAbsoluteFile();
+        synchronized (pending) {
+            PendingSave save = pending.get(key);
+            if (save != null) {
+                save.text = text;
+                save.bytes = bytes;
+                save.seq = ++sequence;
+                return save.future;
+            }
+
+            save = new PendingSave(key, acquire(key), ++sequence, text, bytes);
+            pending.put(key, save);
+            EXECUTOR.execute(save.future);
+            return save.future;
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Orders the writes of one file. Each write is numbered when it is
+     * requested, and a write older than the last one written is skipped.
+     */
+    private static final class FileState {
+        private int users;
+        private long written;
+
+        synchronized void write(File file, long seq, String text, byte[] bytes) throws IOException {
+            if (seq > written) {
+                replace(file, text, bytes);
+                written = seq;
+            }
+        }
+    }
+
+    private static final class PendingSave implements Callable<Void> {
+        private final File file;
+        private final FileState state;
+        private final FutureTask<Void> future = new FutureTask<Void>(this);
+        private long seq;
+        private String text;
+        private byte[] bytes;
+
+        PendingSave(File file, FileState state, long seq, String text, byte[] bytes) {
+            this.file = file;
+            this.state = state;
+            this.seq = seq;
+            this.text = text;
+            this.bytes = bytes;
+        }
+
+        public Void call() throws IOException {
+            long seq;
+            String text;
+            byte[] bytes;
+            synchronized (pending) {
+                pending.remove(file);
+                seq = this.seq;
+                text = this.text;
+                bytes = this.bytes;
+                this.text = null;
+                this.bytes = null;
+            }
+
+            try {
+                state.write(file, seq, text, bytes);
+            } finally {
+                release(file, state);
+            }
+            return null;
+        }
+    }
+}
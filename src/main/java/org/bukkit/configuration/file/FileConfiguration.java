@@ -1,17 +1,16 @@
 package org.bukkit.configuration.file;
 
-import com.google.common.io.Files;
-
 import org.apache.commons.lang.Validate;
 import org.bukkit.configuration.InvalidConfigurationException;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.Future;
 import org.bukkit.configuration.Configuration;
 import org.bukkit.configuration.MemoryConfiguration;
 
@@ -43,6 +42,10 @@ public abstract class FileConfiguration extends MemoryConfiguration {
      * If the file does not exist, it will be created. If already exists, it
      * will be overwritten. If it cannot be overwritten or created, an
      * exception will be thrown.
+     * <p>
+     * The data is written to a temporary file first and moved over the
+     * given file once it is on disk, so an interrupted save does not leave
+     * a partially written file behind.
      *
      * @param file File to save to.
      * @throws IOException Thrown when the given file cannot be written to for
@@ -52,17 +55,33 @@ public abstract class FileConfiguration extends MemoryConfiguration {
     public void save(File file) throws IOException {
         Validate.notNull(file, "File cannot be null");
 
-        Files.createParentDirs(file);
-
-        String data = saveToString();
+        ConfigurationFileWriter.write(file, saveToString());
+    }
 
-        FileWriter writer = new FileWriter(file);
+    /**
+     * Saves this {@link FileConfiguration} to the specified location without
+     * waiting for the file to be written.
+     * <p>
+     * The configuration is serialized immediately on the calling thread, so
+     * later changes are not part of this save. The file is written in the
+     * same way as {@link #save(File)}, but on a shared background thread.
+     * A later {@link #save(File)} of the same file is never overwritten by
+     * an earlier asynchronous save. When saves
+     * of the same file are requested faster than they are written, only the
+     * latest data is written and the same future is returned for each.
+     * <p>
+     * Saves which must complete before continuing, such as when a plugin is
+     * disabled, should wait on the returned future.
+     *
+     * @param file File to save to.
+     * @return Future completing when the file was written, or failing with
+     *     the {@link IOException} which prevented it.
+     * @throws IllegalArgumentException Thrown when file is null.
+     */
+    public Future<Void> saveAsync(File file) {
+        Validate.notNull(file, "File cannot be null");
 
-        try {
-            writer.write(data);
-        } finally {
-            writer.close();
-        }
+        return ConfigurationFileWriter.writeAsync(file, saveToString());
     }
 
     /**
@@ -130,10 +149,27 @@ public abstract class FileConfiguration extends MemoryConfiguration {
     public void load(InputStream stream) throws IOException, InvalidConfigurationException {
         Validate.notNull(stream, "Stream cannot be null");
 
-        InputStreamReader reader = new InputStreamReader(stream);
-        StringBuilder builder = new StringBuilder();
-        BufferedReader input = new BufferedReader(reader);
+        load(new InputStreamReader(stream));
+    }
+
+    /**
+     * Loads this {@link FileConfiguration} from the specified reader.
+     * <p>
+     * All the values contained within this configuration will be removed,
+     * leaving only settings and defaults, and the new values will be loaded
+     * from the given reader. The reader is closed afterwards.
+     *
+     * @param reader Reader to load from
+     * @throws IOException Thrown when the given reader cannot be read.
+     * @throws InvalidConfigurationException Thrown when the given reader
+     *     does not provide a valid Configuration.
+     * @throws IllegalArgumentException Thrown when reader is null.
+     */
+    public void load(Reader reader) throws IOException, InvalidConfigurationException {
+        Validate.notNull(reader, "Reader cannot be null");
 
+        BufferedReader input = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        StringBuilder builder = new StringBuilder();
 
         try {
             String line;
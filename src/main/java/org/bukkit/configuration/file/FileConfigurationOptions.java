@@ -31,6 +31,12 @@ public class FileConfigurationOptions extends MemoryConfigurationOptions {
         return this;
     }
 
+    @Override
+    public FileConfigurationOptions trackChanges(boolean value) {
+        super.trackChanges(value);
+        return this;
+    }
+
     /**
      * Gets the header that will be applied to the top of the saved output.
      * <p>
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.util.Map;
 import java.util.logging.Level;
 
@@ -67,6 +68,46 @@ public class YamlConfiguration extends FileConfiguration {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Sections are built while the yaml is parsed, without reading the whole
+     * input into memory first, when this configuration is empty and its
+     * class does not extend YamlConfiguration.
+     */
+    @Override
+    public void load(Reader reader) throws IOException, InvalidConfigurationException {
+        Validate.notNull(reader, "Reader cannot be null");
+
+        // Subclasses may rely on loadFromString, and existing values could
+        // not be restored if the input turns out to be invalid
+        if (getClass() != YamlConfiguration.class || !map.isEmpty()) {
+            super.load(reader);
+            return;
+        }
+
+        YamlStreamLoader.HeaderReader input = new YamlStreamLoader.HeaderReader(reader);
+        try {
+            new YamlStreamLoader(this).load(yaml.parse(input));
+        } catch (YAMLException e) {
+            map.clear();
+            if (input.getFailure() != null) {
+                throw input.getFailure();
+            }
+            throw new InvalidConfigurationException(e);
+        } catch (InvalidConfigurationException e) {
+            map.clear();
+            throw e;
+        } finally {
+            input.close();
+        }
+
+        String header = input.getHeader();
+        if (header.length() > 0) {
+            options().header(header);
+        }
+    }
+
     protected void convertMapsToSections(Map<?, ?> input, ConfigurationSection section) {
         for (Map.Entry<?, ?> entry : input.entrySet()) {
             String key = entry.getKey().toString();
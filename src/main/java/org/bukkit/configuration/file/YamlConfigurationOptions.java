@@ -30,6 +30,12 @@ public class YamlConfigurationOptions extends FileConfigurationOptions {
         return this;
     }
 
+    @Override
+    public YamlConfigurationOptions trackChanges(boolean value) {
+        super.trackChanges(value);
+        return this;
+    }
+
     @Override
     public YamlConfigurationOptions header(String value) {
         super.header(value);
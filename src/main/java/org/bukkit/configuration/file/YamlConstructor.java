@@ -4,6 +4,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.ScalarNode;
 import org.yaml.snakeyaml.constructor.SafeConstructor;
 import org.yaml.snakeyaml.error.YAMLException;
 import org.yaml.snakeyaml.nodes.Tag;
@@ -16,6 +17,22 @@ public class YamlConstructor extends SafeConstructor {
         this.yamlConstructors.put(Tag.MAP, new ConstructCustomObject());
     }
 
+    /**
+     * Constructs a node, remembering the result so aliases of the node get
+     * the same object.
+     */
+    Object constructValue(Node node) {
+        return constructObject(node);
+    }
+
+    /**
+     * Constructs a scalar without remembering it, for scalars which cannot
+     * be aliased.
+     */
+    Object constructScalarValue(ScalarNode node) {
+        return getConstructor(node).construct(node);
+    }
+
     private class ConstructCustomObject extends ConstructYamlMap {
         @Override
         public Object construct(Node node) {
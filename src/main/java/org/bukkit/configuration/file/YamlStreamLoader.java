@@ -0,0 +1,501 @@
+package org.bukkit.configuration.file;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * Loads yaml into a {@link ConfigurationSection} straight from the parser's
+ * event stream, producing the same result as loading the whole document
+ * and converting its maps to sections, without holding either the text or
+ * the intermediate maps in memory.
+ * <p>
+ * Mappings become sections as soon as their first key is read, unless that
+ * key marks a serialized object. Anchored or explicitly tagged collections
+ * and merge values are rare, so they are composed into nodes and handed to
+ * {@link YamlConstructor} as a whole.
+ */
+final class YamlStreamLoader {
+    private static final int PENDING = 0; // mapping in a section, first key not read yet
+    private static final int SECTION = 1;
+    private static final int MAP = 2;
+    private static final int LIST = 3;
+    private static final int NODE_MAP = 4;
+    private static final int NODE_LIST = 5;
+
+    private final ConfigurationSection root;
+    private final YamlConstructor constructor = new YamlConstructor();
+    private final Resolver resolver = new Resolver();
+    private final Map<String, Node> anchors = new HashMap<String, Node>();
+    private final List<Frame> stack = new ArrayList<Frame>();
+
+    YamlStreamLoader(ConfigurationSection root) {
+        this.root = root;
+    }
+
+    /**
+     * Loads a single yaml document into the root section
+     *
+     * @param events the parser events
+     * @throws InvalidConfigurationException if the document is not a valid
+     *     configuration
+     * @throws YAMLException if the document is not valid yaml
+     */
+    void load(Iterable<Event> events) throws InvalidConfigurationException {
+        int documents = 0;
+        for (Event event : events) {
+            if (event instanceof DocumentStartEvent) {
+                if (++documents > 1) {
+                    throw new InvalidConfigurationException("Expected a single document in the stream");
+                }
+            } else if (event instanceof ScalarEvent) {
+                scalar((ScalarEvent) event);
+            } else if (event instanceof AliasEvent) {
+                alias((AliasEvent) event);
+            } else if (event instanceof MappingStartEvent) {
+                start((CollectionStartEvent) event, true);
+            } else if (event instanceof SequenceStartEvent) {
+                start((CollectionStartEvent) event, false);
+            } else if (event instanceof CollectionEndEvent) {
+                end(event);
+            }
+        }
+    }
+
+    private void scalar(ScalarEvent event) throws InvalidConfigurationException {
+        String tag = event.getTag();
+        boolean resolved = tag == null || tag.equals("!");
+        Tag nodeTag = resolved ? resolver.resolve(NodeId.scalar, event.getValue(), event.getImplicit().canOmitTagInPlainScalar()) : new Tag(tag);
+        ScalarNode node = new ScalarNode(nodeTag, resolved, event.getValue(), event.getStartMark(), event.getEndMark(), event.getStyle());
+        if (event.getAnchor() != null) {
+            anchors.put(event.getAnchor(), node);
+        }
+
+        Frame top = peek();
+        if (top != null && top.isNode()) {
+            top.add(node);
+        } else if (top != null && top.isMapping() && !top.hasKey && nodeTag.equals(Tag.MERGE)) {
+            if (top.kind == PENDING) {
+                openSection(top);
+            }
+            top.hasKey = true;
+            top.merge = true;
+        } else {
+            put(event.getAnchor() != null ? constructor.constructValue(node) : constructor.constructScalarValue(node));
+        }
+    }
+
+    private void alias(AliasEvent event) throws InvalidConfigurationException {
+        Node node = anchors.get(event.getAnchor());
+        if (node == null) {
+            throw new InvalidConfigurationException("Found undefined alias " + event.getAnchor());
+        }
+
+        Frame top = peek();
+        if (top != null && top.isNode()) {
+            top.add(node);
+        } else {
+            put(constructor.constructValue(node));
+        }
+    }
+
+    private void start(CollectionStartEvent event, boolean mapping) {
+        Frame top = peek();
+        Frame frame = new Frame();
+        String tag = event.getTag();
+        boolean explicit = tag != null && !tag.equals("!") && !tag.equals((mapping ? Tag.MAP : Tag.SEQ).getValue());
+
+        if (explicit || event.getAnchor() != null || (top != null && (top.isNode() || top.merge || (top.isMapping() && !top.hasKey)))) {
+            frame.kind = mapping ? NODE_MAP : NODE_LIST;
+            frame.start = event;
+            if (mapping) {
+                frame.tuples = new ArrayList<NodeTuple>();
+            } else {
+                frame.nodes = new ArrayList<Node>();
+            }
+        } else if (!mapping) {
+            frame.kind = LIST;
+            frame.list = new ArrayList<Object>();
+        } else if (top == null) {
+            frame.kind = PENDING;
+            frame.isRoot = true;
+        } else if (top.kind == SECTION) {
+            frame.kind = PENDING;
+            frame.section = top.section;
+            frame.name = String.valueOf(top.key);
+        } else {
+            frame.kind = MAP;
+            frame.map = new LinkedHashMap<Object, Object>();
+        }
+        stack.add(frame);
+    }
+
+    private void end(Event event) throws InvalidConfigurationException {
+        Frame frame = stack.remove(stack.size() - 1);
+
+        switch (frame.kind) {
+        case PENDING:
+            if (!frame.isRoot) {
+                frame.section.createSection(frame.name);
+                peek().clearKey();
+            }
+            break;
+        case SECTION:
+            if (frame.typed) {
+                // The type key was not the first one; rebuild the object
+                Map<Object, Object> values = toMap(frame.section);
+                if (frame.isRoot) {
+                    throw new InvalidConfigurationException("Top level is not a Map.");
+                }
+                frame.section.getParent().set(frame.section.getName(), null);
+                put(deserialize(values));
+            } else if (!frame.isRoot) {
+                peek().clearKey();
+            }
+            break;
+        case MAP:
+            put(frame.map.containsKey(ConfigurationSerialization.SERIALIZED_TYPE_KEY) ? deserialize(frame.map) : frame.map);
+            break;
+        case LIST:
+            put(frame.list);
+            break;
+        default:
+            CollectionStartEvent start = frame.start;
+            String tag = start.getTag();
+            boolean resolved = tag == null || tag.equals("!");
+            Node node;
+            if (frame.kind == NODE_MAP) {
+                Tag nodeTag = resolved ? resolver.resolve(NodeId.mapping, null, start.getImplicit()) : new Tag(tag);
+                node = new MappingNode(nodeTag, resolved, frame.tuples, start.getStartMark(), event.getEndMark(), start.getFlowStyle());
+            } else {
+                Tag nodeTag = resolved ? resolver.resolve(NodeId.sequence, null, start.getImplicit()) : new Tag(tag);
+                node = new SequenceNode(nodeTag, resolved, frame.nodes, start.getStartMark(), event.getEndMark(), start.getFlowStyle());
+            }
+            if (start.getAnchor() != null) {
+                anchors.put(start.getAnchor(), node);
+            }
+
+            Frame top = peek();
+            if (top != null && top.isNode()) {
+                top.add(node);
+            } else {
+                put(constructor.constructValue(node));
+            }
+        }
+    }
+
+    /**
+     * Hands a finished key or value to the innermost collection
+     */
+    private void put(Object value) throws InvalidConfigurationException {
+        Frame top = peek();
+        if (top == null) {
+            if (value instanceof Map) {
+                convertMapsToSections((Map<?, ?>) value, root);
+            } else if (value != null) {
+                throw new InvalidConfigurationException("Top level is not a Map.");
+            }
+            return;
+        }
+
+        if (top.kind == LIST) {
+            top.list.add(value);
+        } else if (!top.hasKey) {
+            if (top.kind == PENDING) {
+                if (ConfigurationSerialization.SERIALIZED_TYPE_KEY.equals(value)) {
+                    top.kind = MAP;
+                    top.map = new LinkedHashMap<Object, Object>();
+                } else {
+                    openSection(top);
+                }
+            } else if (top.kind == SECTION && ConfigurationSerialization.SERIALIZED_TYPE_KEY.equals(value)) {
+                top.typed = true;
+            }
+            top.key = value;
+            top.hasKey = true;
+        } else if (top.merge) {
+            top.clearKey();
+            merge(top, value);
+        } else {
+            Object key = top.key;
+            top.clearKey();
+            set(top, key, value);
+        }
+    }
+
+    private void openSection(Frame frame) {
+        frame.kind = SECTION;
+        frame.section = frame.isRoot ? root : frame.section.createSection(frame.name);
+    }
+
+    private void set(Frame frame, Object key, Object value) {
+        if (frame.kind == MAP) {
+            frame.map.put(key, value);
+        } else if (value instanceof Map) {
+            convertMapsToSections((Map<?, ?>) value, frame.section.createSection(String.valueOf(key)));
+        } else {
+            frame.section.set(String.valueOf(key), value);
+        }
+    }
+
+    private void merge(Frame frame, Object value) throws InvalidConfigurationException {
+        if (value instanceof Map) {
+            merge(frame, (Map<?, ?>) value);
+        } else if (value instanceof List) {
+            // Earlier mappings take precedence
+            for (Object element : (List<?>) value) {
+                if (!(element instanceof Map)) {
+                    throw new InvalidConfigurationException("Expected a mapping for merging, but found " + element);
+                }
+                merge(frame, (Map<?, ?>) element);
+            }
+        } else {
+            throw new InvalidConfigurationException("Expected a mapping or list of mappings for merging, but found " + value);
+        }
+    }
+
+    private void merge(Frame frame, Map<?, ?> values) {
+        for (Map.Entry<?, ?> entry : values.entrySet()) {
+            // Keys given explicitly win over merged ones
+            boolean present = frame.kind == MAP ? frame.map.containsKey(entry.getKey()) : frame.section.get(String.valueOf(entry.getKey()), null) != null;
+            if (!present) {
+                set(frame, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private Frame peek() {
+        return stack.isEmpty() ? null : stack.get(stack.size() - 1);
+    }
+
+    private static void convertMapsToSections(Map<?, ?> input, ConfigurationSection section) {
+        for (Map.Entry<?, ?> entry : input.entrySet()) {
+            String key = entry.getKey().toString();
+            Object value = entry.getValue();
+
+            if (value instanceof Map) {
+                convertMapsToSections((Map<?, ?>) value, section.createSection(key));
+            } else {
+                section.set(key, value);
+            }
+        }
+    }
+
+    private static Map<Object, Object> toMap(ConfigurationSection section) {
+        Map<Object, Object> result = new LinkedHashMap<Object, Object>();
+        for (Map.Entry<String, Object> entry : section.getValues(false).entrySet()) {
+            Object value = entry.getValue();
+            result.put(entry.getKey(), value instanceof ConfigurationSection ? toMap((ConfigurationSection) value) : value);
+        }
+        return result;
+    }
+
+    private static Object deserialize(Map<?, ?> raw) {
+        Map<String, Object> typed = new LinkedHashMap<String, Object>(raw.size());
+        for (Map.Entry<?, ?> entry : raw.entrySet()) {
+            typed.put(entry.getKey().toString(), entry.getValue());
+        }
+
+        try {
+            return ConfigurationSerialization.deserializeObject(typed);
+        } catch (IllegalArgumentException ex) {
+            throw new YAMLException("Could not deserialize object", ex);
+        }
+    }
+
+    private static final class Frame {
+        int kind;
+        boolean isRoot;
+        ConfigurationSection section; // the parent section while pending
+        String name;
+        Map<Object, Object> map;
+        List<Object> list;
+        CollectionStartEvent start;
+        List<NodeTuple> tuples;
+        List<Node> nodes;
+        Node keyNode;
+
+        Object key;
+        boolean hasKey;
+        boolean merge;
+        boolean typed;
+
+        boolean isMapping() {
+            return kind == PENDING || kind == SECTION || kind == MAP;
+        }
+
+        boolean isNode() {
+            return kind == NODE_MAP || kind == NODE_LIST;
+        }
+
+        void clearKey() {
+            key = null;
+            hasKey = false;
+            merge = false;
+        }
+
+        void add(Node node) {
+            if (kind == NODE_LIST) {
+                nodes.add(node);
+            } else if (keyNode == null) {
+                keyNode = node;
+            } else {
+                tuples.add(new NodeTuple(keyNode, node));
+                keyNode = null;
+            }
+        }
+    }
+
+    /**
+     * Passes characters through while collecting the header the same way
+     * {@link YamlConfiguration#parseHeader(String)} does, looking at lines
+     * only until the header ends.
+     */
+    static final class HeaderReader extends FilterReader {
+        private final StringBuilder header = new StringBuilder();
+        private final StringBuilder line = new StringBuilder();
+        private int lineLength = 0;
+        private int lineIndex = 0;
+        private boolean comment = true;
+        private boolean foundHeader = false;
+        private boolean lastWasReturn = false;
+        private boolean done = false;
+        private IOException failure;
+
+        HeaderReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = readChecked(null, 0, 0);
+            if (c >= 0) {
+                accept((char) c);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = readChecked(buffer, offset, length);
+            for (int i = 0; i < read && !done; i++) {
+                accept(buffer[offset + i]);
+            }
+            return read;
+        }
+
+        private int readChecked(char[] buffer, int offset, int length) throws IOException {
+            try {
+                return buffer == null ? in.read() : in.read(buffer, offset, length);
+            } catch (IOException ex) {
+                failure = ex;
+                throw ex;
+            }
+        }
+
+        /**
+         * Gets the exception the underlying reader failed with, which the
+         * parser reports wrapped in its own exception
+         *
+         * @return the failure, or null if reading succeeded
+         */
+        IOException getFailure() {
+            return failure;
+        }
+
+        /**
+         * Gets the header once the whole input was read
+         *
+         * @return the header, or an empty string if there is none
+         */
+        String getHeader() {
+            if (!done) {
+                if (lastWasReturn) {
+                    lastWasReturn = false;
+                    append('\r');
+                }
+                // The text after the last line break is a line of its own,
+                // even if it is empty
+                endLine();
+                done = true;
+            }
+            return header.toString();
+        }
+
+        private void accept(char c) {
+            if (done) {
+                return;
+            }
+            // Lines end with "\n" or "\r\n", a lone '\r' is part of the line
+            if (lastWasReturn) {
+                lastWasReturn = false;
+                if (c == '\n') {
+                    endLine();
+                    return;
+                }
+                append('\r');
+            }
+            if (c == '\r') {
+                lastWasReturn = true;
+            } else if (c == '\n') {
+                endLine();
+            } else {
+                append(c);
+            }
+        }
+
+        private void append(char c) {
+            if (lineLength < YamlConfiguration.COMMENT_PREFIX.length()) {
+                comment &= c == YamlConfiguration.COMMENT_PREFIX.charAt(lineLength);
+            } else if (comment) {
+                line.append(c);
+            }
+            lineLength++;
+        }
+
+        private void endLine() {
+            if (comment && lineLength >= YamlConfiguration.COMMENT_PREFIX.length()) {
+                if (lineIndex > 0) {
+                    header.append('\n');
+                }
+                header.append(line);
+                foundHeader = true;
+            } else if (foundHeader && lineLength == 0) {
+                header.append('\n');
+            } else if (foundHeader) {
+                done = true;
+            }
+
+            lineIndex++;
+            lineLength = 0;
+            comment = true;
+            line.setLength(0);
+        }
+    }
+}
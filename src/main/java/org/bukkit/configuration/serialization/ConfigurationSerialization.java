@@ -4,8 +4,9 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,13 +19,24 @@ import org.bukkit.potion.PotionEffect;
 import org.bukkit.util.BlockVector;
 import org.bukkit.util.Vector;
 
+import com.google.common.collect.MapMaker;
+
 /**
  * Utility class for storing and retrieving classes for {@link Configuration}.
+ * <p>
+ * The methods used to deserialize a class are looked up once and kept until
+ * the class is unregistered.
  */
 public class ConfigurationSerialization {
     public static final String SERIALIZED_TYPE_KEY = "==";
     private final Class<? extends ConfigurationSerializable> clazz;
-    private static Map<String, Class<? extends ConfigurationSerializable>> aliases = new HashMap<String, Class<? extends ConfigurationSerializable>>();
+    private volatile Factories factories;
+    private static final ConcurrentMap<String, Class<? extends ConfigurationSerializable>> aliases = new ConcurrentHashMap<String, Class<? extends ConfigurationSerializable>>();
+    // Weak like classAliases. Each serializer refers to its class, so the
+    // serializers are soft as well, or they would keep their keys alive
+    private static final ConcurrentMap<Class<? extends ConfigurationSerializable>, ConfigurationSerialization> serializers = new MapMaker().weakKeys().softValues().makeMap();
+    // Aliases only depend on annotations, and holding them must not keep classes of disabled plugins loaded
+    private static final ConcurrentMap<Class<? extends ConfigurationSerializable>, String> classAliases = new MapMaker().weakKeys().makeMap();
 
     static {
         registerClass(Vector.class);
@@ -103,34 +115,41 @@ public class ConfigurationSerialization {
     public ConfigurationSerializable deserialize(Map<String, ?> args) {
         Validate.notNull(args, "Args must not be null");
 
-        ConfigurationSerializable result = null;
-        Method method = null;
+        Factories factories = this.factories;
+        if (factories == null) {
+            factories = new Factories(getMethod("deserialize", true), getMethod("valueOf", true), getConstructor());
+            this.factories = factories;
+        }
 
-        if (result == null) {
-            method = getMethod("deserialize", true);
+        ConfigurationSerializable result = null;
 
-            if (method != null) {
-                result = deserializeViaMethod(method, args);
-            }
+        if (factories.deserialize != null) {
+            result = deserializeViaMethod(factories.deserialize, args);
         }
 
-        if (result == null) {
-            method = getMethod("valueOf", true);
+        if (result == null && factories.valueOf != null) {
+            result = deserializeViaMethod(factories.valueOf, args);
+        }
 
-            if (method != null) {
-                result = deserializeViaMethod(method, args);
-            }
+        if (result == null && factories.constructor != null) {
+            result = deserializeViaCtor(factories.constructor, args);
         }
 
-        if (result == null) {
-            Constructor<? extends ConfigurationSerializable> constructor = getConstructor();
+        return result;
+    }
 
-            if (constructor != null) {
-                result = deserializeViaCtor(constructor, args);
+    private static ConfigurationSerialization getSerializer(Class<? extends ConfigurationSerializable> clazz) {
+        ConfigurationSerialization serializer = serializers.get(clazz);
+
+        if (serializer == null) {
+            serializer = new ConfigurationSerialization(clazz);
+            ConfigurationSerialization existing = serializers.putIfAbsent(clazz, serializer);
+            if (existing != null) {
+                serializer = existing;
             }
         }
 
-        return result;
+        return serializer;
     }
 
     /**
@@ -149,7 +168,7 @@ public class ConfigurationSerialization {
      * @return New instance of the specified class
      */
     public static ConfigurationSerializable deserializeObject(Map<String, ?> args, Class<? extends ConfigurationSerializable> clazz) {
-        return new ConfigurationSerialization(clazz).deserialize(args);
+        return getSerializer(clazz).deserialize(args);
     }
 
     /**
@@ -188,7 +207,7 @@ public class ConfigurationSerialization {
             throw new IllegalArgumentException("Args doesn't contain type key ('" + SERIALIZED_TYPE_KEY + "')");
         }
 
-        return new ConfigurationSerialization(clazz).deserialize(args);
+        return getSerializer(clazz).deserialize(args);
     }
 
     /**
@@ -224,7 +243,11 @@ public class ConfigurationSerialization {
      * @param alias Alias to unregister
      */
     public static void unregisterClass(String alias) {
-        aliases.remove(alias);
+        Class<? extends ConfigurationSerializable> clazz = aliases.remove(alias);
+        if (clazz != null && !aliases.containsValue(clazz)) {
+            serializers.remove(clazz);
+            classAliases.remove(clazz);
+        }
     }
 
     /**
@@ -237,6 +260,8 @@ public class ConfigurationSerialization {
         while (aliases.values().remove(clazz)) {
             ;
         }
+        serializers.remove(clazz);
+        classAliases.remove(clazz);
     }
 
     /**
@@ -258,6 +283,17 @@ public class ConfigurationSerialization {
      * @return Alias to use for the class
      */
     public static String getAlias(Class<? extends ConfigurationSerializable> clazz) {
+        String alias = classAliases.get(clazz);
+
+        if (alias == null) {
+            alias = findAlias(clazz);
+            classAliases.put(clazz, alias);
+        }
+
+        return alias;
+    }
+
+    private static String findAlias(Class<? extends ConfigurationSerializable> clazz) {
         DelegateDeserialization delegate = clazz.getAnnotation(DelegateDeserialization.class);
 
         if (delegate != null) {
@@ -278,4 +314,20 @@ public class ConfigurationSerialization {
 
         return clazz.getName();
     }
+
+    /**
+     * The ways a class can be deserialized, as found by {@link
+     * #getMethod(String, boolean)} and {@link #getConstructor()}
+     */
+    private static final class Factories {
+        private final Method deserialize;
+        private final Method valueOf;
+        private final Constructor<? extends ConfigurationSerializable> constructor;
+
+        Factories(Method deserialize, Method valueOf, Constructor<? extends ConfigurationSerializable> constructor) {
+            this.deserialize = deserialize;
+            this.valueOf = valueOf;
+            this.constructor = constructor;
+        }
+    }
 }
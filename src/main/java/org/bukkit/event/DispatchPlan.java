@@ -0,0 +1,106 @@
+package org.bukkit.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.plugin.RegisteredListener;
+
+/**
+ * The listeners of a {@link HandlerList} prepared for dispatching.
+ * <p>
+ * Only listeners of plugins which were enabled when the plan was baked are
+ * included, in priority order. Consecutive listeners which share the same
+ * ignore-cancelled setting are grouped into runs, so a dispatcher can skip
+ * the remainder of a run as soon as the event has been cancelled.
+ * <p>
+ * Plans are immutable; they are obtained from
+ * {@link HandlerList#getDispatchPlan()}.
+ */
+public final class DispatchPlan {
+    private final RegisteredListener[] listeners;
+    private final int[] runEnds;
+    private final boolean[] runsIgnoreCancelled;
+    private final int version;
+
+    DispatchPlan(RegisteredListener[] registered, int version) {
+        List<RegisteredListener> enabled = new ArrayList<RegisteredListener>(registered.length);
+        for (RegisteredListener listener : registered) {
+            if (listener.getPlugin().isEnabled()) {
+                enabled.add(listener);
+            }
+        }
+
+        int runs = 0;
+        int[] ends = new int[enabled.size()];
+        boolean[] ignores = new boolean[enabled.size()];
+        for (int i = 0; i < enabled.size(); i++) {
+            boolean ignoreCancelled = enabled.get(i).isIgnoringCancelled();
+            if (runs == 0 || ignores[runs - 1] != ignoreCancelled) {
+                ignores[runs++] = ignoreCancelled;
+            }
+            ends[runs - 1] = i + 1;
+        }
+
+        this.listeners = enabled.toArray(new RegisteredListener[enabled.size()]);
+        this.runEnds = new int[runs];
+        this.runsIgnoreCancelled = new boolean[runs];
+        System.arraycopy(ends, 0, runEnds, 0, runs);
+        System.arraycopy(ignores, 0, runsIgnoreCancelled, 0, runs);
+        this.version = version;
+    }
+
+    /**
+     * Gets the listeners to call, in order. The returned array must not be
+     * modified.
+     *
+     * @return the listeners of enabled plugins
+     */
+    public RegisteredListener[] getListeners() {
+        return listeners;
+    }
+
+    /**
+     * Gets the number of runs in this plan
+     *
+     * @return the number of runs
+     */
+    public int getRunCount() {
+        return runEnds.length;
+    }
+
+    /**
+     * Gets the index into {@link #getListeners()} of the first listener of
+     * a run
+     *
+     * @param run the run
+     * @return the inclusive start index of the run
+     */
+    public int getRunStart(int run) {
+        return run == 0 ? 0 : runEnds[run - 1];
+    }
+
+    /**
+     * Gets the index into {@link #getListeners()} just past the last
+     * listener of a run
+     *
+     * @param run the run
+     * @return the exclusive end index of the run
+     */
+    public int getRunEnd(int run) {
+        return runEnds[run];
+    }
+
+    /**
+     * Checks if every listener of a run ignores cancelled events
+     *
+     * @param run the run
+     * @return true if the run's listeners ignore cancelled events
+     */
+    public boolean isIgnoringCancelled(int run) {
+        return runsIgnoreCancelled[run];
+    }
+
+    int getVersion() {
+        return version;
+    }
+}
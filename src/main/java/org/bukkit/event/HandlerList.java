@@ -5,6 +5,7 @@ import org.bukkit.plugin.RegisteredListener;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A list of event handlers, stored per-event. Based on lahwran's fevents.
@@ -14,21 +15,60 @@ public class HandlerList {
     /**
      * Handler array. This field being an array is the key to this system's
      * speed.
+     * <p>
+     * The array is never modified once published. Every change to the
+     * handler slots replaces it with a freshly baked copy, so readers only
+     * need the volatile read and never have to lock.
      */
-    private volatile RegisteredListener[] handlers = null;
+    private volatile RegisteredListener[] handlers = new RegisteredListener[0];
 
     /**
      * Dynamic handler lists. These are changed using register() and
-     * unregister() and are automatically baked to the handlers array any time
-     * they have changed.
+     * unregister() and are immediately re-baked to the handlers array any
+     * time they have changed.
      */
     private final EnumMap<EventPriority, ArrayList<RegisteredListener>> handlerslots;
 
+    /**
+     * Listeners of enabled plugins grouped for dispatch, rebuilt lazily
+     * whenever it is null or older than dispatchVersion.
+     */
+    private volatile DispatchPlan plan = null;
+
+    /**
+     * Bit mask of the priority slots which currently hold listeners, kept in
+     * step with the handlers array.
+     */
+    private volatile int listenedSlots = 0;
+
+    /**
+     * Position of this list in allLists, used to index ListenerPresence
+     * snapshots.
+     */
+    private final int index;
+
     /**
      * List of all HandlerLists which have been created, for use in bakeAll()
      */
     private static ArrayList<HandlerList> allLists = new ArrayList<HandlerList>();
 
+    /**
+     * Incremented every time any list gains its first listener for a
+     * priority or loses its last one.
+     */
+    private static final AtomicInteger presenceVersion = new AtomicInteger();
+
+    /**
+     * Last built registry-wide presence snapshot, possibly outdated.
+     */
+    private static volatile ListenerPresence presence = null;
+
+    /**
+     * Incremented whenever a plugin is enabled or disabled, outdating every
+     * dispatch plan.
+     */
+    private static final AtomicInteger dispatchVersion = new AtomicInteger();
+
     /**
      * Bake all handler lists. Best used just after all normal event
      * registration is complete, ie just after all plugins are loaded if
@@ -42,6 +82,16 @@ public class HandlerList {
         }
     }
 
+    /**
+     * Marks the dispatch plans of all handler lists as outdated, so they are
+     * rebuilt on their next use. This must be called whenever a plugin is
+     * enabled or disabled, as plans only contain the listeners of plugins
+     * which were enabled when they were built.
+     */
+    public static void invalidateDispatchPlans() {
+        dispatchVersion.incrementAndGet();
+    }
+
     /**
      * Unregister all listeners from all handler lists.
      */
@@ -52,7 +102,7 @@ public class HandlerList {
                     for (List<RegisteredListener> list : h.handlerslots.values()) {
                         list.clear();
                     }
-                    h.handlers = null;
+                    h.rebake();
                 }
             }
         }
@@ -95,6 +145,7 @@ public class HandlerList {
             handlerslots.put(o, new ArrayList<RegisteredListener>());
         }
         synchronized (allLists) {
+            index = allLists.size();
             allLists.add(this);
         }
     }
@@ -105,10 +156,8 @@ public class HandlerList {
      * @param listener listener to register
      */
     public synchronized void register(RegisteredListener listener) {
-        if (handlerslots.get(listener.getPriority()).contains(listener))
-            throw new IllegalStateException("This listener is already registered to priority " + listener.getPriority().toString());
-        handlers = null;
-        handlerslots.get(listener.getPriority()).add(listener);
+        register0(listener);
+        rebake();
     }
 
     /**
@@ -116,12 +165,22 @@ public class HandlerList {
      *
      * @param listeners listeners to register
      */
-    public void registerAll(Collection<RegisteredListener> listeners) {
-        for (RegisteredListener listener : listeners) {
-            register(listener);
+    public synchronized void registerAll(Collection<RegisteredListener> listeners) {
+        try {
+            for (RegisteredListener listener : listeners) {
+                register0(listener);
+            }
+        } finally {
+            rebake();
         }
     }
 
+    private void register0(RegisteredListener listener) {
+        if (handlerslots.get(listener.getPriority()).contains(listener))
+            throw new IllegalStateException("This listener is already registered to priority " + listener.getPriority().toString());
+        handlerslots.get(listener.getPriority()).add(listener);
+    }
+
     /**
      * Remove a listener from a specific order slot
      *
@@ -129,7 +188,7 @@ public class HandlerList {
      */
     public synchronized void unregister(RegisteredListener listener) {
         if (handlerslots.get(listener.getPriority()).remove(listener)) {
-            handlers = null;
+            rebake();
         }
     }
 
@@ -148,7 +207,7 @@ public class HandlerList {
                 }
             }
         }
-        if (changed) handlers = null;
+        if (changed) rebake();
     }
 
     /**
@@ -166,23 +225,128 @@ public class HandlerList {
                 }
             }
         }
-        if (changed) handlers = null;
+        if (changed) rebake();
     }
 
     /**
      * Bake HashMap and ArrayLists to 2d array - does nothing if not necessary
      */
     public synchronized void bake() {
-        if (handlers != null) return; // don't re-bake when still valid
+        if (handlers == null) {
+            rebake();
+        }
+        getDispatchPlan();
+    }
+
+    /**
+     * Publishes a new handler array built from the current handler slots.
+     * Must be called while holding this list's lock.
+     */
+    private void rebake() {
         List<RegisteredListener> entries = new ArrayList<RegisteredListener>();
+        int slots = 0;
         for (Entry<EventPriority, ArrayList<RegisteredListener>> entry : handlerslots.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                slots |= 1 << entry.getKey().getSlot();
+            }
             entries.addAll(entry.getValue());
         }
         handlers = entries.toArray(new RegisteredListener[entries.size()]);
+        plan = null;
+        if (slots != listenedSlots) {
+            listenedSlots = slots;
+            presenceVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get the dispatch plan of this handler list, which holds the baked
+     * listeners of enabled plugins grouped by their ignore-cancelled
+     * setting.
+     * <p>
+     * This does not lock unless the plan has to be rebuilt, which only
+     * happens after registration changes or after
+     * {@link #invalidateDispatchPlans()}.
+     *
+     * @return the current dispatch plan
+     */
+    public DispatchPlan getDispatchPlan() {
+        DispatchPlan current = plan;
+        if (current != null && current.getVersion() == dispatchVersion.get()) {
+            return current;
+        }
+        synchronized (this) {
+            current = plan;
+            int version = dispatchVersion.get();
+            if (current == null || current.getVersion() != version) {
+                current = new DispatchPlan(getRegisteredListeners(), version);
+                plan = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Checks if any listener is registered to this handler list.
+     * <p>
+     * This is a single volatile read, so it may be used to avoid building
+     * an event nobody listens to, by checking the event's static
+     * <code>getHandlerList()</code> first.
+     *
+     * @return true if at least one listener is registered
+     */
+    public boolean hasListeners() {
+        return listenedSlots != 0;
+    }
+
+    /**
+     * Checks if any listener is registered to this handler list at the given
+     * priority.
+     *
+     * @param priority the priority to check
+     * @return true if at least one listener is registered at the priority
+     */
+    public boolean hasListeners(EventPriority priority) {
+        return (listenedSlots & (1 << priority.getSlot())) != 0;
+    }
+
+    /**
+     * Gets a snapshot of which handler lists currently have listeners.
+     * <p>
+     * The snapshot is rebuilt only after some list gained its first or lost
+     * its last listener for a priority, so it is cheap to fetch once per
+     * tick and then query for every event the server is about to build.
+     *
+     * @return the current listener presence snapshot
+     */
+    public static ListenerPresence getListenerPresence() {
+        ListenerPresence current = presence;
+        if (current != null && current.getVersion() == presenceVersion.get()) {
+            return current;
+        }
+        synchronized (allLists) {
+            // The version is read before the masks, so a concurrent change
+            // only ever makes this snapshot look older than it is
+            int version = presenceVersion.get();
+            int[] slots = new int[allLists.size()];
+            for (HandlerList h : allLists) {
+                slots[h.index] = h.listenedSlots;
+            }
+            current = new ListenerPresence(slots, version);
+            presence = current;
+            return current;
+        }
+    }
+
+    int getIndex() {
+        return index;
     }
 
     /**
      * Get the baked registered listeners associated with this handler list
+     * <p>
+     * This does not lock; the returned array is a snapshot which is never
+     * modified and must not be modified by the caller.
      *
      * @return the array of registered listeners
      */
@@ -0,0 +1,46 @@
+package org.bukkit.event;
+
+/**
+ * An immutable snapshot of which {@link HandlerList}s had listeners
+ * registered at the time it was taken.
+ * <p>
+ * Obtained from {@link HandlerList#getListenerPresence()}. Handler lists
+ * created after the snapshot was taken are reported as having no listeners.
+ */
+public final class ListenerPresence {
+    private final int[] slots;
+    private final int version;
+
+    ListenerPresence(int[] slots, int version) {
+        this.slots = slots;
+        this.version = version;
+    }
+
+    /**
+     * Checks if the given handler list had any listener registered
+     *
+     * @param handlers the handler list to check
+     * @return true if at least one listener was registered
+     */
+    public boolean hasListeners(HandlerList handlers) {
+        int index = handlers.getIndex();
+        return index < slots.length && slots[index] != 0;
+    }
+
+    /**
+     * Checks if the given handler list had any listener registered at the
+     * given priority
+     *
+     * @param handlers the handler list to check
+     * @param priority the priority to check
+     * @return true if at least one listener was registered at the priority
+     */
+    public boolean hasListeners(HandlerList handlers, EventPriority priority) {
+        int index = handlers.getIndex();
+        return index < slots.length && (slots[index] & (1 << priority.getSlot())) != 0;
+    }
+
+    int getVersion() {
+        return version;
+    }
+}
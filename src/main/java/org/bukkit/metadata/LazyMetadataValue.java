@@ -2,6 +2,7 @@ package org.bukkit.metadata;
 
 import java.lang.ref.SoftReference;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.Validate;
 import org.bukkit.plugin.Plugin;
@@ -16,12 +17,21 @@ import org.bukkit.plugin.Plugin;
  * by a {@link CacheStrategy} or invalidated at the individual or plugin
  * level. Once invalidated, the LazyMetadataValue will recompute its value
  * when asked.
+ * <p>
+ * The number of times a value was served from the cache or had to be
+ * computed is counted, see {@link #getHitCount()} and {@link
+ * #getMissCount()}.
  */
 public class LazyMetadataValue extends MetadataValueAdapter implements MetadataValue {
     private Callable<Object> lazyValue;
     private CacheStrategy cacheStrategy;
     private SoftReference<Object> internalValue;
+    private long expiryNanos;
+    private long evaluatedAt;
+    private long hits;
+    private long misses;
     private static final Object ACTUALLY_NULL = new Object();
+    private static final long NANOS_PER_TICK = TimeUnit.MILLISECONDS.toNanos(50);
 
     /**
      * Initialized a LazyMetadataValue object with the default
@@ -47,12 +57,53 @@ public class LazyMetadataValue extends MetadataValueAdapter implements MetadataV
     public LazyMetadataValue(Plugin owningPlugin, CacheStrategy cacheStrategy, Callable<Object> lazyValue) {
         super(owningPlugin);
         Validate.notNull(cacheStrategy, "cacheStrategy cannot be null");
+        Validate.isTrue(cacheStrategy != CacheStrategy.CACHE_FOR_DURATION, "CACHE_FOR_DURATION requires a duration");
         Validate.notNull(lazyValue, "lazyValue cannot be null");
         this.internalValue = new SoftReference<Object>(null);
         this.lazyValue = lazyValue;
         this.cacheStrategy = cacheStrategy;
     }
 
+    /**
+     * Initializes a LazyMetadataValue object with the CACHE_FOR_DURATION
+     * cache strategy.
+     *
+     * @param owningPlugin the {@link Plugin} that created this metadata
+     *     value.
+     * @param duration how long a computed value is used before it is
+     *     computed again.
+     * @param unit the unit of {@code duration}.
+     * @param lazyValue the lazy value assigned to this metadata value.
+     */
+    public LazyMetadataValue(Plugin owningPlugin, long duration, TimeUnit unit, Callable<Object> lazyValue) {
+        super(owningPlugin);
+        Validate.isTrue(duration >= 0, "duration cannot be negative");
+        Validate.notNull(unit, "unit cannot be null");
+        Validate.notNull(lazyValue, "lazyValue cannot be null");
+        this.internalValue = new SoftReference<Object>(null);
+        this.lazyValue = lazyValue;
+        this.cacheStrategy = CacheStrategy.CACHE_FOR_DURATION;
+        this.expiryNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * Creates a LazyMetadataValue which is computed again once the given
+     * number of server ticks has passed.
+     * <p>
+     * Ticks are measured at the nominal rate of 20 per second, so on a
+     * lagging server the value is computed again after fewer actual ticks.
+     *
+     * @param owningPlugin the {@link Plugin} that created this metadata
+     *     value.
+     * @param ticks how many ticks a computed value is used for.
+     * @param lazyValue the lazy value assigned to this metadata value.
+     * @return a new LazyMetadataValue
+     */
+    public static LazyMetadataValue expireAfterTicks(Plugin owningPlugin, long ticks, Callable<Object> lazyValue) {
+        Validate.isTrue(ticks >= 0, "ticks cannot be negative");
+        return new LazyMetadataValue(owningPlugin, ticks * NANOS_PER_TICK, TimeUnit.NANOSECONDS, lazyValue);
+    }
+
     /**
      * Protected special constructor used by FixedMetadataValue to bypass
      * standard setup.
@@ -77,19 +128,58 @@ public class LazyMetadataValue extends MetadataValueAdapter implements MetadataV
      *     fails.
      */
     private synchronized void eval() throws MetadataEvaluationException {
-        if (cacheStrategy == CacheStrategy.NEVER_CACHE || internalValue.get() == null) {
+        if (cacheStrategy == CacheStrategy.NEVER_CACHE || internalValue.get() == null || isExpired()) {
+            misses++;
             try {
                 Object value = lazyValue.call();
                 if (value == null) {
                     value = ACTUALLY_NULL;
                 }
                 internalValue = new SoftReference<Object>(value);
+                evaluatedAt = nanoTime();
             } catch (Exception e) {
                 throw new MetadataEvaluationException(e);
             }
+        } else {
+            hits++;
         }
     }
 
+    private boolean isExpired() {
+        return cacheStrategy == CacheStrategy.CACHE_FOR_DURATION && nanoTime() - evaluatedAt >= expiryNanos;
+    }
+
+    /**
+     * Gets the time used to expire values cached for a duration, which
+     * tests may replace
+     *
+     * @return the current value of the time source, in nanoseconds
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Gets how many times the value was requested and a cached value could
+     * be returned.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Gets how many times the value was requested and had to be computed,
+     * whether because it was never computed, was invalidated, expired, was
+     * collected or is never cached.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
     public synchronized void invalidate() {
         if (cacheStrategy != CacheStrategy.CACHE_ETERNALLY) {
             internalValue.clear();
@@ -115,6 +205,13 @@ public class LazyMetadataValue extends MetadataValueAdapter implements MetadataV
          * Once the metadata value has been evaluated, do not re-evaluate the
          * value in spite of manual invalidation.
          */
-        CACHE_ETERNALLY
+        CACHE_ETERNALLY,
+
+        /**
+         * Once the metadata value has been evaluated, re-evaluate the value
+         * when it is requested after the duration given on creation has
+         * passed, or after it is manually invalidated.
+         */
+        CACHE_FOR_DURATION
     }
 }
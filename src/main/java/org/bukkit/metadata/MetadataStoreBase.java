@@ -4,9 +4,21 @@ import org.apache.commons.lang.Validate;
 import org.bukkit.plugin.Plugin;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.MapMaker;
 
 public abstract class MetadataStoreBase<T> {
-    private Map<String, Map<Plugin, MetadataValue>> metadataMap = new HashMap<String, Map<Plugin, MetadataValue>>();
+    // Stores which only implement disambiguate use the whole generated name
+    // as the subject, with this as the only metadata key
+    private static final String LEGACY_KEY = "";
+
+    private final ConcurrentMap<Object, Subject> subjects = new ConcurrentHashMap<Object, Subject>();
+    private final ConcurrentMap<String, Subject> legacySubjects = new ConcurrentHashMap<String, Subject>();
+    // Subjects which hold a value of each plugin. Weak, identity based keys,
+    // so that an unloaded plugin is not kept alive by its index entry
+    private final ConcurrentMap<Plugin, Set<Subject>> pluginSubjects = new MapMaker().weakKeys().makeMap();
 
     /**
      * Adds a metadata value to an object. Each metadata value is owned by a
@@ -15,13 +27,9 @@ public abstract class MetadataStoreBase<T> {
      * newMetadataValue}. Multiple plugins can set independent values for the
      * same {@code metadataKey} without conflict.
      * <p>
-     * Implementation note: I considered using a {@link
-     * java.util.concurrent.locks.ReadWriteLock} for controlling access to
-     * {@code metadataMap}, but decided that the added overhead wasn't worth
-     * the finer grained access control.
-     * <p>
-     * Bukkit is almost entirely single threaded so locking overhead shouldn't
-     * pose a problem.
+     * Implementation note: values are kept per subject. Reads never lock, and
+     * writes only lock the subject being written to, so metadata may be read
+     * and written from any thread.
      *
      * @param subject The object receiving the metadata.
      * @param metadataKey A unique key to identify this metadata.
@@ -30,22 +38,25 @@ public abstract class MetadataStoreBase<T> {
      * @throws IllegalArgumentException If value is null, or the owning plugin
      *     is null
      */
-    public synchronized void setMetadata(T subject, String metadataKey, MetadataValue newMetadataValue) {
+    public void setMetadata(T subject, String metadataKey, MetadataValue newMetadataValue) {
         Validate.notNull(newMetadataValue, "Value cannot be null");
         Plugin owningPlugin = newMetadataValue.getOwningPlugin();
         Validate.notNull(owningPlugin, "Plugin cannot be null");
-        String key = disambiguate(subject, metadataKey);
-        Map<Plugin, MetadataValue> entry = metadataMap.get(key);
-        if (entry == null) {
-            entry = new WeakHashMap<Plugin, MetadataValue>(1);
-            metadataMap.put(key, entry);
+
+        Object subjectKey = getSubjectKey(subject);
+        if (subjectKey != null) {
+            set(subjects, subjectKey, metadataKey, owningPlugin, newMetadataValue, getPluginSubjects(owningPlugin));
+        } else {
+            set(legacySubjects, disambiguate(subject, metadataKey), LEGACY_KEY, owningPlugin, newMetadataValue, getPluginSubjects(owningPlugin));
         }
-        entry.put(owningPlugin, newMetadataValue);
     }
 
     /**
      * Returns all metadata values attached to an object. If multiple
      * have attached metadata, each will value will be included.
+     * <p>
+     * The returned list is not copied for each call and must not be
+     * modified.
      *
      * @param subject the object being interrogated.
      * @param metadataKey the unique metadata key being sought.
@@ -53,14 +64,9 @@ public abstract class MetadataStoreBase<T> {
      *     requested value.
      * @see MetadataStore#getMetadata(Object, String)
      */
-    public synchronized List<MetadataValue> getMetadata(T subject, String metadataKey) {
-        String key = disambiguate(subject, metadataKey);
-        if (metadataMap.containsKey(key)) {
-            Collection<MetadataValue> values = metadataMap.get(key).values();
-            return Collections.unmodifiableList(new ArrayList<MetadataValue>(values));
-        } else {
-            return Collections.emptyList();
-        }
+    public List<MetadataValue> getMetadata(T subject, String metadataKey) {
+        List<MetadataValue> values = get(subject, metadataKey);
+        return values == null ? Collections.<MetadataValue>emptyList() : values;
     }
 
     /**
@@ -71,9 +77,8 @@ public abstract class MetadataStoreBase<T> {
      * @param metadataKey the unique metadata key being queried.
      * @return the existence of the metadataKey within subject.
      */
-    public synchronized boolean hasMetadata(T subject, String metadataKey) {
-        String key = disambiguate(subject, metadataKey);
-        return metadataMap.containsKey(key);
+    public boolean hasMetadata(T subject, String metadataKey) {
+        return get(subject, metadataKey) != null;
     }
 
     /**
@@ -87,17 +92,14 @@ public abstract class MetadataStoreBase<T> {
      *     org.bukkit.plugin.Plugin)
      * @throws IllegalArgumentException If plugin is null
      */
-    public synchronized void removeMetadata(T subject, String metadataKey, Plugin owningPlugin) {
+    public void removeMetadata(T subject, String metadataKey, Plugin owningPlugin) {
         Validate.notNull(owningPlugin, "Plugin cannot be null");
-        String key = disambiguate(subject, metadataKey);
-        Map<Plugin, MetadataValue> entry = metadataMap.get(key);
-        if (entry == null) {
-            return;
-        }
 
-        entry.remove(owningPlugin);
-        if (entry.isEmpty()) {
-            metadataMap.remove(key);
+        Object subjectKey = getSubjectKey(subject);
+        if (subjectKey != null) {
+            remove(subjects, subjectKey, metadataKey, owningPlugin, pluginSubjects.get(owningPlugin));
+        } else {
+            remove(legacySubjects, disambiguate(subject, metadataKey), LEGACY_KEY, owningPlugin, pluginSubjects.get(owningPlugin));
         }
     }
 
@@ -105,16 +107,47 @@ public abstract class MetadataStoreBase<T> {
      * Invalidates all metadata in the metadata store that originates from the
      * given plugin. Doing this will force each invalidated metadata item to
      * be recalculated the next time it is accessed.
+     * <p>
+     * Implementation note: only the subjects the plugin has set metadata on
+     * are visited, not every subject in the store.
      *
      * @param owningPlugin the plugin requesting the invalidation.
      * @see MetadataStore#invalidateAll(org.bukkit.plugin.Plugin)
      * @throws IllegalArgumentException If plugin is null
      */
-    public synchronized void invalidateAll(Plugin owningPlugin) {
+    public void invalidateAll(Plugin owningPlugin) {
         Validate.notNull(owningPlugin, "Plugin cannot be null");
-        for (Map<Plugin, MetadataValue> values : metadataMap.values()) {
-            if (values.containsKey(owningPlugin)) {
-                values.get(owningPlugin).invalidate();
+        Set<Subject> indexed = pluginSubjects.get(owningPlugin);
+        if (indexed == null) {
+            return;
+        }
+
+        Iterator<Subject> iterator = indexed.iterator();
+        while (iterator.hasNext()) {
+            Subject entry = iterator.next();
+            List<MetadataValue> owned = new ArrayList<MetadataValue>();
+            synchronized (entry) {
+                if (!entry.removed) {
+                    for (List<MetadataValue> values : entry.values.values()) {
+                        for (MetadataValue value : values) {
+                            if (owningPlugin.equals(value.getOwningPlugin())) {
+                                owned.add(value);
+                            }
+                        }
+                    }
+                }
+
+                // Subjects only leave the index while locked, so a
+                // concurrent set cannot be lost
+                if (owned.isEmpty()) {
+                    iterator.remove();
+                    continue;
+                }
+            }
+
+            // Invalidate outside of the lock, as values may synchronize themselves
+            for (MetadataValue value : owned) {
+                value.invalidate();
             }
         }
     }
@@ -127,10 +160,166 @@ public abstract class MetadataStoreBase<T> {
      * two equivalent objects must generate the same unique name. For example,
      * two Player objects must generate the same string if they represent the
      * same player, even if the objects would fail a reference equality test.
+     * <p>
+     * This is only used for subjects which {@link #getSubjectKey(Object)}
+     * returns null for.
      *
      * @param subject The object for which this key is being generated.
      * @param metadataKey The name identifying the metadata value.
      * @return a unique metadata key for the given subject.
      */
     protected abstract String disambiguate(T subject, String metadataKey);
+
+    /**
+     * Gets an object identifying the subject, which is used together with
+     * the metadata key instead of {@link #disambiguate(Object, String)}.
+     * <p>
+     * The returned object must implement equals and hashCode, and two
+     * equivalent subjects must return equal objects, in the same way as for
+     * {@link #disambiguate(Object, String)}. Returning an object the subject
+     * already holds, such as a unique id, avoids building a new String for
+     * every access.
+     * <p>
+     * The default implementation returns null, so every subject is stored
+     * by its disambiguated name.
+     *
+     * @param subject The object for which this key is being generated.
+     * @return an object uniquely identifying the subject, or null to use
+     *     {@link #disambiguate(Object, String)}
+     */
+    protected Object getSubjectKey(T subject) {
+        return null;
+    }
+
+    /**
+     * Gets the number of subjects indexed as holding values of a plugin
+     *
+     * @param owningPlugin the plugin
+     * @return the number of indexed subjects
+     */
+    int getIndexedSubjectCount(Plugin owningPlugin) {
+        Set<Subject> indexed = pluginSubjects.get(owningPlugin);
+        return indexed == null ? 0 : indexed.size();
+    }
+
+    private List<MetadataValue> get(T subject, String metadataKey) {
+        Object subjectKey = getSubjectKey(subject);
+        Subject entry;
+        if (subjectKey != null) {
+            entry = subjects.get(subjectKey);
+            return entry == null ? null : entry.values.get(metadataKey);
+        }
+
+        entry = legacySubjects.get(disambiguate(subject, metadataKey));
+        return entry == null ? null : entry.values.get(LEGACY_KEY);
+    }
+
+    private Set<Subject> getPluginSubjects(Plugin owningPlugin) {
+        Set<Subject> indexed = pluginSubjects.get(owningPlugin);
+        if (indexed == null) {
+            indexed = Collections.newSetFromMap(new ConcurrentHashMap<Subject, Boolean>());
+            Set<Subject> existing = pluginSubjects.putIfAbsent(owningPlugin, indexed);
+            if (existing != null) {
+                indexed = existing;
+            }
+        }
+        return indexed;
+    }
+
+    private static <K> void set(ConcurrentMap<K, Subject> map, K subjectKey, String metadataKey, Plugin owningPlugin, MetadataValue newMetadataValue, Set<Subject> indexed) {
+        while (true) {
+            Subject entry = map.get(subjectKey);
+            if (entry == null) {
+                entry = new Subject();
+                Subject existing = map.putIfAbsent(subjectKey, entry);
+                if (existing != null) {
+                    entry = existing;
+                }
+            }
+
+            synchronized (entry) {
+                // Removed after its last value, so it has to be added again
+                if (entry.removed) {
+                    continue;
+                }
+
+                List<MetadataValue> current = entry.values.get(metadataKey);
+                List<MetadataValue> updated = new ArrayList<MetadataValue>(current == null ? 1 : current.size() + 1);
+                if (current != null) {
+                    for (MetadataValue value : current) {
+                        Plugin plugin = value.getOwningPlugin();
+                        // Values of unloaded plugins are dropped, as they used to be by a WeakHashMap
+                        if (plugin != null && !plugin.equals(owningPlugin)) {
+                            updated.add(value);
+                        }
+                    }
+                }
+                updated.add(newMetadataValue);
+                entry.values.put(metadataKey, Collections.unmodifiableList(updated));
+                indexed.add(entry);
+                return;
+            }
+        }
+    }
+
+    private static <K> void remove(ConcurrentMap<K, Subject> map, K subjectKey, String metadataKey, Plugin owningPlugin, Set<Subject> indexed) {
+        Subject entry = map.get(subjectKey);
+        if (entry == null) {
+            return;
+        }
+
+        synchronized (entry) {
+            List<MetadataValue> current = entry.values.get(metadataKey);
+            if (entry.removed || current == null) {
+                return;
+            }
+
+            List<MetadataValue> updated = new ArrayList<MetadataValue>(current.size());
+            for (MetadataValue value : current) {
+                Plugin plugin = value.getOwningPlugin();
+                if (plugin != null && !plugin.equals(owningPlugin)) {
+                    updated.add(value);
+                }
+            }
+
+            if (!updated.isEmpty()) {
+                entry.values.put(metadataKey, Collections.unmodifiableList(updated));
+            } else {
+                entry.values.remove(metadataKey);
+                if (entry.values.isEmpty()) {
+                    entry.removed = true;
+                    map.remove(subjectKey, entry);
+                }
+            }
+
+            if (indexed != null && (entry.removed || !entry.holds(owningPlugin))) {
+                indexed.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * The metadata of one subject. The value lists are never modified once
+     * stored, so they can be read without locking, while changes lock the
+     * subject they are made to.
+     */
+    private static final class Subject {
+        private final ConcurrentMap<String, List<MetadataValue>> values = new ConcurrentHashMap<String, List<MetadataValue>>(4);
+        private boolean removed;
+
+        /**
+         * Checks whether any value of this subject is owned by a plugin. The
+         * caller must hold the lock of this subject.
+         */
+        private boolean holds(Plugin owningPlugin) {
+            for (List<MetadataValue> values : this.values.values()) {
+                for (MetadataValue value : values) {
+                    if (owningPlugin.equals(value.getOwningPlugin())) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
 }
@@ -0,0 +1,179 @@
+package org.bukkit.permissions;
+
+import java.util.Map;
+
+/**
+ * An immutable, case-insensitive table of the permissions set on a
+ * {@link PermissibleBase}.
+ * <p>
+ * Names are lowercased a character at a time while they are hashed and
+ * compared, so looking up a name does not create any objects and takes time
+ * proportional to its length. Names stored by permissibles are lowercased
+ * with {@link #toLowerCase(String)}, which folds case in the same way, rather
+ * than with {@link String#toLowerCase()}, whose result depends on the default
+ * locale and may change the length of the name.
+ */
+final class CompiledPermissions {
+    static final CompiledPermissions EMPTY = new CompiledPermissions(new String[1], new boolean[1], null, null);
+
+    private final String[] keys;
+    private final boolean[] values;
+    // Prefixes of the nodes ending in ".*", including the dot, and "" for
+    // "*". Null if wildcards are not matched or none are set
+    private final String[] wildcardKeys;
+    private final boolean[] wildcardValues;
+
+    private CompiledPermissions(String[] keys, boolean[] values, String[] wildcardKeys, boolean[] wildcardValues) {
+        this.keys = keys;
+        this.values = values;
+        this.wildcardKeys = wildcardKeys;
+        this.wildcardValues = wildcardValues;
+    }
+
+    /**
+     * Compiles a table from effective permissions.
+     *
+     * @param permissions the effective permissions, by lowercase name
+     * @param wildcards whether nodes ending in ".*" also match every node
+     *     below them which is not set itself
+     * @return the compiled table
+     */
+    static CompiledPermissions compile(Map<String, PermissionAttachmentInfo> permissions, boolean wildcards) {
+        if (permissions.isEmpty()) {
+            return EMPTY;
+        }
+
+        String[] keys = new String[tableSize(permissions.size())];
+        boolean[] values = new boolean[keys.length];
+        int wildcardCount = 0;
+        for (Map.Entry<String, PermissionAttachmentInfo> entry : permissions.entrySet()) {
+            String name = entry.getKey();
+            put(keys, values, name, name.length(), entry.getValue().getValue());
+            if (wildcards && isWildcard(name)) {
+                wildcardCount++;
+            }
+        }
+
+        if (wildcardCount == 0) {
+            return new CompiledPermissions(keys, values, null, null);
+        }
+
+        String[] wildcardKeys = new String[tableSize(wildcardCount)];
+        boolean[] wildcardValues = new boolean[wildcardKeys.length];
+        for (Map.Entry<String, PermissionAttachmentInfo> entry : permissions.entrySet()) {
+            String name = entry.getKey();
+            if (isWildcard(name)) {
+                put(wildcardKeys, wildcardValues, name, name.length() - 1, entry.getValue().getValue());
+            }
+        }
+        return new CompiledPermissions(keys, values, wildcardKeys, wildcardValues);
+    }
+
+    /**
+     * Gets the value of a permission, ignoring case.
+     * <p>
+     * If wildcards are matched and the permission is not set itself, the
+     * most specific wildcard above it decides its value.
+     *
+     * @param name the name of the permission
+     * @return the value, or null if the permission is not set
+     */
+    Boolean get(String name) {
+        int index = find(keys, name, name.length());
+        if (index >= 0) {
+            return values[index] ? Boolean.TRUE : Boolean.FALSE;
+        }
+
+        if (wildcardKeys != null) {
+            for (int i = name.length() - 1; i >= -1; i--) {
+                if (i >= 0 && name.charAt(i) != '.') {
+                    continue;
+                }
+                // The prefix up to and including the dot, or "" for "*"
+                index = find(wildcardKeys, name, i + 1);
+                if (index >= 0) {
+                    return wildcardValues[index] ? Boolean.TRUE : Boolean.FALSE;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lowercases a permission name a character at a time, in the same way
+     * names are compared when looked up
+     *
+     * @param name the name
+     * @return the lowercase name
+     */
+    static String toLowerCase(String name) {
+        int length = name.length();
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (Character.toLowerCase(c) != c) {
+                char[] chars = name.toCharArray();
+                for (int j = i; j < length; j++) {
+                    chars[j] = Character.toLowerCase(chars[j]);
+                }
+                return new String(chars);
+            }
+        }
+        return name;
+    }
+
+    private static boolean isWildcard(String name) {
+        return name.equals("*") || name.endsWith(".*");
+    }
+
+    private static int tableSize(int count) {
+        int size = 2;
+        while (size < count * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static void put(String[] keys, boolean[] values, String name, int length, boolean value) {
+        String key = toLowerCase(name.substring(0, length));
+        int mask = keys.length - 1;
+        int index = hash(key, length) & mask;
+        while (keys[index] != null && !matches(keys[index], key, length)) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+    }
+
+    private static int find(String[] keys, String name, int length) {
+        int mask = keys.length - 1;
+        int index = hash(name, length) & mask;
+        String key;
+        while ((key = keys[index]) != null) {
+            if (matches(key, name, length)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(String name, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + Character.toLowerCase(name.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String key, String name, int length) {
+        if (key.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != Character.toLowerCase(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
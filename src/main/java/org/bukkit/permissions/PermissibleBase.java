@@ -1,30 +1,89 @@
 package org.bukkit.permissions;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.SimplePluginManager;
 
 /**
  * Base Permissible for use in any Permissible object via proxy or extension
+ * <p>
+ * Every permission set by a default or an attachment is expanded into the
+ * nodes it grants once, and each node remembers which of those expansions
+ * provide it. Setting or unsetting a permission on an attachment, or adding
+ * or removing an attachment, only expands the permission that changed and
+ * only updates the nodes it provides. {@link #recalculatePermissions()}
+ * still rebuilds everything, as it is called when defaults or permission
+ * children change, but only subscribes and unsubscribes the nodes which
+ * were gained or lost.
+ * <p>
+ * Attachments only update this permissible directly when neither its class
+ * nor the Permissible wrapping it overrides {@link
+ * #recalculatePermissions()}. Otherwise every change still calls the
+ * wrapping Permissible's recalculatePermissions(), as such classes may
+ * depend on it. Subclasses which need to know about every change while
+ * keeping the incremental updates should override {@link
+ * #permissionsChanged()} instead.
+ * <p>
+ * Permission checks read a compiled, immutable table of the effective
+ * permissions, which is rebuilt on the first check after a change, and
+ * which ignores case without lowercasing the name. The registered
+ * {@link Permission} looked up for names which are not set is cached as
+ * well, so repeated checks do not allocate.
  */
 public class PermissibleBase implements Permissible {
     private ServerOperator opable = null;
     private Permissible parent = this;
     private final List<PermissionAttachment> attachments = new LinkedList<PermissionAttachment>();
     private final Map<String, PermissionAttachmentInfo> permissions = new HashMap<String, PermissionAttachmentInfo>();
+    // The expansions providing each node in permissions, the one with the
+    // highest rank wins
+    private final Map<String, List<Expansion>> providers = new HashMap<String, List<Expansion>>();
+    private final Map<PermissionAttachment, AttachmentExpansions> expansions = new HashMap<PermissionAttachment, AttachmentExpansions>();
+    private int nextAttachmentRank = 1;
+    private boolean cleared = false;
+    private final boolean wildcards;
+    private final boolean incremental;
+    private volatile CompiledPermissions compiled = null;
+    // Keyed by lowercase name, and emptied whenever the plugin manager's
+    // permissions change
+    private final ConcurrentMap<String, CachedPermission> unsetLookups = new ConcurrentHashMap<String, CachedPermission>();
+    private volatile int unsetLookupsVersion = -1;
+    private static final int MAX_UNSET_LOOKUPS = 1024;
 
     public PermissibleBase(ServerOperator opable) {
+        this(opable, false);
+    }
+
+    /**
+     * Creates a PermissibleBase which may also match wildcards. With
+     * wildcards, a permission which is not set itself takes the value of
+     * the most specific node ending in ".*" above it, such as "a.b.*" or
+     * "a.*" for "a.b.c", or of "*".
+     *
+     * @param opable the ServerOperator this is the permissible of, may be
+     *     null
+     * @param wildcards whether to match wildcards
+     */
+    public PermissibleBase(ServerOperator opable, boolean wildcards) {
         this.opable = opable;
+        this.wildcards = wildcards;
 
         if (opable instanceof Permissible) {
             this.parent = (Permissible) opable;
         }
+        this.incremental = !overridesRecalculation(getClass()) && (parent == this || !overridesRecalculation(parent.getClass()));
 
         recalculatePermissions();
     }
@@ -50,7 +109,7 @@ public class PermissibleBase implements Permissible {
             throw new IllegalArgumentException("Permission name cannot be null");
         }
 
-        return permissions.containsKey(name.toLowerCase());
+        return getCompiled().get(name) != null;
     }
 
     public boolean isPermissionSet(Permission perm) {
@@ -66,12 +125,16 @@ public class PermissibleBase implements Permissible {
             throw new IllegalArgumentException("Permission name cannot be null");
         }
 
-        String name = inName.toLowerCase();
+        Boolean value = getCompiled().get(inName);
+
+        if (PermissionProfiler.isEnabled()) {
+            PermissionProfiler.recordCheck(inName, value != null);
+        }
 
-        if (isPermissionSet(name)) {
-            return permissions.get(name).getValue();
+        if (value != null) {
+            return value;
         } else {
-            Permission perm = Bukkit.getServer().getPluginManager().getPermission(name);
+            Permission perm = getUnsetPermission(inName);
 
             if (perm != null) {
                 return perm.getDefault().getValue(isOp());
@@ -86,10 +149,14 @@ public class PermissibleBase implements Permissible {
             throw new IllegalArgumentException("Permission cannot be null");
         }
 
-        String name = perm.getName().toLowerCase();
+        Boolean value = getCompiled().get(perm.getName());
+
+        if (PermissionProfiler.isEnabled()) {
+            PermissionProfiler.recordCheck(perm.getName(), value != null);
+        }
 
-        if (isPermissionSet(name)) {
-            return permissions.get(name).getValue();
+        if (value != null) {
+            return value;
         }
         return perm.getDefault().getValue(isOp());
     }
@@ -106,8 +173,6 @@ public class PermissibleBase implements Permissible {
         PermissionAttachment result = addAttachment(plugin);
         result.setPermission(name, value);
 
-        recalculatePermissions();
-
         return result;
     }
 
@@ -119,9 +184,13 @@ public class PermissibleBase implements Permissible {
         }
 
         PermissionAttachment result = new PermissionAttachment(plugin, parent);
+        result.setPermissibleBase(this);
 
-        attachments.add(result);
-        recalculatePermissions();
+        synchronized (this) {
+            attachments.add(result);
+            // An empty attachment grants nothing, so only its rank is needed
+            expansions.put(result, new AttachmentExpansions(result, nextAttachmentRank++));
+        }
 
         return result;
     }
@@ -133,33 +202,68 @@ public class PermissibleBase implements Permissible {
 
         if (attachments.contains(attachment)) {
             attachments.remove(attachment);
+            attachment.setPermissibleBase(null);
             PermissionRemovedExecutor ex = attachment.getRemovalCallback();
 
             if (ex != null) {
                 ex.attachmentRemoved(attachment);
             }
 
-            recalculatePermissions();
+            if (incremental) {
+                removeExpansions(attachment);
+            } else {
+                synchronized (this) {
+                    expansions.remove(attachment);
+                }
+                recalculatePermissions();
+            }
         } else {
             throw new IllegalArgumentException("Given attachment is not part of Permissible object " + parent);
         }
     }
 
-    public void recalculatePermissions() {
-        clearPermissions();
-        Set<Permission> defaults = Bukkit.getServer().getPluginManager().getDefaultPermissions(isOp());
-        Bukkit.getServer().getPluginManager().subscribeToDefaultPerms(isOp(), parent);
+    public synchronized void recalculatePermissions() {
+        long start = PermissionProfiler.isEnabled() ? System.nanoTime() : 0;
+        PluginManager pluginManager = Bukkit.getServer().getPluginManager();
+        boolean op = isOp();
+        Set<String> previous = new HashSet<String>(permissions.keySet());
+
+        permissions.clear();
+        providers.clear();
 
-        for (Permission perm : defaults) {
-            String name = perm.getName().toLowerCase();
-            permissions.put(name, new PermissionAttachmentInfo(parent, name, null, true));
-            Bukkit.getServer().getPluginManager().subscribeToPermission(name, parent);
-            calculateChildPermissions(perm.getChildren(), false, null);
+        // Defaults rank below every attachment
+        int entryRank = 0;
+        for (Permission perm : pluginManager.getDefaultPermissions(op)) {
+            addExpansion(expand(rank(0, entryRank++), perm.getName(), true, null), null);
         }
 
         for (PermissionAttachment attachment : attachments) {
-            calculateChildPermissions(attachment.getPermissions(), false, attachment);
+            AttachmentExpansions attachmentExpansions = expansions.get(attachment);
+            attachmentExpansions.clear();
+
+            for (Map.Entry<String, Boolean> entry : attachment.getPermissions().entrySet()) {
+                addExpansion(attachmentExpansions.put(entry.getKey(), entry.getValue()), null);
+            }
         }
+
+        for (String name : permissions.keySet()) {
+            if (!previous.remove(name)) {
+                pluginManager.subscribeToPermission(name, parent);
+            }
+        }
+        for (String name : previous) {
+            pluginManager.unsubscribeFromPermission(name, parent);
+        }
+
+        pluginManager.unsubscribeFromDefaultPerms(!op, parent);
+        pluginManager.subscribeToDefaultPerms(op, parent);
+        cleared = false;
+        compiled = null;
+
+        if (start != 0) {
+            PermissionProfiler.recordRecalculation(System.nanoTime() - start);
+        }
+        permissionsChanged();
     }
 
     public synchronized void clearPermissions() {
@@ -173,25 +277,249 @@ public class PermissibleBase implements Permissible {
         Bukkit.getServer().getPluginManager().unsubscribeFromDefaultPerms(true, parent);
 
         permissions.clear();
+        providers.clear();
+        for (AttachmentExpansions attachmentExpansions : expansions.values()) {
+            attachmentExpansions.clear();
+        }
+        cleared = true;
+        compiled = null;
     }
 
-    private void calculateChildPermissions(Map<String, Boolean> children, boolean invert, PermissionAttachment attachment) {
+    /**
+     * Checks if a permission change of an attachment may update this
+     * permissible directly, rather than calling the wrapping Permissible's
+     * recalculatePermissions().
+     *
+     * @return true if changes are applied incrementally
+     */
+    boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Updates the effective permissions after a permission of one of the
+     * attachments was set or unset.
+     *
+     * @param attachment the attachment that changed
+     * @param name the lowercase name of the permission
+     * @param value the new value, or null if the permission was unset
+     */
+    synchronized void attachmentPermissionChanged(PermissionAttachment attachment, String name, Boolean value) {
+        AttachmentExpansions attachmentExpansions = expansions.get(attachment);
+        if (cleared || attachmentExpansions == null) {
+            recalculatePermissions();
+            return;
+        }
+
+        long start = PermissionProfiler.isEnabled() ? System.nanoTime() : 0;
+        Set<String> changed = new HashSet<String>();
+        Expansion old = attachmentExpansions.byName.get(name);
+        if (old != null) {
+            removeExpansion(old, changed);
+        }
+        if (value != null) {
+            addExpansion(attachmentExpansions.put(name, value), changed);
+        } else {
+            attachmentExpansions.byName.remove(name);
+        }
+
+        resolve(changed);
+
+        if (start != 0) {
+            PermissionProfiler.recordUpdate(System.nanoTime() - start);
+        }
+        permissionsChanged();
+    }
+
+    /**
+     * Called after the effective permissions of this permissible were
+     * recalculated, or updated because a permission of one of its
+     * attachments was set or unset or an attachment was removed. Such updates
+     * do not go through {@link #recalculatePermissions()}, so this is the
+     * method to override to be told about every change.
+     * <p>
+     * This is called while this permissible is locked, and also once by the
+     * constructor, before any subclass is initialized. The default
+     * implementation does nothing.
+     */
+    protected void permissionsChanged() {}
+
+    private synchronized void removeExpansions(PermissionAttachment attachment) {
+        AttachmentExpansions attachmentExpansions = expansions.remove(attachment);
+        if (cleared || attachmentExpansions == null) {
+            recalculatePermissions();
+            return;
+        }
+
+        Set<String> changed = new HashSet<String>();
+        for (Expansion expansion : attachmentExpansions.byName.values()) {
+            removeExpansion(expansion, changed);
+        }
+
+        resolve(changed);
+        permissionsChanged();
+    }
+
+    private static boolean overridesRecalculation(Class<?> clazz) {
+        try {
+            return clazz.getMethod("recalculatePermissions").getDeclaringClass() != PermissibleBase.class;
+        } catch (NoSuchMethodException ex) {
+            return true;
+        }
+    }
+
+    /**
+     * Expands a permission into all the nodes it grants, walking its
+     * children recursively.
+     */
+    private Expansion expand(long rank, String name, boolean value, PermissionAttachment attachment) {
+        Map<String, PermissionAttachmentInfo> nodes = new LinkedHashMap<String, PermissionAttachmentInfo>();
+        Map<String, Boolean> root = new HashMap<String, Boolean>(1);
+        root.put(name, value);
+        calculateChildPermissions(nodes, root, false, attachment);
+        return new Expansion(rank, nodes);
+    }
+
+    private void calculateChildPermissions(Map<String, PermissionAttachmentInfo> nodes, Map<String, Boolean> children, boolean invert, PermissionAttachment attachment) {
         Set<String> keys = children.keySet();
 
         for (String name : keys) {
             Permission perm = Bukkit.getServer().getPluginManager().getPermission(name);
             boolean value = children.get(name) ^ invert;
-            String lname = name.toLowerCase();
+            String lname = CompiledPermissions.toLowerCase(name);
 
-            permissions.put(lname, new PermissionAttachmentInfo(parent, lname, attachment, value));
-            Bukkit.getServer().getPluginManager().subscribeToPermission(name, parent);
+            nodes.put(lname, new PermissionAttachmentInfo(parent, lname, attachment, value));
 
             if (perm != null) {
-                calculateChildPermissions(perm.getChildren(), !value, attachment);
+                calculateChildPermissions(nodes, perm.getChildren(), !value, attachment);
             }
         }
     }
 
+    /**
+     * Registers an expansion as a provider of its nodes. If changed is null,
+     * the effective permissions are updated straight away, otherwise the
+     * nodes are added to changed to be resolved later.
+     */
+    private void addExpansion(Expansion expansion, Set<String> changed) {
+        for (Map.Entry<String, PermissionAttachmentInfo> node : expansion.nodes.entrySet()) {
+            String name = node.getKey();
+            List<Expansion> list = providers.get(name);
+            if (list == null) {
+                list = new ArrayList<Expansion>(1);
+                providers.put(name, list);
+            }
+            list.add(expansion);
+
+            if (changed != null) {
+                changed.add(name);
+            } else {
+                PermissionAttachmentInfo current = permissions.get(name);
+                if (current == null || winner(list) == expansion) {
+                    permissions.put(name, node.getValue());
+                }
+            }
+        }
+    }
+
+    private void removeExpansion(Expansion expansion, Set<String> changed) {
+        for (String name : expansion.nodes.keySet()) {
+            List<Expansion> list = providers.get(name);
+            if (list != null) {
+                list.remove(expansion);
+                if (list.isEmpty()) {
+                    providers.remove(name);
+                }
+            }
+            changed.add(name);
+        }
+    }
+
+    /**
+     * Updates the effective value of each of the given nodes from their
+     * providers, subscribing to nodes which were gained and unsubscribing
+     * from nodes which were lost.
+     */
+    private void resolve(Set<String> changed) {
+        PluginManager pluginManager = Bukkit.getServer().getPluginManager();
+
+        for (String name : changed) {
+            List<Expansion> list = providers.get(name);
+            if (list == null) {
+                if (permissions.remove(name) != null) {
+                    pluginManager.unsubscribeFromPermission(name, parent);
+                }
+            } else if (permissions.put(name, winner(list).nodes.get(name)) == null) {
+                pluginManager.subscribeToPermission(name, parent);
+            }
+        }
+        compiled = null;
+    }
+
+    private CompiledPermissions getCompiled() {
+        CompiledPermissions result = compiled;
+        if (result == null) {
+            synchronized (this) {
+                result = compiled;
+                if (result == null) {
+                    result = CompiledPermissions.compile(permissions, wildcards);
+                    compiled = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the registered permission for a name which is not set on
+     * this permissible, remembering the result until permissions are added
+     * to or removed from the plugin manager.
+     */
+    private Permission getUnsetPermission(String name) {
+        PluginManager pluginManager = Bukkit.getServer().getPluginManager();
+        if (!(pluginManager instanceof SimplePluginManager)) {
+            return pluginManager.getPermission(name);
+        }
+
+        int version = ((SimplePluginManager) pluginManager).getPermissionsVersion();
+        if (version != unsetLookupsVersion) {
+            unsetLookups.clear();
+            unsetLookupsVersion = version;
+        }
+
+        String key = CompiledPermissions.toLowerCase(name);
+        CachedPermission cached = unsetLookups.get(key);
+        if (cached != null && cached.version == version) {
+            return cached.permission;
+        }
+
+        Permission perm = pluginManager.getPermission(name);
+        if (cached != null || unsetLookups.size() < MAX_UNSET_LOOKUPS) {
+            unsetLookups.put(key, new CachedPermission(version, perm));
+        }
+        return perm;
+    }
+
+    private static Expansion winner(List<Expansion> list) {
+        Expansion winner = list.get(0);
+        for (int i = 1; i < list.size(); i++) {
+            Expansion expansion = list.get(i);
+            if (expansion.rank > winner.rank) {
+                winner = expansion;
+            }
+        }
+        return winner;
+    }
+
+    /**
+     * Ranks an expansion the way a full recalculation applies them: defaults
+     * first, then each attachment in the order it was added, and within an
+     * attachment each permission in the order it was first set.
+     */
+    private static long rank(int attachmentRank, int entryRank) {
+        return ((long) attachmentRank << 32) | entryRank;
+    }
+
     public PermissionAttachment addAttachment(Plugin plugin, String name, boolean value, int ticks) {
         if (name == null) {
             throw new IllegalArgumentException("Permission name cannot be null");
@@ -232,6 +560,64 @@ public class PermissibleBase implements Permissible {
         return new HashSet<PermissionAttachmentInfo>(permissions.values());
     }
 
+    /**
+     * The nodes granted by one permission of a default or an attachment.
+     */
+    private static final class Expansion {
+        private final long rank;
+        private final Map<String, PermissionAttachmentInfo> nodes;
+
+        private Expansion(long rank, Map<String, PermissionAttachmentInfo> nodes) {
+            this.rank = rank;
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * The expansions of each permission set on an attachment.
+     */
+    private final class AttachmentExpansions {
+        private final PermissionAttachment attachment;
+        private final int rank;
+        private final Map<String, Expansion> byName = new HashMap<String, Expansion>();
+        private int nextEntryRank = 0;
+
+        private AttachmentExpansions(PermissionAttachment attachment, int rank) {
+            this.attachment = attachment;
+            this.rank = rank;
+        }
+
+        /**
+         * Expands a permission, replacing the previous expansion of it.
+         * Callers must remove the previous expansion from the providers
+         * first.
+         */
+        private Expansion put(String name, boolean value) {
+            Expansion old = byName.get(name);
+            // A permission which is set again keeps its place in the
+            // attachment, as it does in the attachment's LinkedHashMap
+            long entryRank = old != null ? old.rank : rank(rank, nextEntryRank++);
+            Expansion expansion = expand(entryRank, name, value, attachment);
+            byName.put(name, expansion);
+            return expansion;
+        }
+
+        private void clear() {
+            byName.clear();
+            nextEntryRank = 0;
+        }
+    }
+
+    private static final class CachedPermission {
+        private final int version;
+        private final Permission permission;
+
+        private CachedPermission(int version, Permission permission) {
+            this.version = version;
+            this.permission = permission;
+        }
+    }
+
     private class RemoveAttachmentRunnable implements Runnable {
         private PermissionAttachment attachment;
 
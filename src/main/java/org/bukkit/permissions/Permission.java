@@ -10,6 +10,7 @@ import java.util.logging.Level;
 import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.SimplePluginManager;
 
 /**
  * Represents a unique permission that may be attached to a {@link
@@ -156,15 +157,25 @@ public class Permission {
      * Recalculates all {@link Permissible}s that contain this permission.
      * <p>
      * This should be called after modifying the children, and is
-     * automatically called after modifying the default value
+     * automatically called after modifying the default value. If the plugin
+     * manager defers recalculation, the permissibles are only marked to be
+     * recalculated later.
      */
     public void recalculatePermissibles() {
         Set<Permissible> perms = getPermissibles();
+        PluginManager pluginManager = Bukkit.getServer().getPluginManager();
 
-        Bukkit.getServer().getPluginManager().recalculatePermissionDefaults(this);
+        pluginManager.recalculatePermissionDefaults(this);
 
-        for (Permissible p : perms) {
-            p.recalculatePermissions();
+        if (pluginManager instanceof SimplePluginManager) {
+            SimplePluginManager manager = (SimplePluginManager) pluginManager;
+            for (Permissible p : perms) {
+                manager.dirty(p);
+            }
+        } else {
+            for (Permissible p : perms) {
+                p.recalculatePermissions();
+            }
         }
     }
 
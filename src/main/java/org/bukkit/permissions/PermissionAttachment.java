@@ -13,6 +13,7 @@ public class PermissionAttachment {
     private final Map<String, Boolean> permissions = new LinkedHashMap<String, Boolean>();
     private final Permissible permissible;
     private final Plugin plugin;
+    private PermissibleBase permissibleBase;
 
     public PermissionAttachment(Plugin plugin, Permissible Permissible) {
         if (plugin == null) {
@@ -83,8 +84,9 @@ public class PermissionAttachment {
      * @param value New value of the permission
      */
     public void setPermission(String name, boolean value) {
-        permissions.put(name.toLowerCase(), value);
-        permissible.recalculatePermissions();
+        String lname = CompiledPermissions.toLowerCase(name);
+        permissions.put(lname, value);
+        permissionChanged(lname, value);
     }
 
     /**
@@ -106,8 +108,9 @@ public class PermissionAttachment {
      * @param name Name of the permission to remove
      */
     public void unsetPermission(String name) {
-        permissions.remove(name.toLowerCase());
-        permissible.recalculatePermissions();
+        String lname = CompiledPermissions.toLowerCase(name);
+        permissions.remove(lname);
+        permissionChanged(lname, null);
     }
 
     /**
@@ -122,6 +125,29 @@ public class PermissionAttachment {
         unsetPermission(perm.getName());
     }
 
+    private void permissionChanged(String name, Boolean value) {
+        PermissibleBase base = permissibleBase;
+        if (base != null && base.isIncremental()) {
+            base.attachmentPermissionChanged(this, name, value);
+        } else {
+            permissible.recalculatePermissions();
+        }
+    }
+
+    /**
+     * Sets the {@link PermissibleBase} holding this attachment, which is
+     * told about each changed permission instead of recalculating all of
+     * the permissible's permissions, unless recalculatePermissions() is
+     * overridden. The permissible itself is then not called, see {@link
+     * PermissibleBase#permissionsChanged()}.
+     *
+     * @param permissibleBase the PermissibleBase holding this attachment,
+     *     or null once it was removed
+     */
+    void setPermissibleBase(PermissibleBase permissibleBase) {
+        this.permissibleBase = permissibleBase;
+    }
+
     /**
      * Removes this attachment from its registered {@link Permissible}
      *
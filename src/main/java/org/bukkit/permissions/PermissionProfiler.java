@@ -0,0 +1,362 @@
+package org.bukkit.permissions;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.LatencyHistogram;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.SimplePluginManager;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
+
+/**
+ * Optional instrumentation of permission checks made through
+ * {@link PermissibleBase}.
+ * <p>
+ * While enabled, every check is counted per permission node, together with
+ * how many checks found the node unset and fell back to its default. One in
+ * every {@link #CALLER_SAMPLE_INTERVAL} checks is also attributed to the
+ * plugin that made it. Full and incremental recalculations of permissibles
+ * are timed. When disabled, the only cost to a check is reading a volatile
+ * field.
+ */
+public final class PermissionProfiler {
+    /**
+     * How many checks are made for each check whose calling plugin is looked
+     * up, as finding it walks the stack
+     */
+    public static final int CALLER_SAMPLE_INTERVAL = 16;
+    private static final int MAX_NODES = 10000;
+    private static final String OTHER_NODES = "(other)";
+    private static final String NO_PLUGIN = "(server)";
+
+    private static volatile boolean enabled = false;
+    private static final ConcurrentMap<String, NodeCounter> nodes = new ConcurrentHashMap<String, NodeCounter>();
+    private static final ConcurrentMap<String, AtomicLong> callers = new ConcurrentHashMap<String, AtomicLong>();
+    private static final AtomicLong checks = new AtomicLong();
+    private static final LatencyHistogram recalculations = new LatencyHistogram();
+    private static final LatencyHistogram updates = new LatencyHistogram();
+    // Weak, identity based keys, so unloaded plugins are not kept alive
+    private static final ConcurrentMap<ClassLoader, String> loaderNames = new MapMaker().weakKeys().makeMap();
+    private static final CallerContext callerContext = new CallerContext();
+
+    private PermissionProfiler() {}
+
+    /**
+     * Gets whether permission checks are being profiled
+     *
+     * @return True if profiling is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets whether permission checks are profiled. Collected statistics are
+     * kept when profiling is disabled, until {@link #reset()} is called.
+     *
+     * @param enable True to enable profiling
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Clears all collected statistics
+     */
+    public static void reset() {
+        nodes.clear();
+        callers.clear();
+        checks.set(0);
+        recalculations.reset();
+        updates.reset();
+    }
+
+    /**
+     * Records a permission check
+     *
+     * @param name the name of the checked permission
+     * @param set whether the permission was set on the permissible, rather
+     *     than falling back to its default
+     */
+    static void recordCheck(String name, boolean set) {
+        String node = CompiledPermissions.toLowerCase(name);
+        NodeCounter counter = nodes.get(node);
+        if (counter == null) {
+            if (nodes.size() >= MAX_NODES) {
+                node = OTHER_NODES;
+            }
+            counter = new NodeCounter();
+            NodeCounter existing = nodes.putIfAbsent(node, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        counter.checks.incrementAndGet();
+        if (!set) {
+            counter.defaults.incrementAndGet();
+        }
+
+        if (checks.incrementAndGet() % CALLER_SAMPLE_INTERVAL == 0) {
+            String caller = findCaller();
+            AtomicLong count = callers.get(caller);
+            if (count == null) {
+                count = new AtomicLong();
+                AtomicLong existing = callers.putIfAbsent(caller, count);
+                if (existing != null) {
+                    count = existing;
+                }
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records how long a full recalculation of a permissible took
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    static void recordRecalculation(long nanos) {
+        recalculations.record(nanos);
+    }
+
+    /**
+     * Records how long an incremental update of a permissible took, after
+     * one of its attachments changed
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    static void recordUpdate(long nanos) {
+        updates.record(nanos);
+    }
+
+    /**
+     * Takes a snapshot of the collected statistics
+     *
+     * @return the report
+     */
+    public static Report getReport() {
+        ImmutableMap.Builder<String, Long> nodeChecks = ImmutableMap.builder();
+        ImmutableMap.Builder<String, Long> nodeDefaults = ImmutableMap.builder();
+        for (Map.Entry<String, NodeCounter> entry : nodes.entrySet()) {
+            nodeChecks.put(entry.getKey(), entry.getValue().checks.get());
+            nodeDefaults.put(entry.getKey(), entry.getValue().defaults.get());
+        }
+
+        ImmutableMap.Builder<String, Long> callerChecks = ImmutableMap.builder();
+        for (Map.Entry<String, AtomicLong> entry : callers.entrySet()) {
+            callerChecks.put(entry.getKey(), entry.getValue().get() * CALLER_SAMPLE_INTERVAL);
+        }
+
+        Map<String, Integer> subscriptions = Collections.emptyMap();
+        PluginManager pluginManager = Bukkit.getServer().getPluginManager();
+        if (pluginManager instanceof SimplePluginManager) {
+            subscriptions = ((SimplePluginManager) pluginManager).getPermissionSubscriptionCounts();
+        }
+
+        return new Report(checks.get(), nodeChecks.build(), nodeDefaults.build(), callerChecks.build(), subscriptions, recalculations.snapshot(), updates.snapshot());
+    }
+
+    private static String findCaller() {
+        ClassLoader own = PermissionProfiler.class.getClassLoader();
+
+        for (Class<?> clazz : callerContext.getContext()) {
+            ClassLoader loader = clazz.getClassLoader();
+            if (loader == null || loader == own) {
+                continue;
+            }
+
+            String name = loaderNames.get(loader);
+            if (name != null) {
+                return name;
+            }
+
+            // Not remembered when no plugin matches, as the plugin may not
+            // be registered yet
+            for (Plugin plugin : Bukkit.getServer().getPluginManager().getPlugins()) {
+                if (plugin.getClass().getClassLoader() == loader) {
+                    loaderNames.put(loader, plugin.getName());
+                    return plugin.getName();
+                }
+            }
+            return NO_PLUGIN;
+        }
+        return NO_PLUGIN;
+    }
+
+    private static final class NodeCounter {
+        private final AtomicLong checks = new AtomicLong();
+        private final AtomicLong defaults = new AtomicLong();
+    }
+
+    /**
+     * Exposes the classes on the calling thread's stack. Newer Java versions
+     * deprecate SecurityManager for removal, but it is never installed, only
+     * used to read the stack, which still works there.
+     */
+    @SuppressWarnings("removal")
+    private static final class CallerContext extends SecurityManager {
+        private Class<?>[] getContext() {
+            return getClassContext();
+        }
+    }
+
+    /**
+     * A snapshot of the statistics collected by the profiler
+     */
+    public static final class Report {
+        private final long checks;
+        private final Map<String, Long> nodeChecks;
+        private final Map<String, Long> nodeDefaults;
+        private final Map<String, Long> pluginChecks;
+        private final Map<String, Integer> subscriptions;
+        private final LatencyHistogram.Snapshot recalculations;
+        private final LatencyHistogram.Snapshot updates;
+
+        private Report(long checks, Map<String, Long> nodeChecks, Map<String, Long> nodeDefaults, Map<String, Long> pluginChecks, Map<String, Integer> subscriptions, LatencyHistogram.Snapshot recalculations, LatencyHistogram.Snapshot updates) {
+            this.checks = checks;
+            this.nodeChecks = nodeChecks;
+            this.nodeDefaults = nodeDefaults;
+            this.pluginChecks = pluginChecks;
+            this.subscriptions = subscriptions;
+            this.recalculations = recalculations;
+            this.updates = updates;
+        }
+
+        /**
+         * Gets the total number of checks
+         *
+         * @return the number of checks
+         */
+        public long getChecks() {
+            return checks;
+        }
+
+        /**
+         * Gets the number of checks of each permission node
+         *
+         * @return checks by lowercase node name
+         */
+        public Map<String, Long> getNodeChecks() {
+            return nodeChecks;
+        }
+
+        /**
+         * Gets the number of checks of each permission node which found it
+         * unset and used its default
+         *
+         * @return default fallbacks by lowercase node name
+         */
+        public Map<String, Long> getNodeDefaults() {
+            return nodeDefaults;
+        }
+
+        /**
+         * Gets the estimated number of checks made by each plugin. Checks
+         * made by the server itself are listed as "(server)".
+         * <p>
+         * Only one in {@link #CALLER_SAMPLE_INTERVAL} checks is attributed,
+         * so the counts are multiples of it.
+         *
+         * @return estimated checks by plugin name
+         */
+        public Map<String, Long> getPluginChecks() {
+            return pluginChecks;
+        }
+
+        /**
+         * Gets the number of permissibles subscribed to each permission
+         * node. This is the current count, not a count of subscriptions made
+         * while profiling.
+         *
+         * @return subscribers by lowercase node name, empty if the plugin
+         *     manager does not provide them
+         */
+        public Map<String, Integer> getSubscriptions() {
+            return subscriptions;
+        }
+
+        /**
+         * Gets the durations of full recalculations of permissibles
+         *
+         * @return the recalculation durations
+         */
+        public LatencyHistogram.Snapshot getRecalculations() {
+            return recalculations;
+        }
+
+        /**
+         * Gets the durations of incremental updates of permissibles, made
+         * when a permission of one of their attachments changes
+         *
+         * @return the update durations
+         */
+        public LatencyHistogram.Snapshot getUpdates() {
+            return updates;
+        }
+
+        /**
+         * Gets the plugins which made the most checks
+         *
+         * @param limit how many plugins to return
+         * @return plugin names and estimated checks, most checks first
+         */
+        public List<Map.Entry<String, Long>> getTopPlugins(int limit) {
+            return top(pluginChecks, limit);
+        }
+
+        /**
+         * Writes this report in a readable form, with the given number of
+         * most checked plugins and nodes
+         *
+         * @param out the stream to write to
+         * @param limit how many plugins and nodes to list
+         */
+        public void write(PrintStream out, int limit) {
+            out.println("Permission checks: " + checks);
+            out.println("Recalculations: " + describe(recalculations));
+            out.println("Incremental updates: " + describe(updates));
+
+            out.println("Plugins (estimated checks)");
+            for (Map.Entry<String, Long> entry : getTopPlugins(limit)) {
+                out.println("    " + entry.getKey() + " Checks: " + entry.getValue());
+            }
+
+            out.println("Nodes");
+            for (Map.Entry<String, Long> entry : top(nodeChecks, limit)) {
+                String node = entry.getKey();
+                Integer subscribers = subscriptions.get(node);
+                out.println("    " + node + " Checks: " + entry.getValue() + " Defaults: " + nodeDefaults.get(node) + " Subscribers: " + (subscribers == null ? 0 : subscribers));
+            }
+        }
+
+        private static String describe(LatencyHistogram.Snapshot histogram) {
+            return "Count: " + histogram.getCount()
+                    + " Avg: " + histogram.getMean()
+                    + " p50: " + histogram.getPercentile(50)
+                    + " p99: " + histogram.getPercentile(99)
+                    + " Max: " + histogram.getMax();
+        }
+
+        private static List<Map.Entry<String, Long>> top(Map<String, Long> counts, int limit) {
+            List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(new HashMap<String, Long>(counts).entrySet());
+            Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+                public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                    return b.getValue().compareTo(a.getValue());
+                }
+            });
+            return entries.size() > limit ? entries.subList(0, limit) : entries;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package org.bukkit.plugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.commons.lang.Validate;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Resolves the load order of plugins from their depend, softdepend and
+ * loadbefore declarations.
+ * <p>
+ * Plugins are added in discovery order, which is also used to order
+ * otherwise unrelated plugins. The order is computed with Kahn's algorithm
+ * in time linear to the number of plugins and declared dependencies:
+ * <ul>
+ * <li>A plugin with a hard dependency which is not present, or which cannot
+ *     be loaded itself, cannot be loaded.
+ * <li>Soft dependencies and load-before targets which are not present are
+ *     ignored.
+ * <li>Cycles containing a soft dependency are broken by loading the first
+ *     plugin, in discovery order, whose hard dependencies are all loaded.
+ * <li>Plugins in cycles of hard dependencies, and plugins depending on
+ *     them, cannot be loaded.
+ * </ul>
+ */
+public final class DependencyGraph {
+    private static final Comparator<Node> DISCOVERY_ORDER = new Comparator<Node>() {
+        public int compare(Node first, Node second) {
+            return first.position < second.position ? -1 : (first.position == second.position ? 0 : 1);
+        }
+    };
+
+    private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+    private boolean resolved = false;
+
+    private List<String> loadOrder;
+    private List<List<String>> loadStages;
+    private Map<String, String> missingDependencies;
+    private List<List<String>> cycles;
+    private Set<String> cyclic;
+
+    /**
+     * Adds a plugin to this graph from its description
+     *
+     * @param description the plugin's description
+     */
+    public void add(PluginDescriptionFile description) {
+        add(description.getName(), description.getDepend(), description.getSoftDepend(), description.getLoadBefore());
+    }
+
+    /**
+     * Adds a plugin to this graph. Adding the same name again replaces the
+     * previous hard dependencies, while soft dependencies and load-before
+     * targets are merged.
+     *
+     * @param name the name of the plugin
+     * @param depend the plugins which must be loaded first, may be null
+     * @param softDepend the plugins which should be loaded first if present,
+     *     may be null
+     * @param loadBefore the plugins which should be loaded after this one if
+     *     present, may be null
+     * @throws IllegalStateException if the graph was already resolved
+     */
+    public void add(String name, Collection<String> depend, Collection<String> softDepend, Collection<String> loadBefore) {
+        Validate.notNull(name, "Name cannot be null");
+        if (resolved) {
+            throw new IllegalStateException("Dependency graph is already resolved");
+        }
+
+        Node node = nodes.get(name);
+        if (node == null) {
+            node = new Node(name, nodes.size());
+            nodes.put(name, node);
+        }
+        node.depend.clear();
+        if (depend != null) {
+            node.depend.addAll(depend);
+        }
+        if (softDepend != null) {
+            node.softDepend.addAll(softDepend);
+        }
+        if (loadBefore != null) {
+            node.loadBefore.addAll(loadBefore);
+        }
+    }
+
+    /**
+     * Gets the plugins which can be loaded, in load order
+     *
+     * @return the load order
+     */
+    public List<String> getLoadOrder() {
+        resolve();
+        return loadOrder;
+    }
+
+    /**
+     * Gets the load order split into stages. Every plugin only depends on
+     * plugins of earlier stages, so the plugins of one stage do not depend
+     * on each other and could be enabled in parallel.
+     *
+     * @return the stages, in load order
+     */
+    public List<List<String>> getLoadStages() {
+        resolve();
+        return loadStages;
+    }
+
+    /**
+     * Gets the plugins which cannot be loaded because a hard dependency is
+     * missing or cannot be loaded itself
+     *
+     * @return a map of plugin names to the dependency each one is missing
+     */
+    public Map<String, String> getMissingDependencies() {
+        resolve();
+        return missingDependencies;
+    }
+
+    /**
+     * Gets the cycles of hard dependencies found in this graph
+     *
+     * @return every cycle, as the names of the plugins involved
+     */
+    public List<List<String>> getCycles() {
+        resolve();
+        return cycles;
+    }
+
+    /**
+     * Checks if a plugin cannot be loaded because it is part of, or depends
+     * on, a cycle of hard dependencies
+     *
+     * @param name the plugin name
+     * @return true if the plugin is blocked by a dependency cycle
+     */
+    public boolean isCyclic(String name) {
+        resolve();
+        return cyclic.contains(name);
+    }
+
+    /**
+     * Gets the plugins which a plugin was ordered after, including present
+     * soft dependencies and plugins declaring it in loadbefore
+     *
+     * @param name the plugin name
+     * @return the plugins loaded before it, or an empty set if unknown
+     */
+    public Set<String> getDependencies(String name) {
+        resolve();
+        Node node = nodes.get(name);
+        if (node == null) {
+            return ImmutableSet.of();
+        }
+        ImmutableSet.Builder<String> dependencies = ImmutableSet.builder();
+        for (Node dependency : node.edges) {
+            dependencies.add(dependency.name);
+        }
+        return dependencies.build();
+    }
+
+    private void resolve() {
+        if (resolved) {
+            return;
+        }
+        resolved = true;
+
+        Map<String, String> missing = new LinkedHashMap<String, String>();
+        findMissing(missing);
+
+        // Build the ordering edges between plugins which may load
+        for (Node node : nodes.values()) {
+            if (node.failed) continue;
+            for (String name : node.depend) {
+                addEdge(nodes.get(name), node, true);
+            }
+            for (String name : node.softDepend) {
+                addEdge(nodes.get(name), node, false);
+            }
+            for (String name : node.loadBefore) {
+                addEdge(node, nodes.get(name), false);
+            }
+        }
+
+        ImmutableList.Builder<String> order = ImmutableList.builder();
+        List<List<String>> stages = new ArrayList<List<String>>();
+        Deque<Node> ready = new ArrayDeque<Node>();
+        int remaining = 0;
+        for (Node node : nodes.values()) {
+            if (node.failed) continue;
+            remaining++;
+            if (node.pendingHard == 0 && node.pendingSoft == 0) {
+                ready.add(node);
+            }
+        }
+
+        // Plugins whose hard dependencies are loaded, to break soft cycles
+        PriorityQueue<Node> hardReady = new PriorityQueue<Node>(Math.max(1, remaining), DISCOVERY_ORDER);
+        for (Node node : nodes.values()) {
+            if (!node.failed && node.pendingHard == 0 && node.pendingSoft > 0) {
+                hardReady.add(node);
+            }
+        }
+
+        while (remaining > 0) {
+            if (ready.isEmpty()) {
+                // Only cycles are left; break a soft one if possible
+                Node forced = hardReady.poll();
+                while (forced != null && forced.loaded) {
+                    forced = hardReady.poll();
+                }
+                if (forced == null) {
+                    break;
+                }
+                ready.add(forced);
+            }
+
+            Node node = ready.poll();
+            node.loaded = true;
+            remaining--;
+            order.add(node.name);
+
+            int stage = 0;
+            for (Node dependency : node.edges) {
+                if (dependency.loaded) {
+                    stage = Math.max(stage, dependency.stage + 1);
+                }
+            }
+            node.stage = stage;
+            if (stage == stages.size()) {
+                stages.add(new ArrayList<String>());
+            }
+            stages.get(stage).add(node.name);
+
+            for (Map.Entry<Node, Boolean> dependent : node.dependents.entrySet()) {
+                Node next = dependent.getKey();
+                if (next.loaded) continue;
+                if (dependent.getValue()) {
+                    next.pendingHard--;
+                } else {
+                    next.pendingSoft--;
+                }
+                if (next.pendingHard == 0) {
+                    if (next.pendingSoft == 0) {
+                        ready.add(next);
+                    } else if (dependent.getValue()) {
+                        hardReady.add(next);
+                    }
+                }
+            }
+        }
+
+        ImmutableList.Builder<List<String>> foundCycles = ImmutableList.builder();
+        Set<String> blocked = new LinkedHashSet<String>();
+        if (remaining > 0) {
+            for (Node node : nodes.values()) {
+                if (!node.failed && !node.loaded) {
+                    blocked.add(node.name);
+                }
+            }
+            for (List<String> cycle : findHardCycles()) {
+                foundCycles.add(cycle);
+            }
+        }
+
+        ImmutableList.Builder<List<String>> stageList = ImmutableList.builder();
+        for (List<String> stage : stages) {
+            stageList.add(ImmutableList.copyOf(stage));
+        }
+
+        loadOrder = order.build();
+        loadStages = stageList.build();
+        missingDependencies = ImmutableMap.copyOf(missing);
+        cycles = foundCycles.build();
+        cyclic = ImmutableSet.copyOf(blocked);
+    }
+
+    private void addEdge(Node from, Node to, boolean hard) {
+        if (from == null || to == null || from.failed || to.failed || from == to) {
+            if (hard && from == to && from != null) {
+                to.pendingHard++; // depending on itself can never be satisfied
+            }
+            return;
+        }
+        Boolean existing = from.dependents.get(to);
+        if (existing == null) {
+            from.dependents.put(to, hard);
+            to.edges.add(from);
+            if (hard) {
+                to.pendingHard++;
+            } else {
+                to.pendingSoft++;
+            }
+        } else if (hard && !existing) {
+            from.dependents.put(to, true);
+            to.pendingSoft--;
+            to.pendingHard++;
+        }
+    }
+
+    /**
+     * Marks every plugin with a missing hard dependency as failed,
+     * including plugins which depend on failed plugins.
+     */
+    private void findMissing(Map<String, String> missing) {
+        Map<String, List<Node>> hardDependents = new HashMap<String, List<Node>>();
+        Deque<Node> failed = new ArrayDeque<Node>();
+        for (Node node : nodes.values()) {
+            for (String name : node.depend) {
+                if (!nodes.containsKey(name)) {
+                    if (!node.failed) {
+                        node.failed = true;
+                        missing.put(node.name, name);
+                        failed.add(node);
+                    }
+                } else {
+                    List<Node> dependents = hardDependents.get(name);
+                    if (dependents == null) {
+                        dependents = new ArrayList<Node>();
+                        hardDependents.put(name, dependents);
+                    }
+                    dependents.add(node);
+                }
+            }
+        }
+        while (!failed.isEmpty()) {
+            Node node = failed.poll();
+            List<Node> dependents = hardDependents.get(node.name);
+            if (dependents == null) continue;
+            for (Node dependent : dependents) {
+                if (!dependent.failed) {
+                    dependent.failed = true;
+                    missing.put(dependent.name, node.name);
+                    failed.add(dependent);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the strongly connected components of unloaded plugins over hard
+     * dependency edges, using an iterative form of Tarjan's algorithm.
+     */
+    private List<List<String>> findHardCycles() {
+        List<List<String>> found = new ArrayList<List<String>>();
+        Map<Node, Integer> index = new HashMap<Node, Integer>();
+        Map<Node, Integer> lowLink = new HashMap<Node, Integer>();
+        Deque<Node> stack = new ArrayDeque<Node>();
+        Set<Node> onStack = new HashSet<Node>();
+        int counter = 0;
+
+        for (Node root : nodes.values()) {
+            if (root.failed || root.loaded || index.containsKey(root)) continue;
+
+            Deque<Node> path = new ArrayDeque<Node>();
+            Deque<Iterator<Node>> iterators = new ArrayDeque<Iterator<Node>>();
+            index.put(root, counter);
+            lowLink.put(root, counter++);
+            stack.push(root);
+            onStack.add(root);
+            path.push(root);
+            iterators.push(hardDependencies(root).iterator());
+
+            while (!path.isEmpty()) {
+                Node node = path.peek();
+                Iterator<Node> it = iterators.peek();
+                if (it.hasNext()) {
+                    Node next = it.next();
+                    if (!index.containsKey(next)) {
+                        index.put(next, counter);
+                        lowLink.put(next, counter++);
+                        stack.push(next);
+                        onStack.add(next);
+                        path.push(next);
+                        iterators.push(hardDependencies(next).iterator());
+                    } else if (onStack.contains(next)) {
+                        lowLink.put(node, Math.min(lowLink.get(node), index.get(next)));
+                    }
+                    continue;
+                }
+
+                path.pop();
+                iterators.pop();
+                if (!path.isEmpty()) {
+                    Node parent = path.peek();
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+                }
+                if (lowLink.get(node).equals(index.get(node))) {
+                    List<String> component = new ArrayList<String>();
+                    Node member;
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.add(member.name);
+                    } while (member != node);
+                    if (component.size() > 1 || node.depend.contains(node.name)) {
+                        Collections.reverse(component);
+                        found.add(ImmutableList.copyOf(component));
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private List<Node> hardDependencies(Node node) {
+        List<Node> dependencies = new ArrayList<Node>();
+        for (String name : node.depend) {
+            Node dependency = nodes.get(name);
+            if (dependency != null && !dependency.failed && !dependency.loaded) {
+                dependencies.add(dependency);
+            }
+        }
+        return dependencies;
+    }
+
+    private static final class Node {
+        final String name;
+        final int position;
+        final Set<String> depend = new LinkedHashSet<String>();
+        final Set<String> softDepend = new LinkedHashSet<String>();
+        final Set<String> loadBefore = new LinkedHashSet<String>();
+        final Map<Node, Boolean> dependents = new LinkedHashMap<Node, Boolean>();
+        final List<Node> edges = new ArrayList<Node>();
+        int pendingHard = 0;
+        int pendingSoft = 0;
+        int stage = 0;
+        boolean failed = false;
+        boolean loaded = false;
+
+        Node(String name, int position) {
+            this.name = name;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package org.bukkit.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An on-disk cache of parsed plugin.yml files, keyed by plugin file path,
+ * size and modification time.
+ * <p>
+ * Only the plain yaml structure is stored (maps, lists, strings, numbers and
+ * booleans), in a small tagged binary format. Descriptions holding anything
+ * else are simply not cached.
+ */
+final class PluginDescriptionCache {
+    private static final int MAGIC = 0x42504443; // BPDC
+    private static final int FORMAT = 1;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte LIST = 6;
+    private static final byte MAP = 7;
+
+    // Deeper values are treated as damage, plugin.yml files are shallow
+    private static final int MAX_DEPTH = 64;
+
+    private final File file;
+    private final Map<String, Entry> loaded = new HashMap<String, Entry>();
+    private final Map<String, Entry> current = new LinkedHashMap<String, Entry>();
+
+    PluginDescriptionCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the cache file. A missing, outdated or damaged file leaves the
+     * cache empty.
+     */
+    void load() {
+        if (!file.isFile()) {
+            return;
+        }
+        // Every stored element takes at least one byte, so no length read
+        // from an intact file can be larger than the file itself
+        long limit = file.length();
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                return;
+            }
+            for (int entries = readLength(in, limit); entries > 0; entries--) {
+                String path = in.readUTF();
+                long length = in.readLong();
+                long lastModified = in.readLong();
+                loaded.put(path, new Entry(length, lastModified, readValue(in, limit, 0)));
+            }
+        } catch (IOException ex) {
+            loaded.clear();
+        } catch (RuntimeException ex) {
+            loaded.clear();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the cached description of a plugin file, if the file did not
+     * change since it was cached
+     *
+     * @param plugin the plugin file
+     * @return the description, or null if not cached or outdated
+     */
+    PluginDescriptionFile get(File plugin) {
+        String path = plugin.getAbsolutePath();
+        Entry entry = loaded.get(path);
+        if (entry == null || entry.length != plugin.length() || entry.lastModified != plugin.lastModified()) {
+            return null;
+        }
+        try {
+            PluginDescriptionFile description = new PluginDescriptionFile(entry.yaml);
+            current.put(path, entry);
+            return description;
+        } catch (InvalidDescriptionException ex) {
+            return null;
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the description of a plugin file
+     *
+     * @param plugin the plugin file
+     * @param description the description read from the file
+     */
+    void put(File plugin, PluginDescriptionFile description) {
+        Map<?, ?> yaml = description.getRawMap();
+        if (yaml != null && isStorable(yaml)) {
+            current.put(plugin.getAbsolutePath(), new Entry(plugin.length(), plugin.lastModified(), yaml));
+        }
+    }
+
+    /**
+     * Writes every entry which was read or stored since this cache was
+     * created, dropping those of plugin files which are gone.
+     * <p>
+     * The entries are written to a temporary file which then replaces the
+     * cache file, so a failed save never leaves a truncated cache behind.
+     *
+     * @throws IOException if the cache file could not be written
+     */
+    void save() throws IOException {
+        File temp = File.createTempFile("." + file.getName() + "-", ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeInt(current.size());
+                for (Map.Entry<String, Entry> entry : current.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().length);
+                    out.writeLong(entry.getValue().lastModified);
+                    writeValue(out, entry.getValue().yaml);
+                }
+            } finally {
+                out.close();
+            }
+
+            if (!temp.renameTo(file)) {
+                // Some platforms cannot rename over an existing file. The
+                // cache can be rebuilt, so losing the old one is fine
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Could not move " + temp + " to " + file);
+                }
+            }
+            temp = null;
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private static boolean isStorable(Object value) {
+        if (value == null || value instanceof String || value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Boolean) {
+            return true;
+        }
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                if (!isStorable(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!isStorable(entry.getKey()) || !isStorable(entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }
+    }
+
+    private static Object readValue(DataInputStream in, long limit, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Values nested too deeply");
+        }
+        byte type = in.readByte();
+        switch (type) {
+        case NULL:
+            return null;
+        case STRING:
+            return readString(in, limit);
+        case INTEGER:
+            return in.readInt();
+        case LONG:
+            return in.readLong();
+        case DOUBLE:
+            return in.readDouble();
+        case BOOLEAN:
+            return in.readBoolean();
+        case LIST:
+            int size = readLength(in, limit);
+            List<Object> list = new ArrayList<Object>();
+            for (int i = 0; i < size; i++) {
+                list.add(readValue(in, limit, depth + 1));
+            }
+            return list;
+        case MAP:
+            int entries = readLength(in, limit);
+            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            for (int i = 0; i < entries; i++) {
+                map.put(readValue(in, limit, depth + 1), readValue(in, limit, depth + 1));
+            }
+            return map;
+        default:
+            throw new EOFException("Unknown value type " + type);
+        }
+    }
+
+    // writeUTF is limited to 64k, which a long description could exceed
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, long limit) throws IOException {
+        byte[] bytes = new byte[readLength(in, limit)];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static int readLength(DataInputStream in, long limit) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > limit) {
+            throw new IOException("Invalid length " + length);
+        }
+        return length;
+    }
+
+    private static final class Entry {
+        final long length;
+        final long lastModified;
+        final Object yaml;
+
+        Entry(long length, long lastModified, Object yaml) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.yaml = yaml;
+        }
+    }
+}
@@ -165,7 +165,12 @@ import com.google.common.collect.ImmutableMap;
  *</pre></blockquote>
  */
 public final class PluginDescriptionFile {
-    private static final Yaml yaml = new Yaml(new SafeConstructor());
+    private static final ThreadLocal<Yaml> yaml = new ThreadLocal<Yaml>() {
+        @Override
+        protected Yaml initialValue() {
+            return new Yaml(new SafeConstructor());
+        }
+    };
     private String name = null;
     private String main = null;
     private String classLoaderOf = null;
@@ -183,9 +188,10 @@ public final class PluginDescriptionFile {
     private List<Permission> permissions = null;
     private Map<?, ?> lazyPermissions = null;
     private PermissionDefault defaultPerm = PermissionDefault.OP;
+    private Map<?, ?> rawMap = null;
 
     public PluginDescriptionFile(final InputStream stream) throws InvalidDescriptionException {
-        loadMap(asMap(yaml.load(stream)));
+        this((Object) yaml.get().load(stream));
     }
 
     /**
@@ -196,7 +202,19 @@ public final class PluginDescriptionFile {
      *     invalid
      */
     public PluginDescriptionFile(final Reader reader) throws InvalidDescriptionException {
-        loadMap(asMap(yaml.load(reader)));
+        this((Object) yaml.get().load(reader));
+    }
+
+    /**
+     * Loads a PluginDescriptionFile from an already parsed plugin.yml
+     *
+     * @param object The parsed yaml
+     * @throws InvalidDescriptionException If the PluginDescriptionFile is
+     *     invalid
+     */
+    PluginDescriptionFile(final Object object) throws InvalidDescriptionException {
+        rawMap = asMap(object);
+        loadMap(rawMap);
     }
 
     /**
@@ -787,7 +805,17 @@ public final class PluginDescriptionFile {
      * @param writer Writer to output this file to
      */
     public void save(Writer writer) {
-        yaml.dump(saveMap(), writer);
+        yaml.get().dump(saveMap(), writer);
+    }
+
+    /**
+     * Gets the parsed plugin.yml this description was loaded from
+     *
+     * @return the parsed yaml, or null if this description was not loaded
+     *     from yaml
+     */
+    Map<?, ?> getRawMap() {
+        return rawMap;
     }
 
     private void loadMap(Map<?, ?> map) throws InvalidDescriptionException {
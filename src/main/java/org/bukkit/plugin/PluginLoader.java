@@ -29,6 +29,8 @@ public interface PluginLoader {
 
     /**
      * Loads a PluginDescriptionFile from the specified file
+     * <p>
+     * This may be called for several files at once from different threads.
      *
      * @param file File to attempt to load from
      * @return A new PluginDescriptionFile loaded from the plugin.yml in the
@@ -1,19 +1,27 @@
 package org.bukkit.plugin;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -23,6 +31,8 @@ import org.bukkit.Server;
 import org.bukkit.command.Command;
 import org.bukkit.command.PluginCommandYamlParser;
 import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.DispatchPlan;
 import org.bukkit.event.Event;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.HandlerList;
@@ -33,11 +43,14 @@ import org.bukkit.permissions.PermissionDefault;
 import org.bukkit.util.FileUtil;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Handles all plugin management from the Server
  */
 public final class SimplePluginManager implements PluginManager {
+    private static final String DESCRIPTION_CACHE = ".descriptions.cache";
     private final Server server;
     private final Map<Pattern, PluginLoader> fileAssociations = new HashMap<Pattern, PluginLoader>();
     private final List<Plugin> plugins = new ArrayList<Plugin>();
@@ -46,9 +59,20 @@ public final class SimplePluginManager implements PluginManager {
     private final SimpleCommandMap commandMap;
     private final Map<String, Permission> permissions = new HashMap<String, Permission>();
     private final Map<Boolean, Set<Permission>> defaultPerms = new LinkedHashMap<Boolean, Set<Permission>>();
-    private final Map<String, Map<Permissible, Boolean>> permSubs = new HashMap<String, Map<Permissible, Boolean>>();
-    private final Map<Boolean, Map<Permissible, Boolean>> defSubs = new HashMap<Boolean, Map<Permissible, Boolean>>();
+    // The permissions each permissible is subscribed to, and the reverse,
+    // the permissibles subscribed to each permission. Weak, identity based
+    // keys, so a permissible is dropped once it is collected. A name is
+    // removed once its last subscriber unsubscribes
+    private final ConcurrentMap<Permissible, Set<String>> permSubs = new MapMaker().weakKeys().makeMap();
+    private final ConcurrentMap<String, Set<Permissible>> permNameSubs = new ConcurrentHashMap<String, Set<Permissible>>();
+    private final Map<Boolean, Set<Permissible>> defSubs = new HashMap<Boolean, Set<Permissible>>();
+    private final Map<Class<? extends Event>, HandlerList> handlerLists = new MapMaker().weakKeys().makeMap();
+    private DependencyGraph dependencyGraph = null;
     private boolean useTimings = false;
+    private volatile boolean lockEventDispatch = true;
+    private volatile int permissionsVersion = 0;
+    private final Set<Permissible> dirtyPermissibles = Collections.newSetFromMap(new MapMaker().weakKeys().<Permissible, Boolean>makeMap());
+    private volatile boolean deferPermissionRecalculation = false;
 
     public SimplePluginManager(Server instance, SimpleCommandMap commandMap) {
         server = instance;
@@ -56,6 +80,8 @@ public final class SimplePluginManager implements PluginManager {
 
         defaultPerms.put(true, new HashSet<Permission>());
         defaultPerms.put(false, new HashSet<Permission>());
+        defSubs.put(true, newWeakSet());
+        defSubs.put(false, newWeakSet());
     }
 
     /**
@@ -114,168 +140,162 @@ public final class SimplePluginManager implements PluginManager {
         Map<String, File> plugins = new HashMap<String, File>();
         Set<String> loadedPlugins = new HashSet<String>();
         Map<String, Collection<String>> dependencies = new HashMap<String, Collection<String>>();
-        Map<String, Collection<String>> softDependencies = new HashMap<String, Collection<String>>();
+        DependencyGraph graph = new DependencyGraph();
 
         // This is where it figures out all possible plugins
-        for (File file : directory.listFiles()) {
-            PluginLoader loader = null;
-            for (Pattern filter : filters) {
-                Matcher match = filter.matcher(file.getName());
-                if (match.find()) {
-                    loader = fileAssociations.get(filter);
+        PluginDescriptionCache cache = new PluginDescriptionCache(new File(directory, DESCRIPTION_CACHE));
+        cache.load();
+
+        List<File> files = new ArrayList<File>();
+        List<PluginDescriptionFile> cached = new ArrayList<PluginDescriptionFile>();
+        List<Future<PluginDescriptionFile>> scanned = new ArrayList<Future<PluginDescriptionFile>>();
+        ExecutorService scanner = null;
+
+        try {
+            for (File file : directory.listFiles()) {
+                PluginLoader loader = null;
+                for (Pattern filter : filters) {
+                    Matcher match = filter.matcher(file.getName());
+                    if (match.find()) {
+                        loader = fileAssociations.get(filter);
+                    }
                 }
-            }
 
-            if (loader == null) continue;
+                if (loader == null) continue;
 
-            PluginDescriptionFile description = null;
-            try {
-                description = loader.getPluginDescription(file);
-            } catch (InvalidDescriptionException ex) {
-                server.getLogger().log(Level.SEVERE, "Could not load '" + file.getPath() + "' in folder '" + directory.getPath() + "'", ex);
-                continue;
+                PluginDescriptionFile description = cache.get(file);
+                Future<PluginDescriptionFile> future = null;
+                if (description == null) {
+                    if (scanner == null) {
+                        scanner = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactoryBuilder().setNameFormat("Plugin Description Scanner #%d").setDaemon(true).build());
+                    }
+                    final PluginLoader descriptionLoader = loader;
+                    final File descriptionFile = file;
+                    future = scanner.submit(new Callable<PluginDescriptionFile>() {
+                        public PluginDescriptionFile call() throws InvalidDescriptionException {
+                            return descriptionLoader.getPluginDescription(descriptionFile);
+                        }
+                    });
+                }
+
+                files.add(file);
+                cached.add(description);
+                scanned.add(future);
+            }
+        } finally {
+            if (scanner != null) {
+                scanner.shutdown();
             }
+        }
 
-            plugins.put(description.getName(), file);
+        // Descriptions are merged back in directory order, so the result does
+        // not depend on which scan finished first
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            PluginDescriptionFile description = cached.get(i);
 
-            Collection<String> softDependencySet = description.getSoftDepend();
-            if (softDependencySet != null) {
-                if (softDependencies.containsKey(description.getName())) {
-                    // Duplicates do not matter, they will be removed together if applicable
-                    softDependencies.get(description.getName()).addAll(softDependencySet);
-                } else {
-                    softDependencies.put(description.getName(), new LinkedList<String>(softDependencySet));
+            if (description == null) {
+                try {
+                    description = getScannedDescription(scanned.get(i));
+                } catch (InvalidDescriptionException ex) {
+                    server.getLogger().log(Level.SEVERE, "Could not load '" + file.getPath() + "' in folder '" + directory.getPath() + "'", ex);
+                    continue;
                 }
+                cache.put(file, description);
             }
 
+            plugins.put(description.getName(), file);
+            graph.add(description);
+
             Collection<String> dependencySet = description.getDepend();
             if (dependencySet != null) {
-                dependencies.put(description.getName(), new LinkedList<String>(dependencySet));
-            }
-
-            Collection<String> loadBeforeSet = description.getLoadBefore();
-            if (loadBeforeSet != null) {
-                for (String loadBeforeTarget : loadBeforeSet) {
-                    if (softDependencies.containsKey(loadBeforeTarget)) {
-                        softDependencies.get(loadBeforeTarget).add(description.getName());
-                    } else {
-                        // softDependencies is never iterated, so 'ghost' plugins aren't an issue
-                        Collection<String> shortSoftDependency = new LinkedList<String>();
-                        shortSoftDependency.add(description.getName());
-                        softDependencies.put(loadBeforeTarget, shortSoftDependency);
-                    }
-                }
+                dependencies.put(description.getName(), dependencySet);
+            } else {
+                dependencies.remove(description.getName());
             }
         }
 
-        while (!plugins.isEmpty()) {
-            boolean missingDependency = true;
-            Iterator<String> pluginIterator = plugins.keySet().iterator();
-
-            while (pluginIterator.hasNext()) {
-                String plugin = pluginIterator.next();
-
-                if (dependencies.containsKey(plugin)) {
-                    Iterator<String> dependencyIterator = dependencies.get(plugin).iterator();
-
-                    while (dependencyIterator.hasNext()) {
-                        String dependency = dependencyIterator.next();
-
-                        // Dependency loaded
-                        if (loadedPlugins.contains(dependency)) {
-                            dependencyIterator.remove();
-
-                        // We have a dependency not found
-                        } else if (!plugins.containsKey(dependency)) {
-                            missingDependency = false;
-                            File file = plugins.get(plugin);
-                            pluginIterator.remove();
-                            softDependencies.remove(plugin);
-                            dependencies.remove(plugin);
-
-                            server.getLogger().log(
-                                Level.SEVERE,
-                                "Could not load '" + file.getPath() + "' in folder '" + directory.getPath() + "'",
-                                new UnknownDependencyException(dependency));
-                            break;
-                        }
-                    }
+        try {
+            cache.save();
+        } catch (IOException ex) {
+            server.getLogger().log(Level.WARNING, "Could not save plugin description cache in folder '" + directory.getPath() + "'", ex);
+        }
 
-                    if (dependencies.containsKey(plugin) && dependencies.get(plugin).isEmpty()) {
-                        dependencies.remove(plugin);
-                    }
-                }
-                if (softDependencies.containsKey(plugin)) {
-                    Iterator<String> softDependencyIterator = softDependencies.get(plugin).iterator();
+        dependencyGraph = graph;
 
-                    while (softDependencyIterator.hasNext()) {
-                        String softDependency = softDependencyIterator.next();
+        for (Map.Entry<String, String> missing : graph.getMissingDependencies().entrySet()) {
+            File file = plugins.get(missing.getKey());
+            server.getLogger().log(
+                Level.SEVERE,
+                "Could not load '" + file.getPath() + "' in folder '" + directory.getPath() + "'",
+                new UnknownDependencyException(missing.getValue()));
+        }
 
-                        // Soft depend is no longer around
-                        if (!plugins.containsKey(softDependency)) {
-                            softDependencyIterator.remove();
-                        }
-                    }
+        for (String plugin : graph.getLoadOrder()) {
+            File file = plugins.get(plugin);
 
-                    if (softDependencies.get(plugin).isEmpty()) {
-                        softDependencies.remove(plugin);
-                    }
-                }
-                if (!(dependencies.containsKey(plugin) || softDependencies.containsKey(plugin)) && plugins.containsKey(plugin)) {
-                    // We're clear to load, no more soft or hard dependencies left
-                    File file = plugins.get(plugin);
-                    pluginIterator.remove();
-                    missingDependency = false;
-
-                    try {
-                        result.add(loadPlugin(file));
-                        loadedPlugins.add(plugin);
-                        continue;
-                    } catch (InvalidPluginException ex) {
-                        server.getLogger().log(Level.SEVERE, "Could not load '" + file.getPath() + "' in folder '" + directory.getPath() + "'", ex);
+            // A dependency may still have failed while being loaded
+            String failedDependency = null;
+            Collection<String> dependencySet = dependencies.get(plugin);
+            if (dependencySet != null) {
+                for (String dependency : dependencySet) {
+                    if (!loadedPlugins.contains(dependency)) {
+                        failedDependency = dependency;
+                        break;
                     }
                 }
             }
+            if (failedDependency != null) {
+                server.getLogger().log(
+                    Level.SEVERE,
+                    "Could not load '" + file.getPath() + "' in folder '" + directory.getPath() + "'",
+                    new UnknownDependencyException(failedDependency));
+                continue;
+            }
 
-            if (missingDependency) {
-                // We now iterate over plugins until something loads
-                // This loop will ignore soft dependencies
-                pluginIterator = plugins.keySet().iterator();
+            try {
+                result.add(loadPlugin(file));
+                loadedPlugins.add(plugin);
+            } catch (InvalidPluginException ex) {
+                server.getLogger().log(Level.SEVERE, "Could not load '" + file.getPath() + "' in folder '" + directory.getPath() + "'", ex);
+            }
+        }
 
-                while (pluginIterator.hasNext()) {
-                    String plugin = pluginIterator.next();
+        for (String plugin : plugins.keySet()) {
+            if (graph.isCyclic(plugin)) {
+                File file = plugins.get(plugin);
+                server.getLogger().log(Level.SEVERE, "Could not load '" + file.getPath() + "' in folder '" + directory.getPath() + "': circular dependency detected");
+            }
+        }
 
-                    if (!dependencies.containsKey(plugin)) {
-                        softDependencies.remove(plugin);
-                        missingDependency = false;
-                        File file = plugins.get(plugin);
-                        pluginIterator.remove();
+        return result.toArray(new Plugin[result.size()]);
+    }
 
-                        try {
-                            result.add(loadPlugin(file));
-                            loadedPlugins.add(plugin);
-                            break;
-                        } catch (InvalidPluginException ex) {
-                            server.getLogger().log(Level.SEVERE, "Could not load '" + file.getPath() + "' in folder '" + directory.getPath() + "'", ex);
-                        }
-                    }
-                }
-                // We have no plugins left without a depend
-                if (missingDependency) {
-                    softDependencies.clear();
-                    dependencies.clear();
-                    Iterator<File> failedPluginIterator = plugins.values().iterator();
-
-                    while (failedPluginIterator.hasNext()) {
-                        File file = failedPluginIterator.next();
-                        failedPluginIterator.remove();
-                        server.getLogger().log(Level.SEVERE, "Could not load '" + file.getPath() + "' in folder '" + directory.getPath() + "': circular dependency detected");
-                    }
+    private static PluginDescriptionFile getScannedDescription(Future<PluginDescriptionFile> future) throws InvalidDescriptionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
                 }
             }
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof InvalidDescriptionException) {
+                throw (InvalidDescriptionException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new InvalidDescriptionException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
-
-        return result.toArray(new Plugin[result.size()]);
     }
 
     /**
@@ -386,6 +406,7 @@ public final class SimplePluginManager implements PluginManager {
                 server.getLogger().log(Level.SEVERE, "Error occurred (in the plugin loader) while enabling " + plugin.getDescription().getFullName() + " (Is it up to date?)", ex);
             }
 
+            HandlerList.invalidateDispatchPlans();
             HandlerList.bakeAll();
         }
     }
@@ -405,6 +426,8 @@ public final class SimplePluginManager implements PluginManager {
                 server.getLogger().log(Level.SEVERE, "Error occurred (in the plugin loader) while disabling " + plugin.getDescription().getFullName() + " (Is it up to date?)", ex);
             }
 
+            HandlerList.invalidateDispatchPlans();
+
             try {
                 server.getScheduler().cancelTasks(plugin);
             } catch (Throwable ex) {
@@ -440,6 +463,7 @@ public final class SimplePluginManager implements PluginManager {
             HandlerList.unregisterAll();
             fileAssociations.clear();
             permissions.clear();
+            permissionsVersion++;
             defaultPerms.get(true).clear();
             defaultPerms.get(false).clear();
         }
@@ -448,7 +472,8 @@ public final class SimplePluginManager implements PluginManager {
     /**
      * Calls an event with the given details.
      * <p>
-     * This method only synchronizes when the event is not asynchronous.
+     * This method only synchronizes when the event is not asynchronous, and
+     * only while {@link #lockEventDispatch()} is enabled.
      *
      * @param event Event details
      */
@@ -461,40 +486,53 @@ public final class SimplePluginManager implements PluginManager {
                 throw new IllegalStateException(event.getEventName() + " cannot be triggered asynchronously from primary server thread.");
             }
             fireEvent(event);
-        } else {
+        } else if (lockEventDispatch) {
             synchronized (this) {
                 fireEvent(event);
             }
+        } else {
+            fireEvent(event);
         }
     }
 
     private void fireEvent(Event event) {
-        HandlerList handlers = event.getHandlers();
-        RegisteredListener[] listeners = handlers.getRegisteredListeners();
-
-        for (RegisteredListener registration : listeners) {
-            if (!registration.getPlugin().isEnabled()) {
-                continue;
+        DispatchPlan plan = event.getHandlers().getDispatchPlan();
+        RegisteredListener[] listeners = plan.getListeners();
+        Cancellable cancellable = event instanceof Cancellable ? (Cancellable) event : null;
+
+        for (int run = 0, runs = plan.getRunCount(); run < runs; run++) {
+            int end = plan.getRunEnd(run);
+            if (cancellable != null && plan.isIgnoringCancelled(run)) {
+                // Once cancelled, the rest of this run is skipped at once
+                for (int i = plan.getRunStart(run); i < end && !cancellable.isCancelled(); i++) {
+                    callListener(listeners[i], event);
+                }
+            } else {
+                for (int i = plan.getRunStart(run); i < end; i++) {
+                    callListener(listeners[i], event);
+                }
             }
+        }
+    }
 
-            try {
-                registration.callEvent(event);
-            } catch (AuthorNagException ex) {
-                Plugin plugin = registration.getPlugin();
-
-                if (plugin.isNaggable()) {
-                    plugin.setNaggable(false);
-
-                    server.getLogger().log(Level.SEVERE, String.format(
-                            "Nag author(s): '%s' of '%s' about the following: %s",
-                            plugin.getDescription().getAuthors(),
-                            plugin.getDescription().getFullName(),
-                            ex.getMessage()
-                            ));
-                }
-            } catch (Throwable ex) {
-                server.getLogger().log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + registration.getPlugin().getDescription().getFullName(), ex);
+    private void callListener(RegisteredListener registration, Event event) {
+        try {
+            registration.callEvent(event);
+        } catch (AuthorNagException ex) {
+            Plugin plugin = registration.getPlugin();
+
+            if (plugin.isNaggable()) {
+                plugin.setNaggable(false);
+
+                server.getLogger().log(Level.SEVERE, String.format(
+                        "Nag author(s): '%s' of '%s' about the following: %s",
+                        plugin.getDescription().getAuthors(),
+                        plugin.getDescription().getFullName(),
+                        ex.getMessage()
+                        ));
             }
+        } catch (Throwable ex) {
+            server.getLogger().log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + registration.getPlugin().getDescription().getFullName(), ex);
         }
     }
 
@@ -504,7 +542,7 @@ public final class SimplePluginManager implements PluginManager {
         }
 
         for (Map.Entry<Class<? extends Event>, Set<RegisteredListener>> entry : plugin.getPluginLoader().createRegisteredListeners(listener, plugin).entrySet()) {
-            getEventListeners(getRegistrationClass(entry.getKey())).registerAll(entry.getValue());
+            getEventListeners(entry.getKey()).registerAll(entry.getValue());
         }
 
     }
@@ -543,28 +581,42 @@ public final class SimplePluginManager implements PluginManager {
     }
 
     private HandlerList getEventListeners(Class<? extends Event> type) {
+        HandlerList handlers = handlerLists.get(type);
+        if (handlers != null) {
+            return handlers;
+        }
+
+        Method method = getHandlerListMethod(getRegistrationClass(type));
         try {
-            Method method = getRegistrationClass(type).getDeclaredMethod("getHandlerList");
             method.setAccessible(true);
-            return (HandlerList) method.invoke(null);
+            handlers = (HandlerList) method.invoke(null);
         } catch (Exception e) {
             throw new IllegalPluginAccessException(e.toString());
         }
+        if (handlers == null) {
+            throw new IllegalPluginAccessException("Handler list for event " + type.getName() + " is null");
+        }
+
+        handlerLists.put(type, handlers);
+        return handlers;
     }
 
     private Class<? extends Event> getRegistrationClass(Class<? extends Event> clazz) {
-        try {
-            clazz.getDeclaredMethod("getHandlerList");
-            return clazz;
-        } catch (NoSuchMethodException e) {
-            if (clazz.getSuperclass() != null
-                    && !clazz.getSuperclass().equals(Event.class)
-                    && Event.class.isAssignableFrom(clazz.getSuperclass())) {
-                return getRegistrationClass(clazz.getSuperclass().asSubclass(Event.class));
-            } else {
-                throw new IllegalPluginAccessException("Unable to find handler list for event " + clazz.getName());
+        for (Class<?> current = clazz; current != null && current != Event.class && Event.class.isAssignableFrom(current); current = current.getSuperclass()) {
+            if (getHandlerListMethod(current) != null) {
+                return current.asSubclass(Event.class);
+            }
+        }
+        throw new IllegalPluginAccessException("Unable to find handler list for event " + clazz.getName());
+    }
+
+    private static Method getHandlerListMethod(Class<?> clazz) {
+        for (Method method : clazz.getDeclaredMethods()) {
+            if (method.getName().equals("getHandlerList") && method.getParameterTypes().length == 0) {
+                return method;
             }
         }
+        return null;
     }
 
     public Permission getPermission(String name) {
@@ -579,6 +631,7 @@ public final class SimplePluginManager implements PluginManager {
         }
 
         permissions.put(name, perm);
+        permissionsVersion++;
         calculatePermissionDefault(perm);
     }
 
@@ -592,6 +645,18 @@ public final class SimplePluginManager implements PluginManager {
 
     public void removePermission(String name) {
         permissions.remove(name.toLowerCase());
+        permissionsVersion++;
+    }
+
+    /**
+     * Gets a number which changes whenever a permission is added or
+     * removed, so lookups of {@link #getPermission(String)} can be cached
+     * until it changes.
+     *
+     * @return the current version of the registered permissions
+     */
+    public int getPermissionsVersion() {
+        return permissionsVersion;
     }
 
     public void recalculatePermissionDefaults(Permission perm) {
@@ -615,96 +680,241 @@ public final class SimplePluginManager implements PluginManager {
     }
 
     private void dirtyPermissibles(boolean op) {
-        Set<Permissible> permissibles = getDefaultPermSubscriptions(op);
+        for (Permissible p : getDefaultPermSubscriptions(op)) {
+            dirty(p);
+        }
+    }
 
-        for (Permissible p : permissibles) {
+    /**
+     * Marks a permissible whose permissions have to be recalculated, such
+     * as one holding a permission whose children changed. It is
+     * recalculated straight away, unless recalculation is {@link
+     * #deferPermissionRecalculation(boolean) deferred}.
+     *
+     * @param permissible the permissible to recalculate
+     */
+    public void dirty(Permissible permissible) {
+        if (deferPermissionRecalculation) {
+            dirtyPermissibles.add(permissible);
+        } else {
+            permissible.recalculatePermissions();
+        }
+    }
+
+    /**
+     * Recalculates the permissions of every permissible whose default
+     * permissions or permission children changed since this was last
+     * called. Each permissible is recalculated once, however many
+     * permissions changed.
+     * <p>
+     * Servers which {@link #deferPermissionRecalculation(boolean) defer
+     * recalculation} should call this once per tick.
+     */
+    public void recalculateDirtyPermissibles() {
+        Iterator<Permissible> iterator = dirtyPermissibles.iterator();
+
+        while (iterator.hasNext()) {
+            Permissible p = iterator.next();
+            iterator.remove();
             p.recalculatePermissions();
         }
     }
 
     public void subscribeToPermission(String permission, Permissible permissible) {
-        String name = permission.toLowerCase();
-        Map<Permissible, Boolean> map = permSubs.get(name);
-
-        if (map == null) {
-            map = new WeakHashMap<Permissible, Boolean>();
-            permSubs.put(name, map);
+        String name = permission.toLowerCase(Locale.ENGLISH);
+        Set<String> names = permSubs.get(permissible);
+
+        if (names == null) {
+            names = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            Set<String> existing = permSubs.putIfAbsent(permissible, names);
+            if (existing != null) {
+                names = existing;
+            }
         }
 
-        map.put(permissible, true);
+        // Locked per permissible, so both indexes change together
+        synchronized (names) {
+            if (names.add(name)) {
+                while (true) {
+                    Set<Permissible> subscribers = permNameSubs.get(name);
+                    if (subscribers == null) {
+                        subscribers = newWeakSet();
+                        Set<Permissible> existing = permNameSubs.putIfAbsent(name, subscribers);
+                        if (existing != null) {
+                            subscribers = existing;
+                        }
+                    }
+
+                    // Retry if the set was removed after its last
+                    // subscriber unsubscribed
+                    synchronized (subscribers) {
+                        if (permNameSubs.get(name) == subscribers) {
+                            subscribers.add(permissible);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
     }
 
     public void unsubscribeFromPermission(String permission, Permissible permissible) {
-        String name = permission.toLowerCase();
-        Map<Permissible, Boolean> map = permSubs.get(name);
-
-        if (map != null) {
-            map.remove(permissible);
-
-            if (map.isEmpty()) {
-                permSubs.remove(name);
+        Set<String> names = permSubs.get(permissible);
+
+        if (names != null) {
+            String name = permission.toLowerCase(Locale.ENGLISH);
+            synchronized (names) {
+                if (names.remove(name)) {
+                    Set<Permissible> subscribers = permNameSubs.get(name);
+                    if (subscribers != null) {
+                        synchronized (subscribers) {
+                            subscribers.remove(permissible);
+                            if (subscribers.isEmpty()) {
+                                permNameSubs.remove(name, subscribers);
+                            }
+                        }
+                    }
+                }
             }
         }
     }
 
     public Set<Permissible> getPermissionSubscriptions(String permission) {
-        String name = permission.toLowerCase();
-        Map<Permissible, Boolean> map = permSubs.get(name);
+        Set<Permissible> subscribers = permNameSubs.get(permission.toLowerCase(Locale.ENGLISH));
 
-        if (map == null) {
+        if (subscribers == null) {
             return ImmutableSet.of();
         } else {
-            return ImmutableSet.copyOf(map.keySet());
+            return ImmutableSet.copyOf(subscribers);
         }
     }
 
-    public void subscribeToDefaultPerms(boolean op, Permissible permissible) {
-        Map<Permissible, Boolean> map = defSubs.get(op);
+    /**
+     * Counts the permissibles subscribed to each permission
+     *
+     * @return the number of subscribers by lowercase permission name
+     */
+    public Map<String, Integer> getPermissionSubscriptionCounts() {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
 
-        if (map == null) {
-            map = new WeakHashMap<Permissible, Boolean>();
-            defSubs.put(op, map);
+        for (Map.Entry<String, Set<Permissible>> entry : permNameSubs.entrySet()) {
+            int count = entry.getValue().size();
+            if (count > 0) {
+                counts.put(entry.getKey(), count);
+            }
         }
 
-        map.put(permissible, true);
+        return counts;
     }
 
-    public void unsubscribeFromDefaultPerms(boolean op, Permissible permissible) {
-        Map<Permissible, Boolean> map = defSubs.get(op);
-
-        if (map != null) {
-            map.remove(permissible);
+    public void subscribeToDefaultPerms(boolean op, Permissible permissible) {
+        defSubs.get(op).add(permissible);
+    }
 
-            if (map.isEmpty()) {
-                defSubs.remove(op);
-            }
-        }
+    public void unsubscribeFromDefaultPerms(boolean op, Permissible permissible) {
+        defSubs.get(op).remove(permissible);
     }
 
     public Set<Permissible> getDefaultPermSubscriptions(boolean op) {
-        Map<Permissible, Boolean> map = defSubs.get(op);
+        return ImmutableSet.copyOf(defSubs.get(op));
+    }
 
-        if (map == null) {
-            return ImmutableSet.of();
-        } else {
-            return ImmutableSet.copyOf(map.keySet());
-        }
+    private static Set<Permissible> newWeakSet() {
+        return Collections.newSetFromMap(new MapMaker().weakKeys().<Permissible, Boolean>makeMap());
     }
 
     public Set<Permission> getPermissions() {
         return new HashSet<Permission>(permissions.values());
     }
 
+    /**
+     * Gets the dependency graph computed by the last call to
+     * {@link #loadPlugins(File)}
+     *
+     * @return the dependency graph, or null if no plugins were loaded yet
+     */
+    public DependencyGraph getDependencyGraph() {
+        return dependencyGraph;
+    }
+
     public boolean useTimings() {
         return useTimings;
     }
 
     /**
      * Sets whether or not per event timing code should be used
+     * <p>
+     * Only listeners registered while timings are used are timed, as they
+     * are registered as {@link TimedRegisteredListener}s. Listeners
+     * registered before timings were enabled are never timed and have no
+     * latency histograms, so this should be set before plugins are enabled.
+     * Listeners registered while timings were used keep being timed after
+     * they are disabled.
      *
      * @param use True if per event timing code should be used
      */
     public void useTimings(boolean use) {
         useTimings = use;
     }
+
+    /**
+     * Gets whether synchronous events are dispatched while holding this
+     * plugin manager's lock
+     *
+     * @return True if synchronous event dispatch takes the global lock
+     */
+    public boolean lockEventDispatch() {
+        return lockEventDispatch;
+    }
+
+    /**
+     * Sets whether synchronous events should be dispatched while holding
+     * this plugin manager's lock.
+     * <p>
+     * When disabled, synchronous events are dispatched from the
+     * {@link HandlerList}'s published handler array without taking any lock,
+     * so the main thread no longer contends with plugin enabling, disabling
+     * or permission registration happening on other threads. Listeners
+     * registered or unregistered during a dispatch take effect from the next
+     * event.
+     *
+     * @param lock True if synchronous event dispatch should take the global
+     *     lock
+     */
+    public void lockEventDispatch(boolean lock) {
+        lockEventDispatch = lock;
+    }
+
+    /**
+     * Gets whether permissibles are recalculated only when {@link
+     * #recalculateDirtyPermissibles()} is called after their default
+     * permissions or permission children changed
+     *
+     * @return True if recalculation of permissibles is deferred
+     */
+    public boolean deferPermissionRecalculation() {
+        return deferPermissionRecalculation;
+    }
+
+    /**
+     * Sets whether permissibles are recalculated only when {@link
+     * #recalculateDirtyPermissibles()} is called after their default
+     * permissions or permission children changed.
+     * <p>
+     * When enabled, registering permissions, changing their defaults or
+     * calling {@link Permission#recalculatePermissibles()} only marks the
+     * affected permissibles, and each of them is recalculated once
+     * on the next call to {@link #recalculateDirtyPermissibles()}, rather
+     * than once per change. Until then they keep their previous defaults.
+     * Disabling this recalculates the marked permissibles straight away.
+     *
+     * @param defer True if recalculation of permissibles should be deferred
+     */
+    public void deferPermissionRecalculation(boolean defer) {
+        deferPermissionRecalculation = defer;
+
+        if (!defer) {
+            recalculateDirtyPermissibles();
+        }
+    }
 }
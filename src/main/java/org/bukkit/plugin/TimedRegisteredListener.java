@@ -1,18 +1,35 @@
 package org.bukkit.plugin;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.bukkit.event.Event;
 import org.bukkit.event.EventException;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 
+import com.google.common.collect.ImmutableMap;
+
 /**
  * Extends RegisteredListener to include timing information
+ * <p>
+ * Both synchronous and asynchronous calls are timed. Besides the call count
+ * and total time, a {@link LatencyHistogram} is kept for every event class
+ * this listener handled, so percentiles and the worst call can be reported.
+ * Recording does not lock.
+ * <p>
+ * Plugin managers only create these for listeners registered while timings
+ * are used, see {@link SimplePluginManager#useTimings(boolean)}.
  */
 public class TimedRegisteredListener extends RegisteredListener {
-    private int count;
-    private long totalTime;
-    private Class<? extends Event> eventClass;
-    private boolean multiple = false;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final ConcurrentMap<Class<? extends Event>, LatencyHistogram> histograms = new ConcurrentHashMap<Class<? extends Event>, LatencyHistogram>();
+    private volatile Class<? extends Event> eventClass;
+    private volatile boolean multiple = false;
 
     public TimedRegisteredListener(final Listener pluginListener, final EventExecutor eventExecutor, final EventPriority eventPriority, final Plugin registeredPlugin, final boolean listenCancelled) {
         super(pluginListener, eventExecutor, eventPriority, registeredPlugin, listenCancelled);
@@ -20,21 +37,41 @@ public class TimedRegisteredListener extends RegisteredListener {
 
     @Override
     public void callEvent(Event event) throws EventException {
-        if (event.isAsynchronous()) {
+        count.incrementAndGet();
+        Class<? extends Event> newEventClass = event.getClass();
+        Class<? extends Event> eventClass = this.eventClass;
+        if (eventClass == null || (eventClass != newEventClass && !(multiple && eventClass.isAssignableFrom(newEventClass)))) {
+            updateEventClass(newEventClass);
+        }
+        long start = System.nanoTime();
+        try {
             super.callEvent(event);
-            return;
+        } finally {
+            long time = System.nanoTime() - start;
+            totalTime.addAndGet(time);
+            getHistogram0(newEventClass).record(time);
         }
-        count++;
-        Class<? extends Event> newEventClass = event.getClass();
+    }
+
+    private synchronized void updateEventClass(Class<? extends Event> newEventClass) {
         if (this.eventClass == null) {
             this.eventClass = newEventClass;
         } else if (!this.eventClass.equals(newEventClass)) {
             multiple = true;
             this.eventClass = getCommonSuperclass(newEventClass, this.eventClass).asSubclass(Event.class);
         }
-        long start = System.nanoTime();
-        super.callEvent(event);
-        totalTime += System.nanoTime() - start;
+    }
+
+    private LatencyHistogram getHistogram0(Class<? extends Event> clazz) {
+        LatencyHistogram histogram = histograms.get(clazz);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(clazz, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
     }
 
     private static Class<?> getCommonSuperclass(Class<?> class1, Class<?> class2) {
@@ -48,8 +85,11 @@ public class TimedRegisteredListener extends RegisteredListener {
      * Resets the call count and total time for this listener
      */
     public void reset() {
-        count = 0;
-        totalTime = 0;
+        count.set(0);
+        totalTime.set(0);
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
     }
 
     /**
@@ -58,7 +98,7 @@ public class TimedRegisteredListener extends RegisteredListener {
      * @return Times this listener has been called
      */
     public int getCount() {
-        return count;
+        return count.get();
     }
 
     /**
@@ -67,7 +107,32 @@ public class TimedRegisteredListener extends RegisteredListener {
      * @return Total time for all calls of this listener
      */
     public long getTotalTime() {
-        return totalTime;
+        return totalTime.get();
+    }
+
+    /**
+     * Gets snapshots of the latency histograms of every event class this
+     * listener handled since it was registered
+     *
+     * @return the histogram snapshot for each handled event class
+     */
+    public Map<Class<? extends Event>, LatencyHistogram.Snapshot> getHistograms() {
+        ImmutableMap.Builder<Class<? extends Event>, LatencyHistogram.Snapshot> snapshots = ImmutableMap.builder();
+        for (Map.Entry<Class<? extends Event>, LatencyHistogram> entry : histograms.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshots.build();
+    }
+
+    /**
+     * Gets a snapshot of the latency histogram for one event class
+     *
+     * @param eventClass the exact class of the handled events
+     * @return the histogram snapshot, or null if no such event was handled
+     */
+    public LatencyHistogram.Snapshot getHistogram(Class<? extends Event> eventClass) {
+        LatencyHistogram histogram = histograms.get(eventClass);
+        return histogram == null ? null : histogram.snapshot();
     }
 
     /**
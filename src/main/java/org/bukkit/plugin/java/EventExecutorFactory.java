@@ -0,0 +1,363 @@
+package org.bukkit.plugin.java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+
+/**
+ * Creates {@link EventExecutor}s for {@link org.bukkit.event.EventHandler}
+ * methods.
+ * <p>
+ * Where possible a small class is generated per handler method which calls
+ * the method directly, instead of going through {@link Method#invoke}. When
+ * the method cannot be linked from outside of its plugin (non-public classes
+ * or methods, static handlers, or classes that are not visible from the
+ * listener's class loader) a reflective executor is used instead.
+ */
+final class EventExecutorFactory {
+    private static final String EXECUTOR_NAME = "org/bukkit/plugin/EventExecutor";
+    private static final String LISTENER_NAME = "org/bukkit/event/Listener";
+    private static final String EVENT_NAME = "org/bukkit/event/Event";
+    private static final String EVENT_EXCEPTION_NAME = "org/bukkit/event/EventException";
+    private static final String EXECUTE_DESCRIPTOR = "(L" + LISTENER_NAME + ";L" + EVENT_NAME + ";)V";
+
+    private static final AtomicInteger executorIds = new AtomicInteger();
+
+    private EventExecutorFactory() {}
+
+    /**
+     * Creates an executor for the specified handler method
+     *
+     * @param method Handler method, taking a single event parameter
+     * @param eventClass Class of events the handler accepts
+     * @return a generated executor, or a reflective one if generation is not
+     *     possible for this method
+     */
+    static EventExecutor create(Method method, Class<? extends Event> eventClass) {
+        EventExecutor executor = createGenerated(method, eventClass);
+        if (executor == null) {
+            executor = createReflective(method, eventClass);
+        }
+        return executor;
+    }
+
+    /**
+     * Creates an executor which calls the handler through reflection
+     *
+     * @param method Handler method, taking a single event parameter
+     * @param eventClass Class of events the handler accepts
+     * @return the reflective executor
+     */
+    static EventExecutor createReflective(final Method method, final Class<? extends Event> eventClass) {
+        method.setAccessible(true);
+        return new EventExecutor() {
+            public void execute(Listener listener, Event event) throws EventException {
+                try {
+                    if (!eventClass.isAssignableFrom(event.getClass())) {
+                        return;
+                    }
+                    method.invoke(listener, event);
+                } catch (InvocationTargetException ex) {
+                    throw new EventException(ex.getCause());
+                } catch (Throwable t) {
+                    throw new EventException(t);
+                }
+            }
+        };
+    }
+
+    /**
+     * Generates an executor class which calls the handler directly
+     *
+     * @param method Handler method, taking a single event parameter
+     * @param eventClass Class of events the handler accepts
+     * @return the generated executor, or null if the method cannot be called
+     *     directly
+     */
+    static EventExecutor createGenerated(Method method, Class<? extends Event> eventClass) {
+        Class<?> owner = method.getDeclaringClass();
+        ClassLoader parent = owner.getClassLoader();
+
+        if (parent == null || !isLinkable(method, eventClass)) {
+            return null;
+        }
+
+        if (!isVisible(parent, owner) || !isVisible(parent, eventClass) || !isVisible(parent, EventExecutor.class) || !isVisible(parent, EventException.class)) {
+            return null;
+        }
+
+        String className = owner.getName() + "$EventExecutor$" + method.getName() + "$" + executorIds.incrementAndGet();
+
+        try {
+            byte[] bytes = generate(className.replace('.', '/'), method, eventClass);
+            Class<?> generated = new ExecutorClassLoader(parent).define(className, bytes);
+            return generated.asSubclass(EventExecutor.class).newInstance();
+        } catch (IOException ex) {
+            return null;
+        } catch (LinkageError ex) {
+            return null;
+        } catch (InstantiationException ex) {
+            return null;
+        } catch (IllegalAccessException ex) {
+            return null;
+        } catch (SecurityException ex) {
+            return null;
+        }
+    }
+
+    private static boolean isLinkable(Method method, Class<?> eventClass) {
+        Class<?> owner = method.getDeclaringClass();
+        int modifiers = method.getModifiers();
+
+        return Modifier.isPublic(modifiers)
+                && !Modifier.isStatic(modifiers)
+                && !owner.isInterface()
+                && isPublic(owner)
+                && isPublic(eventClass)
+                && Listener.class.isAssignableFrom(owner);
+    }
+
+    private static boolean isPublic(Class<?> clazz) {
+        for (; clazz != null; clazz = clazz.getEnclosingClass()) {
+            if (!Modifier.isPublic(clazz.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isVisible(ClassLoader loader, Class<?> clazz) {
+        try {
+            return Class.forName(clazz.getName(), false, loader) == clazz;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        } catch (LinkageError ex) {
+            return false;
+        }
+    }
+
+    private static String descriptorOf(Class<?> type) {
+        if (type == Void.TYPE) return "V";
+        if (type == Boolean.TYPE) return "Z";
+        if (type == Byte.TYPE) return "B";
+        if (type == Character.TYPE) return "C";
+        if (type == Short.TYPE) return "S";
+        if (type == Integer.TYPE) return "I";
+        if (type == Long.TYPE) return "J";
+        if (type == Float.TYPE) return "F";
+        if (type == Double.TYPE) return "D";
+        if (type.isArray()) return type.getName().replace('.', '/');
+        return "L" + type.getName().replace('.', '/') + ";";
+    }
+
+    /**
+     * Writes a class equivalent to:
+     * <pre>
+     * public final class Name implements EventExecutor {
+     *     public void execute(Listener listener, Event event) throws EventException {
+     *         if (!(event instanceof EventClass)) {
+     *             return;
+     *         }
+     *         try {
+     *             ((Owner) listener).method((EventClass) event);
+     *         } catch (Throwable t) {
+     *             throw new EventException(t);
+     *         }
+     *     }
+     * }
+     * </pre>
+     * The class file targets version 49, so no stack map frames are needed.
+     */
+    private static byte[] generate(String className, Method method, Class<?> eventClass) throws IOException {
+        ConstantPool pool = new ConstantPool();
+        String owner = method.getDeclaringClass().getName().replace('.', '/');
+        String event = eventClass.getName().replace('.', '/');
+        Class<?> returnType = method.getReturnType();
+
+        int thisClass = pool.classRef(className);
+        int superClass = pool.classRef("java/lang/Object");
+        int executorClass = pool.classRef(EXECUTOR_NAME);
+        int objectInit = pool.methodRef("java/lang/Object", "<init>", "()V");
+        int ownerClass = pool.classRef(owner);
+        int eventType = pool.classRef(event);
+        int handler = pool.methodRef(owner, method.getName(), "(" + descriptorOf(method.getParameterTypes()[0]) + ")" + descriptorOf(returnType));
+        int exceptionClass = pool.classRef(EVENT_EXCEPTION_NAME);
+        int exceptionInit = pool.methodRef(EVENT_EXCEPTION_NAME, "<init>", "(Ljava/lang/Throwable;)V");
+        int initName = pool.utf8("<init>");
+        int initDescriptor = pool.utf8("()V");
+        int executeName = pool.utf8("execute");
+        int executeDescriptor = pool.utf8(EXECUTE_DESCRIPTOR);
+        int codeName = pool.utf8("Code");
+
+        ByteArrayOutputStream init = new ByteArrayOutputStream();
+        init.write(0x2a); // aload_0
+        writeInstruction(init, 0xb7, objectInit); // invokespecial Object.<init>
+        init.write(0xb1); // return
+
+        ByteArrayOutputStream execute = new ByteArrayOutputStream();
+        execute.write(0x2c); // aload_2
+        writeInstruction(execute, 0xc1, eventType); // instanceof
+        writeInstruction(execute, 0x9a, 4); // ifne +4
+        execute.write(0xb1); // return
+        int tryStart = execute.size();
+        execute.write(0x2b); // aload_1
+        writeInstruction(execute, 0xc0, ownerClass); // checkcast
+        execute.write(0x2c); // aload_2
+        writeInstruction(execute, 0xc0, eventType); // checkcast
+        writeInstruction(execute, 0xb6, handler); // invokevirtual
+        if (returnType == Long.TYPE || returnType == Double.TYPE) {
+            execute.write(0x58); // pop2
+        } else if (returnType != Void.TYPE) {
+            execute.write(0x57); // pop
+        }
+        int tryEnd = execute.size();
+        execute.write(0xb1); // return
+        int catchStart = execute.size();
+        execute.write(0x4e); // astore_3
+        writeInstruction(execute, 0xbb, exceptionClass); // new
+        execute.write(0x59); // dup
+        execute.write(0x2d); // aload_3
+        writeInstruction(execute, 0xb7, exceptionInit); // invokespecial EventException.<init>
+        execute.write(0xbf); // athrow
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0); // minor version
+        out.writeShort(49); // major version
+        pool.write(out);
+        out.writeShort(Modifier.PUBLIC | Modifier.FINAL | 0x0020); // ACC_SUPER
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1); // interfaces
+        out.writeShort(executorClass);
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+
+        out.writeShort(Modifier.PUBLIC);
+        out.writeShort(initName);
+        out.writeShort(initDescriptor);
+        writeCode(out, codeName, 1, 1, init.toByteArray(), null);
+
+        out.writeShort(Modifier.PUBLIC);
+        out.writeShort(executeName);
+        out.writeShort(executeDescriptor);
+        writeCode(out, codeName, 4, 4, execute.toByteArray(), new int[] { tryStart, tryEnd, catchStart, 0 });
+
+        out.writeShort(0); // attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeInstruction(ByteArrayOutputStream code, int opcode, int operand) {
+        code.write(opcode);
+        code.write(operand >>> 8);
+        code.write(operand);
+    }
+
+    private static void writeCode(DataOutputStream out, int codeName, int maxStack, int maxLocals, byte[] code, int[] exceptionEntry) throws IOException {
+        int exceptionEntries = exceptionEntry == null ? 0 : 1;
+        out.writeShort(1); // attributes
+        out.writeShort(codeName);
+        out.writeInt(2 + 2 + 4 + code.length + 2 + exceptionEntries * 8 + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(exceptionEntries);
+        if (exceptionEntry != null) {
+            for (int value : exceptionEntry) {
+                out.writeShort(value);
+            }
+        }
+        out.writeShort(0); // attributes
+    }
+
+    /**
+     * Minimal constant pool, holding only the entry kinds the generated
+     * executors need
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<String, Integer>();
+        private int count = 1;
+
+        int utf8(String value) throws IOException {
+            Integer index = entries.get("U" + value);
+            if (index == null) {
+                out.writeByte(1);
+                out.writeUTF(value);
+                index = add("U" + value);
+            }
+            return index;
+        }
+
+        int classRef(String name) throws IOException {
+            Integer index = entries.get("C" + name);
+            if (index == null) {
+                int nameIndex = utf8(name);
+                out.writeByte(7);
+                out.writeShort(nameIndex);
+                index = add("C" + name);
+            }
+            return index;
+        }
+
+        int methodRef(String owner, String name, String descriptor) throws IOException {
+            String key = "M" + owner + '.' + name + descriptor;
+            Integer index = entries.get(key);
+            if (index == null) {
+                int ownerIndex = classRef(owner);
+                int nameIndex = utf8(name);
+                int descriptorIndex = utf8(descriptor);
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+                int nameAndType = add("N" + name + descriptor);
+                out.writeByte(10);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+                index = add(key);
+            }
+            return index;
+        }
+
+        private int add(String key) {
+            int index = count++;
+            entries.put(key, index);
+            return index;
+        }
+
+        void write(DataOutputStream stream) throws IOException {
+            out.flush();
+            stream.writeShort(count);
+            bytes.writeTo(stream);
+        }
+    }
+
+    /**
+     * Defines a single generated executor. Each executor gets its own loader
+     * so it can be collected along with the listener that registered it.
+     */
+    private static final class ExecutorClassLoader extends ClassLoader {
+        ExecutorClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
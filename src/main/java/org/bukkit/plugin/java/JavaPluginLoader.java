@@ -18,6 +18,8 @@ import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.Validate;
@@ -27,7 +29,6 @@ import org.bukkit.Warning.WarningState;
 import org.bukkit.configuration.serialization.ConfigurationSerializable;
 import org.bukkit.configuration.serialization.ConfigurationSerialization;
 import org.bukkit.event.Event;
-import org.bukkit.event.EventException;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.server.PluginDisableEvent;
@@ -61,7 +62,7 @@ public class JavaPluginLoader implements PluginLoader {
     @Deprecated
     protected final Pattern[] fileFilters = fileFilters0;
 
-    private final Map<String, Class<?>> classes0 = new HashMap<String, Class<?>>();
+    private final ConcurrentMap<String, Class<?>> classes0 = new ConcurrentHashMap<String, Class<?>>();
     /**
      * @deprecated Internal field that wasn't intended to be exposed
      */
@@ -75,6 +76,8 @@ public class JavaPluginLoader implements PluginLoader {
     @Deprecated
     protected final Map<String, PluginClassLoader> loaders = loaders0;
 
+    final PluginClassIndex classIndex = new PluginClassIndex();
+
     /**
      * This class was not meant to be extended
      */
@@ -157,10 +160,9 @@ public class JavaPluginLoader implements PluginLoader {
 
         PluginClassLoader loader = null;
         JavaPlugin result = null;
+        URL[] urls = new URL[1];
 
         try {
-            URL[] urls = new URL[1];
-
             urls[0] = file.toURI().toURL();
 
             if (description.getClassLoaderOf() != null) {
@@ -184,7 +186,13 @@ public class JavaPluginLoader implements PluginLoader {
             throw new InvalidPluginException(ex);
         }
 
-        loaders0.put(description.getName(), loader);
+        if (description.getClassLoaderOf() == null) {
+            // Shared loaders index each added jar from addURL
+            classIndex.add(loader, urls[0]);
+        }
+        synchronized (loaders0) {
+            loaders0.put(description.getName(), loader);
+        }
 
         return result;
     }
@@ -292,21 +300,46 @@ public class JavaPluginLoader implements PluginLoader {
 
         if (cachedClass != null) {
             return cachedClass;
-        } else {
-            for (String current : loaders0.keySet()) {
-                PluginClassLoader loader = loaders0.get(current);
+        }
 
-                try {
-                    cachedClass = loader.extended ? loader.findClass(name, false) : loader.findClass0(name, false); // Don't warn on deprecation, but maintain overridability
-                } catch (ClassNotFoundException cnfe) {}
-                if (cachedClass != null) {
-                    return cachedClass;
-                }
+        List<PluginClassLoader> owners = classIndex.getOwners(name);
+        for (PluginClassLoader owner : owners) {
+            cachedClass = findClass(owner, name);
+            if (cachedClass != null) {
+                return cachedClass;
             }
         }
+
+        if (classIndex.isMissing(name)) {
+            return null;
+        }
+
+        // Only loaders holding something other than indexed jars can hide it
+        PluginClassLoader[] candidates;
+        synchronized (loaders0) {
+            candidates = loaders0.values().toArray(new PluginClassLoader[loaders0.size()]);
+        }
+        for (PluginClassLoader loader : candidates) {
+            if (owners.contains(loader) || classIndex.isIndexed(loader)) continue;
+
+            cachedClass = findClass(loader, name);
+            if (cachedClass != null) {
+                return cachedClass;
+            }
+        }
+
+        classIndex.addMissing(name);
         return null;
     }
 
+    private Class<?> findClass(PluginClassLoader loader, String name) {
+        try {
+            return loader.extended ? loader.findClass(name, false) : loader.findClass0(name, false); // Don't warn on deprecation, but maintain overridability
+        } catch (ClassNotFoundException cnfe) {
+            return null;
+        }
+    }
+
     /**
      * @deprecated Internal method that wasn't intended to be exposed
      */
@@ -320,9 +353,7 @@ public class JavaPluginLoader implements PluginLoader {
     }
 
     void setClass0(final String name, final Class<?> clazz) {
-        if (!classes0.containsKey(name)) {
-            classes0.put(name, clazz);
-
+        if (classes0.putIfAbsent(name, clazz) == null) {
             if (ConfigurationSerializable.class.isAssignableFrom(clazz)) {
                 Class<? extends ConfigurationSerializable> serializable = clazz.asSubclass(ConfigurationSerializable.class);
                 ConfigurationSerialization.registerClass(serializable);
@@ -386,7 +417,6 @@ public class JavaPluginLoader implements PluginLoader {
                 continue;
             }
             final Class<? extends Event> eventClass = checkClass.asSubclass(Event.class);
-            method.setAccessible(true);
             Set<RegisteredListener> eventSet = ret.get(eventClass);
             if (eventSet == null) {
                 eventSet = new HashSet<RegisteredListener>();
@@ -416,20 +446,7 @@ public class JavaPluginLoader implements PluginLoader {
                 }
             }
 
-            EventExecutor executor = new EventExecutor() {
-                public void execute(Listener listener, Event event) throws EventException {
-                    try {
-                        if (!eventClass.isAssignableFrom(event.getClass())) {
-                            return;
-                        }
-                        method.invoke(listener, event);
-                    } catch (InvocationTargetException ex) {
-                        throw new EventException(ex.getCause());
-                    } catch (Throwable t) {
-                        throw new EventException(t);
-                    }
-                }
-            };
+            EventExecutor executor = EventExecutorFactory.create(method, eventClass);
             if (useTimings) {
                 eventSet.add(new TimedRegisteredListener(listener, executor, eh.priority(), plugin, eh.ignoreCancelled()));
             } else {
@@ -450,7 +467,13 @@ public class JavaPluginLoader implements PluginLoader {
             String pluginName = jPlugin.getDescription().getName();
 
             if (!loaders0.containsKey(pluginName)) {
-                loaders0.put(pluginName, (PluginClassLoader) jPlugin.getClassLoader());
+                PluginClassLoader loader = (PluginClassLoader) jPlugin.getClassLoader();
+                synchronized (loaders0) {
+                    loaders0.put(pluginName, loader);
+                }
+                for (URL url : loader.getURLs()) {
+                    classIndex.add(loader, url);
+                }
             }
 
             try {
@@ -483,10 +506,17 @@ public class JavaPluginLoader implements PluginLoader {
                 server.getLogger().log(Level.SEVERE, "Error occurred while disabling " + plugin.getDescription().getFullName() + " (Is it up to date?)", ex);
             }
 
-            loaders0.remove(jPlugin.getDescription().getName());
+            boolean shared;
+            synchronized (loaders0) {
+                loaders0.remove(jPlugin.getDescription().getName());
+                shared = loaders0.containsValue(cloader);
+            }
 
             if (cloader instanceof PluginClassLoader) {
                 PluginClassLoader loader = (PluginClassLoader) cloader;
+                if (!shared) {
+                    classIndex.remove(loader);
+                }
                 Set<String> names = loader.extended ? loader.getClasses() : loader.getClasses0(); // Don't warn on deprecation, but maintain overridability
 
                 for (String name : names) {
@@ -0,0 +1,187 @@
+package org.bukkit.plugin.java;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Maps class names to the plugin class loaders whose jars contain them, so a
+ * class shared between plugins is found with one lookup instead of asking
+ * every loader in turn.
+ * <p>
+ * The index is built from the entry list of each jar. Every loader whose jar
+ * contains a class is kept in the order they were added, so a class shaded
+ * into several plugins is still found once its first owner is removed.
+ * Loaders given a URL which is not a readable jar are remembered as
+ * unindexed and still have to be searched. Names which no loader could provide are cached until the set
+ * of indexed classes changes.
+ */
+final class PluginClassIndex {
+    private static final int MAX_MISSING = 4096;
+
+    // Each list is immutable and replaced while holding the lock of this
+    // index, so lookups do not lock
+    private final ConcurrentMap<String, List<PluginClassLoader>> owners = new ConcurrentHashMap<String, List<PluginClassLoader>>();
+    private final Set<PluginClassLoader> indexed = Collections.newSetFromMap(new ConcurrentHashMap<PluginClassLoader, Boolean>());
+    private final Set<PluginClassLoader> unindexed = Collections.newSetFromMap(new ConcurrentHashMap<PluginClassLoader, Boolean>());
+    private final Set<String> missing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Indexes the classes a loader can find in a URL. Loaders indexing a
+     * class name which is already indexed are used after the earlier ones.
+     *
+     * @param loader the loader the URL was given to
+     * @param url the URL to index
+     */
+    void add(PluginClassLoader loader, URL url) {
+        File file = toFile(url);
+        boolean complete = file != null && file.isFile() && addJar(loader, file);
+
+        if (complete) {
+            indexed.add(loader);
+        } else {
+            unindexed.add(loader);
+        }
+        missing.clear();
+    }
+
+    /**
+     * Removes every class indexed for a loader
+     *
+     * @param loader the loader to forget
+     */
+    synchronized void remove(PluginClassLoader loader) {
+        indexed.remove(loader);
+        unindexed.remove(loader);
+        Iterator<Map.Entry<String, List<PluginClassLoader>>> it = owners.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, List<PluginClassLoader>> entry = it.next();
+            List<PluginClassLoader> current = entry.getValue();
+            if (!current.contains(loader)) {
+                continue;
+            }
+
+            // The next remaining owner takes over the class
+            List<PluginClassLoader> updated = new ArrayList<PluginClassLoader>(current);
+            updated.remove(loader);
+            if (updated.isEmpty()) {
+                it.remove();
+            } else {
+                entry.setValue(ImmutableList.copyOf(updated));
+            }
+        }
+        missing.clear();
+    }
+
+    /**
+     * Gets the first loader whose jar contains a class
+     *
+     * @param name the binary class name
+     * @return the owning loader, or null if no indexed jar contains it
+     */
+    PluginClassLoader getOwner(String name) {
+        List<PluginClassLoader> list = owners.get(name);
+        return list == null ? null : list.get(0);
+    }
+
+    /**
+     * Gets every loader whose jar contains a class, in the order they were
+     * indexed
+     *
+     * @param name the binary class name
+     * @return the owning loaders, empty if no indexed jar contains it
+     */
+    List<PluginClassLoader> getOwners(String name) {
+        List<PluginClassLoader> list = owners.get(name);
+        return list == null ? Collections.<PluginClassLoader>emptyList() : list;
+    }
+
+    /**
+     * Checks if every class of a loader is known to this index
+     *
+     * @param loader the loader
+     * @return true if the loader never needs to be searched
+     */
+    boolean isIndexed(PluginClassLoader loader) {
+        return indexed.contains(loader) && !unindexed.contains(loader);
+    }
+
+    /**
+     * Checks if a class was recently not found by any loader
+     *
+     * @param name the binary class name
+     * @return true if the class is known to be missing
+     */
+    boolean isMissing(String name) {
+        return missing.contains(name);
+    }
+
+    /**
+     * Remembers that no loader could provide a class
+     *
+     * @param name the binary class name
+     */
+    void addMissing(String name) {
+        if (missing.size() >= MAX_MISSING) {
+            missing.clear();
+        }
+        missing.add(name);
+    }
+
+    private synchronized boolean addJar(PluginClassLoader loader, File file) {
+        JarFile jar = null;
+        try {
+            jar = new JarFile(file);
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                String entry = entries.nextElement().getName();
+                if (entry.endsWith(".class")) {
+                    String name = entry.substring(0, entry.length() - ".class".length()).replace('/', '.');
+                    List<PluginClassLoader> current = owners.get(name);
+                    if (current == null) {
+                        owners.put(name, ImmutableList.of(loader));
+                    } else if (!current.contains(loader)) {
+                        owners.put(name, ImmutableList.<PluginClassLoader>builder().addAll(current).add(loader).build());
+                    }
+                }
+            }
+            return true;
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            if (jar != null) {
+                try {
+                    jar.close();
+                } catch (IOException ex) {
+                }
+            }
+        }
+    }
+
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException ex) {
+            return null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+}
@@ -1,10 +1,11 @@
 package org.bukkit.plugin.java;
 
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 
 import org.apache.commons.lang.Validate;
@@ -14,8 +15,27 @@ import org.bukkit.plugin.AuthorNagException;
  * A ClassLoader for plugins, to allow shared classes across multiple plugins
  */
 public class PluginClassLoader extends URLClassLoader {
+    // Java 7 lets class loaders lock per class name instead of on the whole
+    // loader; on Java 6 the methods do not exist
+    private static final Method GET_CLASS_LOADING_LOCK;
+
+    static {
+        try {
+            Method register = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            register.invoke(null);
+        } catch (Exception ex) {
+        }
+
+        Method method = null;
+        try {
+            method = ClassLoader.class.getDeclaredMethod("getClassLoadingLock", String.class);
+        } catch (Exception ex) {
+        }
+        GET_CLASS_LOADING_LOCK = method;
+    }
+
     private final JavaPluginLoader loader;
-    private final Map<String, Class<?>> classes = new HashMap<String, Class<?>>();
+    private final ConcurrentMap<String, Class<?>> classes = new ConcurrentHashMap<String, Class<?>>();
     final boolean extended = this.getClass() != PluginClassLoader.class;
 
     /**
@@ -46,6 +66,7 @@ public class PluginClassLoader extends URLClassLoader {
     @Override
     public void addURL(URL url) { // Override for access level!
         super.addURL(url);
+        loader.classIndex.add(this, url);
     }
 
     @Override
@@ -72,28 +93,55 @@ public class PluginClassLoader extends URLClassLoader {
         Class<?> result = classes.get(name);
 
         if (result == null) {
+            // Other loaders are asked without holding a lock, so two loaders
+            // looking up each other's classes cannot deadlock
             if (checkGlobal) {
                 result = loader.extended ? loader.getClassByName(name) : loader.getClassByName0(name); // Don't warn on deprecation, but maintain overridability
             }
 
             if (result == null) {
-                result = super.findClass(name);
+                synchronized (getClassLock(name)) {
+                    result = classes.get(name);
+                    if (result != null) {
+                        return result;
+                    }
 
-                if (result != null) {
-                    if (loader.extended) { // Don't warn on deprecation, but maintain overridability
-                        loader.setClass(name, result);
-                    } else {
-                        loader.setClass0(name, result);
+                    result = super.findClass(name);
+
+                    if (result != null) {
+                        if (loader.extended) { // Don't warn on deprecation, but maintain overridability
+                            loader.setClass(name, result);
+                        } else {
+                            loader.setClass0(name, result);
+                        }
                     }
+                    classes.put(name, result);
+                }
+            } else {
+                Class<?> existing = classes.putIfAbsent(name, result);
+                if (existing != null) {
+                    result = existing;
                 }
             }
-
-            classes.put(name, result);
         }
 
         return result;
     }
 
+    /**
+     * Gets the lock loadClass takes for a class name, which is kept per name
+     * by the class loader itself on Java 7, or this loader on Java 6
+     */
+    private Object getClassLock(String name) {
+        if (GET_CLASS_LOADING_LOCK != null) {
+            try {
+                return GET_CLASS_LOADING_LOCK.invoke(this, name);
+            } catch (Exception ex) {
+            }
+        }
+        return this;
+    }
+
     /**
      * @deprecated Internal method that wasn't intended to be exposed
      */
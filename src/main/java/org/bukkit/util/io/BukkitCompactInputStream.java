@@ -0,0 +1,253 @@
+package org.bukkit.util.io;
+
+import static org.bukkit.util.io.BukkitCompactOutputStream.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Reads objects written by {@link BukkitCompactOutputStream}.
+ * <p>
+ * Data written by {@link BukkitObjectOutputStream} is recognized as well and
+ * read through a {@link BukkitObjectInputStream}, so stored data can be
+ * migrated by reading it with this class and writing it again with {@link
+ * BukkitCompactOutputStream}.
+ */
+public class BukkitCompactInputStream implements Closeable {
+    private static final int MAX_PREALLOCATED = 1024;
+    private static final int STRING_CHUNK = 8192;
+
+    private final DataInputStream in;
+    private final BukkitObjectInputStream legacy;
+    private final List<String> strings = new ArrayList<String>();
+
+    /**
+     * Creates a stream reading from the given input.
+     *
+     * @param in Stream to read from
+     * @throws StreamCorruptedException if the input is in neither format
+     * @throws IOException if the header cannot be read
+     */
+    public BukkitCompactInputStream(InputStream in) throws IOException {
+        Validate.notNull(in, "Stream cannot be null");
+
+        byte[] header = new byte[MAGIC.length];
+        new DataInputStream(in).readFully(header);
+
+        // Java serialization streams start with 0xACED
+        if ((header[0] & 0xFF) == 0xAC && (header[1] & 0xFF) == 0xED) {
+            this.legacy = new BukkitObjectInputStream(new SequenceInputStream(new ByteArrayInputStream(header), in));
+            this.in = null;
+            return;
+        }
+        if (!Arrays.equals(header, MAGIC)) {
+            throw new StreamCorruptedException("Not a compact object stream");
+        }
+
+        int version = in.read();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported compact object stream version " + version);
+        }
+        int flags = in.read();
+        if (flags < 0) {
+            throw new EOFException();
+        }
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            in = new InflaterInputStream(in);
+        }
+        this.legacy = null;
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    /**
+     * Reads the next object from this stream.
+     *
+     * @return The object, which may be null
+     * @throws EOFException if the stream has no more objects
+     * @throws IOException if the data is invalid or an object could not be
+     *     deserialized
+     */
+    public Object readObject() throws IOException {
+        if (legacy != null) {
+            try {
+                return legacy.readObject();
+            } catch (ClassNotFoundException ex) {
+                throw newIOException("Failed to read legacy object", ex);
+            }
+        }
+
+        int type = in.readUnsignedByte();
+        switch (type) {
+        case TYPE_NULL:
+            return null;
+        case TYPE_STRING:
+            return readString();
+        case TYPE_INT:
+            return (int) readVarLong();
+        case TYPE_LONG:
+            return readVarLong();
+        case TYPE_DOUBLE:
+            return in.readDouble();
+        case TYPE_FLOAT:
+            return in.readFloat();
+        case TYPE_TRUE:
+            return Boolean.TRUE;
+        case TYPE_FALSE:
+            return Boolean.FALSE;
+        case TYPE_SHORT:
+            return (short) readVarLong();
+        case TYPE_BYTE:
+            return in.readByte();
+        case TYPE_CHAR:
+            return (char) readVarInt();
+        case TYPE_LIST: {
+            int size = readSize();
+            List<Object> list = new ArrayList<Object>(Math.min(size, MAX_PREALLOCATED));
+            for (int i = 0; i < size; i++) {
+                list.add(readObject());
+            }
+            return list;
+        }
+        case TYPE_MAP: {
+            int size = readSize();
+            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            for (int i = 0; i < size; i++) {
+                Object key = readObject();
+                map.put(key, readObject());
+            }
+            return map;
+        }
+        case TYPE_SERIALIZABLE:
+            return readSerializable();
+        default:
+            throw new StreamCorruptedException("Unknown value type " + type);
+        }
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException if the underlying stream fails
+     */
+    public void close() throws IOException {
+        if (legacy != null) {
+            legacy.close();
+        } else {
+            in.close();
+        }
+    }
+
+    private ConfigurationSerializable readSerializable() throws IOException {
+        String alias = readSharedString();
+        int size = readSize();
+        Map<String, Object> args = new LinkedHashMap<String, Object>();
+        args.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, alias);
+        for (int i = 0; i < size; i++) {
+            String key = readSharedString();
+            args.put(key, readObject());
+        }
+
+        ConfigurationSerializable result;
+        try {
+            result = ConfigurationSerialization.deserializeObject(args);
+        } catch (RuntimeException ex) {
+            throw newIOException("Failed to deserialize object", ex);
+        }
+        if (result == null) {
+            throw new IOException("Failed to deserialize object of type " + alias);
+        }
+        return result;
+    }
+
+    private String readSharedString() throws IOException {
+        int index = readVarInt();
+        if (index == 0) {
+            String value = readString();
+            strings.add(value);
+            return value;
+        }
+        if (index > strings.size()) {
+            throw new StreamCorruptedException("Unknown string reference " + index);
+        }
+        return strings.get(index - 1);
+    }
+
+    private String readString() throws IOException {
+        int size = readSize();
+        if (size <= STRING_CHUNK) {
+            byte[] bytes = new byte[size];
+            in.readFully(bytes);
+            return new String(bytes, Charsets.UTF_8);
+        }
+
+        // Read in chunks, so a corrupt length fails at the end of the
+        // stream instead of allocating all of it up front
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(STRING_CHUNK);
+        byte[] chunk = new byte[STRING_CHUNK];
+        for (int remaining = size; remaining > 0; ) {
+            int read = Math.min(remaining, chunk.length);
+            in.readFully(chunk, 0, read);
+            bytes.write(chunk, 0, read);
+            remaining -= read;
+        }
+        return new String(bytes.toByteArray(), Charsets.UTF_8);
+    }
+
+    private int readSize() throws IOException {
+        int size = readVarInt();
+        if (size < 0) {
+            throw new StreamCorruptedException("Invalid length " + size);
+        }
+        return size;
+    }
+
+    private int readVarInt() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new StreamCorruptedException("Malformed number");
+    }
+
+    private long readVarLong() throws IOException {
+        long encoded = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            encoded |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (encoded >>> 1) ^ -(encoded & 1);
+            }
+        }
+        throw new StreamCorruptedException("Malformed number");
+    }
+
+    private static IOException newIOException(String string, Throwable cause) {
+        IOException exception = new IOException(string);
+        exception.initCause(cause);
+        return exception;
+    }
+}
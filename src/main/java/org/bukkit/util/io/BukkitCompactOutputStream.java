@@ -0,0 +1,208 @@
+package org.bukkit.util.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Writes {@link ConfigurationSerializable} objects, and the lists, maps,
+ * strings and numbers they serialize to, in a compact binary format for
+ * {@link BukkitCompactInputStream}.
+ * <p>
+ * Unlike {@link BukkitObjectOutputStream}, this does not use Java
+ * serialization. Each value is written as a type tag followed by its data,
+ * and every alias and map key is written only once per stream and referred
+ * to by index afterwards. The stream may optionally be compressed, in which
+ * case the data is only complete once the stream is closed.
+ */
+public class BukkitCompactOutputStream implements Closeable, Flushable {
+    static final byte[] MAGIC = { 'B', 'K', 'C', 'S' };
+    static final int VERSION = 1;
+    static final int FLAG_COMPRESSED = 1;
+
+    static final int TYPE_NULL = 0;
+    static final int TYPE_STRING = 1;
+    static final int TYPE_INT = 2;
+    static final int TYPE_LONG = 3;
+    static final int TYPE_DOUBLE = 4;
+    static final int TYPE_FLOAT = 5;
+    static final int TYPE_TRUE = 6;
+    static final int TYPE_FALSE = 7;
+    static final int TYPE_SHORT = 8;
+    static final int TYPE_BYTE = 9;
+    static final int TYPE_CHAR = 10;
+    static final int TYPE_LIST = 11;
+    static final int TYPE_MAP = 12;
+    static final int TYPE_SERIALIZABLE = 13;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    /**
+     * Creates an uncompressed stream writing to the given output.
+     *
+     * @param out Stream to write to
+     * @throws IOException if the header cannot be written
+     */
+    public BukkitCompactOutputStream(OutputStream out) throws IOException {
+        this(out, false);
+    }
+
+    /**
+     * Creates a stream writing to the given output.
+     *
+     * @param out Stream to write to
+     * @param compress Whether to deflate everything after the header
+     * @throws IOException if the header cannot be written
+     */
+    public BukkitCompactOutputStream(OutputStream out, boolean compress) throws IOException {
+        Validate.notNull(out, "Stream cannot be null");
+
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(compress ? FLAG_COMPRESSED : 0);
+        if (compress) {
+            out = new DeflaterOutputStream(out);
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    /**
+     * Writes an object to this stream.
+     * <p>
+     * The object may be null, a {@link ConfigurationSerializable}, a String,
+     * a boxed primitive, or a List or Map of these.
+     *
+     * @param obj Object to write
+     * @throws NotSerializableException if the object, or something it
+     *     contains, cannot be written
+     * @throws IOException if the underlying stream fails
+     */
+    public void writeObject(Object obj) throws IOException {
+        if (obj == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (obj instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString((String) obj);
+        } else if (obj instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            writeVarLong((Integer) obj);
+        } else if (obj instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) obj);
+        } else if (obj instanceof Boolean) {
+            out.writeByte((Boolean) obj ? TYPE_TRUE : TYPE_FALSE);
+        } else if (obj instanceof ConfigurationSerializable) {
+            ConfigurationSerializable serializable = (ConfigurationSerializable) obj;
+            Map<String, Object> values = serializable.serialize();
+            out.writeByte(TYPE_SERIALIZABLE);
+            writeSharedString(ConfigurationSerialization.getAlias(serializable.getClass()));
+            writeVarInt(values.size());
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                writeSharedString(entry.getKey());
+                writeObject(entry.getValue());
+            }
+        } else if (obj instanceof List) {
+            List<?> list = (List<?>) obj;
+            out.writeByte(TYPE_LIST);
+            writeVarInt(list.size());
+            for (Object element : list) {
+                writeObject(element);
+            }
+        } else if (obj instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) obj;
+            out.writeByte(TYPE_MAP);
+            writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeObject(entry.getKey());
+                writeObject(entry.getValue());
+            }
+        } else if (obj instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            writeVarLong((Long) obj);
+        } else if (obj instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) obj);
+        } else if (obj instanceof Short) {
+            out.writeByte(TYPE_SHORT);
+            writeVarLong((Short) obj);
+        } else if (obj instanceof Byte) {
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte) obj);
+        } else if (obj instanceof Character) {
+            out.writeByte(TYPE_CHAR);
+            writeVarInt((Character) obj);
+        } else {
+            throw new NotSerializableException(obj.getClass().getName());
+        }
+    }
+
+    /**
+     * Writes buffered data to the underlying stream. Compressed data may
+     * still be held back until the stream is closed.
+     *
+     * @throws IOException if the underlying stream fails
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Finishes the stream and closes the underlying stream.
+     *
+     * @throws IOException if the underlying stream fails
+     */
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeSharedString(String value) throws IOException {
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarInt(index + 1);
+            return;
+        }
+
+        strings.put(value, strings.size());
+        writeVarInt(0);
+        writeString(value);
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        // Zig-zag, so small negative numbers stay short
+        long encoded = (value << 1) ^ (value >> 63);
+        while ((encoded & ~0x7FL) != 0) {
+            out.writeByte((int) (encoded & 0x7F) | 0x80);
+            encoded >>>= 7;
+        }
+        out.writeByte((int) encoded);
+    }
+}
@@ -71,6 +71,14 @@ public class TestServer implements InvocationHandler {
                         }
                     }
                 );
+            methodMap.put(
+                    Server.class.getMethod("getWarningState"),
+                    new MethodHandler() {
+                        public Object handle(TestServer server, Object[] args) {
+                            return Warning.WarningState.OFF;
+                        }
+                    }
+                );
             methods = methodMap.build();
 
             TestServer server = new TestServer();
@@ -0,0 +1,117 @@
+package org.bukkit.command;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.bukkit.TestServer;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class SimpleCommandMapTest {
+    private final SimpleCommandMap commandMap = new SimpleCommandMap(TestServer.getInstance());
+
+    @Test
+    public void testArguments() {
+        RecordingCommand command = register("record");
+
+        assertArguments(command, "record");
+        assertArguments(command, "record a");
+        assertArguments(command, "record a b");
+        assertArguments(command, "record a  b");
+        assertArguments(command, "record a b  ");
+        assertArguments(command, "record ");
+        assertArguments(command, "record  a");
+    }
+
+    @Test
+    public void testLabelIgnoresCase() {
+        RecordingCommand command = register("Record", "rec");
+
+        assertTrue(commandMap.dispatch(null, "RECORD x"));
+        assertThat(command.label, is("record"));
+        assertTrue(commandMap.dispatch(null, "ReC"));
+        assertThat(command.label, is("rec"));
+        assertFalse(commandMap.dispatch(null, "re"));
+        assertFalse(commandMap.dispatch(null, "recordx"));
+        assertFalse(commandMap.dispatch(null, ""));
+        assertFalse(commandMap.dispatch(null, "   "));
+    }
+
+    @Test
+    public void testLabelIgnoresCaseRegardlessOfLocale() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            RecordingCommand command = register("TIME");
+
+            assertThat(command.getLabel(), is("time"));
+            assertTrue(commandMap.dispatch(null, "TIME"));
+            assertThat(command.label, is("time"));
+            assertTrue(commandMap.dispatch(null, "time"));
+            assertThat(commandMap.getCommand("Time"), is((Command) command));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testKnownCommandsChangedDirectly() {
+        RecordingCommand command = register("record");
+        assertTrue(commandMap.dispatch(null, "record"));
+
+        commandMap.knownCommands.put("direct", command);
+        assertTrue(commandMap.dispatch(null, "Direct"));
+        assertThat(command.label, is("direct"));
+
+        commandMap.knownCommands.remove("record");
+        assertFalse(commandMap.dispatch(null, "record"));
+    }
+
+    @Test
+    public void testLabelTree() {
+        CommandLabelTree tree = new CommandLabelTree(Arrays.asList("a", "ab", "abc", "abd", "b", "bukkit:version", "version"));
+
+        for (String label : ImmutableList.of("a", "ab", "abc", "abd", "b", "bukkit:version", "version")) {
+            assertThat(tree.find(label.toUpperCase(), 0, label.length()), is(label));
+        }
+        assertThat(tree.find("abcd", 0, 4), is(nullValue()));
+        assertThat(tree.find("ac", 0, 2), is(nullValue()));
+        assertThat(tree.find("bukkit", 0, 6), is(nullValue()));
+        assertThat(tree.find("", 0, 0), is(nullValue()));
+        assertThat(tree.find("xABx", 1, 3), is("ab"));
+    }
+
+    private RecordingCommand register(String name, String... aliases) {
+        RecordingCommand command = new RecordingCommand(name, new ArrayList<String>(Arrays.asList(aliases)));
+        commandMap.register("test", command);
+        return command;
+    }
+
+    private void assertArguments(RecordingCommand command, String commandLine) {
+        String[] split = commandLine.split(" ");
+        assertTrue(commandMap.dispatch(null, commandLine));
+        assertThat(commandLine, command.args, is(Arrays.copyOfRange(split, 1, split.length)));
+    }
+
+    private static class RecordingCommand extends Command {
+        private String label;
+        private String[] args;
+
+        private RecordingCommand(String name, List<String> aliases) {
+            super(name, "", "", aliases);
+        }
+
+        @Override
+        public boolean execute(CommandSender sender, String commandLabel, String[] args) {
+            this.label = commandLabel;
+            this.args = args;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.bukkit.configuration;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ConfigPathTest {
+    @Test
+    public void testSegments() {
+        ConfigPath path = ConfigPath.of("settings.combat.tag-seconds");
+
+        assertThat(path.size(), is(3));
+        assertThat(path.getSegment(0), is("settings"));
+        assertThat(path.getSegment(2), is("tag-seconds"));
+        assertThat(path.toString(), is("settings.combat.tag-seconds"));
+        assertThat(path.toString('/'), is("settings/combat/tag-seconds"));
+    }
+
+    @Test
+    public void testSegmentsAreInterned() {
+        ConfigPath first = ConfigPath.of(new String("a.b"));
+        ConfigPath second = ConfigPath.of(new String("b.a"));
+
+        assertSame(first.getSegment(0), second.getSegment(1));
+    }
+
+    @Test
+    public void testEmptyPath() {
+        ConfigPath path = ConfigPath.of("");
+
+        assertThat(path.size(), is(0));
+    }
+
+    @Test
+    public void testEquality() {
+        assertThat(ConfigPath.of("a.b"), is(ConfigPath.of("a/b", '/')));
+        assertThat(ConfigPath.of("a.b").hashCode(), is(ConfigPath.of("a/b", '/').hashCode()));
+        assertThat(ConfigPath.of("a.b"), is(not(ConfigPath.of("a.b.c"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullPath() {
+        ConfigPath.of(null);
+    }
+}
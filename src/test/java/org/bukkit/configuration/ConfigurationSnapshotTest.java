@@ -0,0 +1,103 @@
+package org.bukkit.configuration;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ConfigurationSnapshotTest {
+    @Test
+    public void testValues() {
+        MemoryConfiguration config = new MemoryConfiguration();
+        config.set("settings.combat.tag-seconds", 15);
+        config.set("settings.combat.enabled", true);
+        config.set("settings.name", "combat");
+        config.set("settings.ratio", 0.5);
+        config.set("numbers", Arrays.asList("1", 2, 3L));
+
+        ConfigurationSnapshot snapshot = ConfigurationSnapshot.of(config);
+
+        assertThat(snapshot.getInt("settings.combat.tag-seconds"), is(15));
+        assertThat(snapshot.getLong(ConfigPath.of("settings.combat.tag-seconds")), is(15L));
+        assertThat(snapshot.getBoolean("settings.combat.enabled"), is(true));
+        assertThat(snapshot.getString("settings.name"), is("combat"));
+        assertThat(snapshot.getDouble("settings.ratio"), is(0.5));
+        assertThat(snapshot.getInt("settings.name", 7), is(7));
+        assertThat(snapshot.getIntegerList("numbers"), is(Arrays.asList(1, 2, 3)));
+        assertThat(snapshot.getStringList("numbers"), is(config.getStringList("numbers")));
+        assertThat(snapshot.getKeys(false), contains("settings", "numbers"));
+        assertThat(snapshot.getKeys(true), hasItem("settings.combat.enabled"));
+        assertThat(snapshot.getSection("settings").getInt("combat.tag-seconds"), is(15));
+        assertThat(snapshot.getSection("settings").getCurrentPath(), is("settings"));
+    }
+
+    @Test
+    public void testNestedSections() {
+        MemoryConfiguration config = new MemoryConfiguration();
+        config.set("settings.combat.tag-seconds", 15);
+        config.set("settings.name", "combat");
+        config.set("other", 1);
+
+        ConfigurationSnapshot snapshot = ConfigurationSnapshot.of(config);
+        ConfigurationSnapshot settings = snapshot.getSection("settings");
+
+        assertThat(settings.getSection("combat"), is(sameInstance(snapshot.getSection("settings.combat"))));
+        assertThat(settings.getKeys(false), contains("combat", "name"));
+        assertThat(settings.getKeys(true), contains("combat", "combat.tag-seconds", "name"));
+        assertThat(settings.getValues(false).get("name"), is((Object) "combat"));
+        assertThat(settings.contains("other"), is(false));
+        assertThat(settings.getSection("combat").getInt(ConfigPath.of("tag-seconds")), is(15));
+    }
+
+    @Test
+    public void testSnapshotIsDetached() {
+        MemoryConfiguration config = new MemoryConfiguration();
+        config.set("value", 1);
+        config.set("list", Arrays.asList("a"));
+
+        ConfigurationSnapshot snapshot = ConfigurationSnapshot.of(config);
+        config.set("value", 2);
+        config.set("added", true);
+
+        assertThat(snapshot.getInt("value"), is(1));
+        assertThat(snapshot.contains("added"), is(false));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testListsAreUnmodifiable() {
+        MemoryConfiguration config = new MemoryConfiguration();
+        config.set("list", Arrays.asList("a"));
+
+        @SuppressWarnings("unchecked")
+        List<Object> list = (List<Object>) ConfigurationSnapshot.of(config).getList("list");
+        list.add("b");
+    }
+
+    @Test
+    public void testDefaults() {
+        MemoryConfiguration config = new MemoryConfiguration();
+        config.addDefault("settings.delay", 20);
+        config.addDefault("settings.name", "default");
+        config.set("settings.name", "set");
+
+        ConfigurationSnapshot snapshot = ConfigurationSnapshot.of(config);
+
+        assertThat(snapshot.getInt("settings.delay"), is(20));
+        assertThat(snapshot.getString("settings.name"), is("set"));
+    }
+
+    @Test
+    public void testPathSeparator() {
+        MemoryConfiguration config = new MemoryConfiguration();
+        config.options().pathSeparator('/');
+        config.set("a/b.c", 1);
+
+        ConfigurationSnapshot snapshot = ConfigurationSnapshot.of(config);
+
+        assertThat(snapshot.getInt("a/b.c"), is(1));
+        assertThat(snapshot.getInt(ConfigPath.of("a/b.c", '/')), is(1));
+    }
+}
@@ -1,8 +1,103 @@
 package org.bukkit.configuration;
 
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
 public class MemoryConfigurationTest extends ConfigurationTest {
     @Override
     public Configuration getConfig() {
         return new MemoryConfiguration();
     }
+
+    @Test
+    public void testTrackChanges() {
+        MemoryConfiguration config = (MemoryConfiguration) getConfig();
+        config.set("untracked", 1);
+        config.options().trackChanges(true);
+
+        config.set("warps.spawn.x", 10);
+        config.set("warps.spawn.x", 10);
+        config.set("warps.spawn.x", 12);
+        config.getConfigurationSection("warps").set("home", "here");
+        config.set("untracked", null);
+
+        List<ConfigurationChange> changes = config.getChanges();
+        assertEquals(5, changes.size());
+        assertEquals("warps", changes.get(0).getPath());
+        assertEquals("warps.spawn", changes.get(1).getPath());
+        assertEquals("warps.spawn.x", changes.get(2).getPath());
+        assertNull(changes.get(2).getOldValue());
+        assertEquals(12, changes.get(2).getNewValue());
+        assertEquals("warps.home", changes.get(3).getPath());
+        assertEquals(1, changes.get(4).getOldValue());
+        assertNull(changes.get(4).getNewValue());
+    }
+
+    @Test
+    public void testChangesCoalescePerPath() {
+        MemoryConfiguration config = (MemoryConfiguration) getConfig();
+        config.set("counter", 0);
+        config.options().trackChanges(true);
+
+        for (int i = 1; i <= 1000; i++) {
+            config.set("counter", i);
+        }
+
+        List<ConfigurationChange> changes = config.getChanges();
+        assertEquals(1, changes.size());
+        assertEquals(0, changes.get(0).getOldValue());
+        assertEquals(1000, changes.get(0).getNewValue());
+        assertTrue(config.isDirty("counter"));
+    }
+
+    @Test
+    public void testDirtyPaths() {
+        MemoryConfiguration config = (MemoryConfiguration) getConfig();
+        config.set("balances.alice", 5);
+        config.set("balances.bob", 7);
+        config.set("other", true);
+        config.options().trackChanges(true);
+
+        assertFalse(config.isDirty());
+
+        config.set("balances.alice", 6);
+
+        assertTrue(config.isDirty());
+        assertTrue(config.isDirty(""));
+        assertTrue(config.isDirty("balances"));
+        assertTrue(config.isDirty("balances.alice"));
+        assertFalse(config.isDirty("balances.bob"));
+        assertFalse(config.isDirty("balance"));
+        assertFalse(config.isDirty("other"));
+
+        config.clearChanges();
+        config.createSection("balances");
+
+        assertTrue(config.isDirty("balances.bob"));
+        assertFalse(config.isDirty("other"));
+    }
+
+    @Test
+    public void testChangeListener() {
+        MemoryConfiguration config = (MemoryConfiguration) getConfig();
+        final List<String> paths = new ArrayList<String>();
+        ConfigurationChangeListener listener = new ConfigurationChangeListener() {
+            public void onChange(ConfigurationChange change) {
+                paths.add(change.getPath());
+            }
+        };
+        config.addChangeListener(listener);
+
+        config.set("a.b", 1);
+        config.removeChangeListener(listener);
+        config.set("a.c", 2);
+
+        assertEquals(2, paths.size());
+        assertEquals("a.b", paths.get(1));
+        assertFalse(config.isDirty());
+    }
 }
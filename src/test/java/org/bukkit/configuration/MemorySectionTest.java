@@ -1,8 +1,79 @@
 package org.bukkit.configuration;
 
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
 public class MemorySectionTest extends ConfigurationSectionTest {
     @Override
     public ConfigurationSection getConfigurationSection() {
         return new MemoryConfiguration().createSection("section");
     }
+
+    @Test
+    public void testGet_ConfigPath() {
+        MemorySection section = (MemorySection) getConfigurationSection();
+
+        section.set("settings.combat.tag-seconds", 15);
+        section.set("settings.name", "combat");
+
+        assertEquals(15, section.getInt(ConfigPath.of("settings.combat.tag-seconds")));
+        assertEquals("combat", section.getString(ConfigPath.of("settings.name")));
+        assertEquals(section.getConfigurationSection("settings"), section.getConfigurationSection(ConfigPath.of("settings")));
+        assertSame(section, section.get(ConfigPath.of("")));
+        assertNull(section.get(ConfigPath.of("settings.name.missing")));
+        assertEquals(3, section.getInt(ConfigPath.of("settings.missing"), 3));
+        assertFalse(section.contains(ConfigPath.of("settings.missing")));
+    }
+
+    @Test
+    public void testSet_ConfigPath() {
+        MemorySection section = (MemorySection) getConfigurationSection();
+        ConfigPath path = ConfigPath.of("settings.combat.enabled");
+
+        section.set(path, true);
+
+        assertTrue(section.getBoolean("settings.combat.enabled"));
+        assertTrue(section.isSet(path));
+
+        section.set(path, null);
+
+        assertFalse(section.contains(path));
+        assertTrue(section.isConfigurationSection("settings.combat"));
+    }
+
+    @Test
+    public void testGetDefault_ConfigPath() {
+        MemorySection section = (MemorySection) getConfigurationSection();
+        ConfigPath path = ConfigPath.of("defaults.delay");
+
+        section.addDefault("defaults.delay", 20L);
+        section.addDefault("defaults.names", Arrays.asList("a", "b"));
+
+        assertEquals(20L, section.getLong(path));
+        assertEquals(20L, section.getLong("defaults.delay"));
+        assertFalse(section.isSet(path));
+        assertEquals(Arrays.asList("a", "b"), section.getStringList(ConfigPath.of("defaults.names")));
+
+        section.set(path, 5L);
+
+        assertEquals(5L, section.getLong(path));
+        assertEquals(5L, section.get(path));
+    }
+
+    @Test
+    public void testGetConfigurationSectionFromDefaults_ConfigPath() {
+        MemorySection section = (MemorySection) getConfigurationSection();
+        section.addDefault("defaults.nested.delay", 20L);
+
+        ConfigurationSection nested = section.getConfigurationSection(ConfigPath.of("defaults.nested"));
+
+        assertNotNull(nested);
+        assertEquals("section.defaults.nested", nested.getCurrentPath());
+        assertSame(nested, section.getConfigurationSection("defaults.nested"));
+        assertEquals(20L, nested.getLong("delay"));
+        assertNull(section.getConfigurationSection(ConfigPath.of("defaults.missing")));
+    }
 }
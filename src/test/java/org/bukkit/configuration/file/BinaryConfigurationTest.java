@@ -0,0 +1,126 @@
+package org.bukkit.configuration.file;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.MemoryConfigurationTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class BinaryConfigurationTest extends MemoryConfigurationTest {
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    @Override
+    public BinaryConfiguration getConfig() {
+        return new BinaryConfiguration();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        BinaryConfiguration config = getConfig();
+        for (Map.Entry<String, Object> entry : getTestValues().entrySet()) {
+            config.set(entry.getKey(), entry.getValue());
+        }
+        Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+        map.put("name", "entry");
+        map.put(7, Arrays.asList(1.5f, (short) 3, 'c'));
+        config.set("nested.maps", Arrays.asList(map));
+        config.set("nested.unicode", "é中");
+        config.set("nested.empty", "");
+        config.createSection("nested.section");
+
+        BinaryConfiguration loaded = getConfig();
+        loaded.loadFromBytes(config.saveToBytes());
+
+        assertEquals(config.getValues(true).keySet(), loaded.getValues(true).keySet());
+        for (String key : getTestValues().keySet()) {
+            assertEquals(config.get(key), loaded.get(key));
+        }
+        assertEquals(Arrays.asList(map), loaded.getList("nested.maps"));
+        assertEquals("é中", loaded.getString("nested.unicode"));
+        assertEquals("", loaded.getString("nested.empty"));
+        assertTrue(loaded.isConfigurationSection("nested.section"));
+    }
+
+    @Test
+    public void testYamlRoundTrip() throws Exception {
+        YamlConfiguration yaml = new YamlConfiguration();
+        for (Map.Entry<String, Object> entry : getTestValues().entrySet()) {
+            yaml.set(entry.getKey(), entry.getValue());
+        }
+        yaml.set("section.key", "value");
+        String expected = yaml.saveToString();
+
+        BinaryConfiguration binary = getConfig();
+        copy(yaml, binary);
+        BinaryConfiguration loaded = getConfig();
+        loaded.loadFromBytes(binary.saveToBytes());
+        YamlConfiguration result = new YamlConfiguration();
+        copy(loaded, result);
+
+        assertEquals(expected, result.saveToString());
+    }
+
+    @Test
+    public void testSaveAndLoadFile() throws Exception {
+        File file = testFolder.newFile("test.dat");
+        BinaryConfiguration config = getConfig();
+        config.options().header("Header");
+        config.set("player.balance", 12.5);
+
+        config.save(file);
+        BinaryConfiguration loaded = BinaryConfiguration.loadConfiguration(file);
+
+        assertEquals(12.5, loaded.getDouble("player.balance"), 0);
+        assertEquals("Header", loaded.options().header());
+    }
+
+    @Test
+    public void testSaveToString() throws Exception {
+        BinaryConfiguration config = getConfig();
+        config.set("value", -1L);
+
+        BinaryConfiguration loaded = getConfig();
+        loaded.loadFromString(config.saveToString());
+
+        assertEquals(-1L, loaded.get("value"));
+    }
+
+    @Test(expected = InvalidConfigurationException.class)
+    public void testLoadYamlFails() throws Exception {
+        getConfig().loadFromString("key: value\n");
+    }
+
+    @Test
+    public void testLoadTruncatedLeavesConfigUnchanged() throws Exception {
+        BinaryConfiguration config = getConfig();
+        config.set("key", "value");
+        config.set("other", 5);
+        byte[] data = config.saveToBytes();
+
+        BinaryConfiguration loaded = getConfig();
+        try {
+            loaded.loadFromBytes(Arrays.copyOf(data, data.length - 3));
+            fail("Truncated data was loaded");
+        } catch (InvalidConfigurationException ex) {
+        }
+        assertTrue(loaded.getKeys(false).isEmpty());
+    }
+
+    private void copy(ConfigurationSection from, ConfigurationSection to) {
+        for (Map.Entry<String, Object> entry : from.getValues(false).entrySet()) {
+            if (entry.getValue() instanceof ConfigurationSection) {
+                copy((ConfigurationSection) entry.getValue(), to.createSection(entry.getKey()));
+            } else {
+                to.set(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
@@ -4,6 +4,8 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
 import org.bukkit.configuration.MemoryConfigurationTest;
 import org.junit.Rule;
 import org.junit.Test;
@@ -51,6 +53,99 @@ public abstract class FileConfigurationTest extends MemoryConfigurationTest {
         assertTrue(file.isFile());
     }
 
+    @Test
+    public void testSave_ReplacesFile() throws Exception {
+        FileConfiguration config = getConfig();
+        File file = testFolder.newFile("test.config");
+
+        config.set("first", 1);
+        config.save(file);
+        config.set("second", 2);
+        config.save(file);
+
+        FileConfiguration loaded = getConfig();
+        loaded.load(file);
+        assertEquals(2, loaded.getInt("second"));
+        assertEquals(1, file.getParentFile().listFiles().length);
+    }
+
+    @Test
+    public void testSaveAsync() throws Exception {
+        FileConfiguration config = getConfig();
+        File file = testFolder.newFile("test.config");
+
+        for (Map.Entry<String, Object> entry : getTestValues().entrySet()) {
+            config.set(entry.getKey(), entry.getValue());
+        }
+
+        config.saveAsync(file).get();
+
+        FileConfiguration loaded = getConfig();
+        loaded.load(file);
+        assertEquals(config.saveToString(), loaded.saveToString());
+    }
+
+    @Test
+    public void testSaveAsyncCoalesces() throws Exception {
+        FileConfiguration config = getConfig();
+        File file = testFolder.newFile("test.config");
+        final CountDownLatch blocked = new CountDownLatch(1);
+
+        // Hold the saver thread so both saves are queued together
+        ConfigurationFileWriter.EXECUTOR.execute(new Runnable() {
+            public void run() {
+                try {
+                    blocked.await();
+                } catch (InterruptedException ex) {
+                }
+            }
+        });
+
+        config.set("value", 1);
+        Future<Void> first = config.saveAsync(file);
+        config.set("value", 2);
+        Future<Void> second = config.saveAsync(file);
+        assertSame(first, second);
+
+        blocked.countDown();
+        second.get();
+
+        FileConfiguration loaded = getConfig();
+        loaded.load(file);
+        assertEquals(2, loaded.getInt("value"));
+    }
+
+    @Test
+    public void testSaveAfterSaveAsync() throws Exception {
+        FileConfiguration config = getConfig();
+        File file = testFolder.newFile("test.config");
+        final CountDownLatch blocked = new CountDownLatch(1);
+
+        // Hold the saver thread so the async save is still queued
+        ConfigurationFileWriter.EXECUTOR.execute(new Runnable() {
+            public void run() {
+                try {
+                    blocked.await();
+                } catch (InterruptedException ex) {
+                }
+            }
+        });
+
+        config.set("value", 1);
+        Future<Void> queued = config.saveAsync(file);
+        config.set("value", 2);
+        // Does not wait for the saver thread
+        config.save(file);
+        assertFalse(queued.isDone());
+
+        blocked.countDown();
+        queued.get();
+
+        FileConfiguration loaded = getConfig();
+        loaded.load(file);
+        assertEquals(2, loaded.getInt("value"));
+    }
+
     @Test
     public void testSaveToString() {
         FileConfiguration config = getConfig();
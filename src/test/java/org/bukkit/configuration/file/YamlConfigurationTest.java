@@ -1,5 +1,8 @@
 package org.bukkit.configuration.file;
 
+import java.io.StringReader;
+
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -53,4 +56,80 @@ public class YamlConfigurationTest extends FileConfigurationTest {
 
         assertEquals(expected, result);
     }
+
+    @Test
+    public void testStreamedLoadMatchesLoadFromString() throws Exception {
+        String[] documents = {
+            getTestValuesString(),
+            "# Header line\n#  indented\n\n# second\nkey: value\n# not header\n",
+            "base: &b\n  a: 1\n  b: [1, 2]\ncopy: *b\nlist: &l [x, y]\nother: *l\n",
+            "base: &b\n  a: 1\n  b: 2\nderived:\n  <<: *b\n  b: 3\nlate:\n  c: 4\n  <<: [*b, {d: 5}]\n",
+            "vector:\n  x: 1.0\n  ==: Vector\n  y: 2.0\n  z: 3.0\n",
+            "list:\n- a: 1\n  b: [2, 3]\n- ==: Vector\n  x: 1.0\n  y: 2.0\n  z: 3.0\n",
+            "1: one\ntrue: yes\na.b: c\n? [complex, key]\n: value\n",
+            "empty: {}\nnested:\n  inner: {}\n  value: ~\n",
+            "set: !!set {a, b}\nbinary: !!binary aGVsbG8=\nstr: !!str 123\n",
+            "",
+            "~\n",
+            "{}\n",
+        };
+
+        for (String document : documents) {
+            YamlConfiguration expected = getConfig();
+            expected.loadFromString(document);
+            YamlConfiguration streamed = getConfig();
+            streamed.load(new StringReader(document));
+
+            assertEquals(document, expected.saveToString(), streamed.saveToString());
+            assertEquals(document, expected.options().header(), streamed.options().header());
+        }
+    }
+
+    @Test
+    public void testStreamedLoadInvalid() throws Exception {
+        String[] documents = {
+            "a: 1\nb:\n  c: [1, 2\n",
+            "- not\n- a map\n",
+            "scalar\n",
+            "a: 1\n---\nb: 2\n",
+            "a: *missing\n",
+        };
+
+        for (String document : documents) {
+            YamlConfiguration config = getConfig();
+            try {
+                config.load(new StringReader(document));
+                fail("Loaded " + document);
+            } catch (InvalidConfigurationException ex) {
+                assertTrue(document, config.getKeys(false).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testStreamedHeaderWithoutTrailingNewline() throws Exception {
+        assertEquals("a", readHeader("# a"));
+        assertEquals("a\nb", readHeader("# a\n# b"));
+        assertEquals("a\n", readHeader("# a\n"));
+    }
+
+    @Test
+    public void testStreamedHeaderLoneCarriageReturn() throws Exception {
+        assertEquals("a\rb", readHeader("# a\rb"));
+        assertEquals("a\r", readHeader("# a\r"));
+        assertEquals("a\nb", readHeader("# a\r\n# b"));
+
+        YamlConfiguration config = getConfig();
+        for (String input : new String[] { "# a\rb", "# a\r", "# a\r\r\n# b\n\nkey: 1\n# c" }) {
+            assertEquals(input, config.parseHeader(input), readHeader(input));
+        }
+    }
+
+    private String readHeader(String input) throws Exception {
+        YamlStreamLoader.HeaderReader reader = new YamlStreamLoader.HeaderReader(new StringReader(input));
+        char[] buffer = new char[4];
+        while (reader.read(buffer, 0, buffer.length) != -1) {
+        }
+        return reader.getHeader();
+    }
 }
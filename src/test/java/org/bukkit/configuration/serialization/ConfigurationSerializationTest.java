@@ -0,0 +1,94 @@
+package org.bukkit.configuration.serialization;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ConfigurationSerializationTest {
+    @After
+    public void tearDown() {
+        ConfigurationSerialization.unregisterClass(ViaMethod.class);
+        ConfigurationSerialization.unregisterClass(ViaConstructor.class);
+    }
+
+    @Test
+    public void testDeserializeViaMethod() {
+        ConfigurationSerialization.registerClass(ViaMethod.class);
+
+        for (int i = 0; i < 3; i++) {
+            Object result = ConfigurationSerialization.deserializeObject(args("ViaMethod", i));
+            assertThat(result, is(instanceOf(ViaMethod.class)));
+            assertThat(((ViaMethod) result).value, is(i));
+        }
+    }
+
+    @Test
+    public void testDeserializeViaConstructor() {
+        ConfigurationSerialization.registerClass(ViaConstructor.class);
+
+        Object result = ConfigurationSerialization.deserializeObject(args(ViaConstructor.class.getName(), 5));
+        assertThat(result, is(instanceOf(ViaConstructor.class)));
+        assertThat(((ViaConstructor) result).value, is(5));
+    }
+
+    @Test
+    public void testAliases() {
+        assertThat(ConfigurationSerialization.getAlias(ViaMethod.class), is("ViaMethod"));
+        assertThat(ConfigurationSerialization.getAlias(ViaMethod.class), is("ViaMethod"));
+        assertThat(ConfigurationSerialization.getAlias(ViaConstructor.class), is(ViaConstructor.class.getName()));
+
+        ConfigurationSerialization.registerClass(ViaMethod.class);
+        assertThat(ConfigurationSerialization.getClassByAlias("ViaMethod"), is((Object) ViaMethod.class));
+        assertThat(ConfigurationSerialization.getClassByAlias(ViaMethod.class.getName()), is((Object) ViaMethod.class));
+
+        ConfigurationSerialization.unregisterClass(ViaMethod.class);
+        assertThat(ConfigurationSerialization.getClassByAlias("ViaMethod"), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAlias() {
+        ConfigurationSerialization.deserializeObject(args("Unknown", 0));
+    }
+
+    private static Map<String, Object> args(String alias, int value) {
+        Map<String, Object> args = new HashMap<String, Object>();
+        args.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, alias);
+        args.put("value", value);
+        return args;
+    }
+
+    @SerializableAs("ViaMethod")
+    public static class ViaMethod implements ConfigurationSerializable {
+        private final int value;
+
+        private ViaMethod(int value) {
+            this.value = value;
+        }
+
+        public static ViaMethod deserialize(Map<String, Object> args) {
+            return new ViaMethod((Integer) args.get("value"));
+        }
+
+        public Map<String, Object> serialize() {
+            return Collections.<String, Object>singletonMap("value", value);
+        }
+    }
+
+    public static class ViaConstructor implements ConfigurationSerializable {
+        private final int value;
+
+        public ViaConstructor(Map<String, Object> args) {
+            this.value = (Integer) args.get("value");
+        }
+
+        public Map<String, Object> serialize() {
+            return Collections.<String, Object>singletonMap("value", value);
+        }
+    }
+}
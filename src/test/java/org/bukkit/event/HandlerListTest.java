@@ -0,0 +1,137 @@
+package org.bukkit.event;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.RegisteredListener;
+import org.bukkit.plugin.TestPlugin;
+import org.junit.After;
+import org.junit.Test;
+
+public class HandlerListTest {
+    private static final EventExecutor executor = new EventExecutor() {
+        public void execute(Listener listener, Event event) {}
+    };
+
+    private final HandlerList handlers = new HandlerList();
+    private final TestPlugin plugin = new TestPlugin("Test");
+
+    private RegisteredListener listener(EventPriority priority) {
+        return listener(priority, plugin, false);
+    }
+
+    private RegisteredListener listener(EventPriority priority, TestPlugin plugin, boolean ignoreCancelled) {
+        return new RegisteredListener(new Listener() {}, executor, priority, plugin, ignoreCancelled);
+    }
+
+    @Test
+    public void testHasListeners() {
+        assertThat(handlers.hasListeners(), is(false));
+
+        RegisteredListener monitor = listener(EventPriority.MONITOR);
+        handlers.register(monitor);
+        assertThat(handlers.hasListeners(), is(true));
+        assertThat(handlers.hasListeners(EventPriority.MONITOR), is(true));
+        assertThat(handlers.hasListeners(EventPriority.NORMAL), is(false));
+
+        handlers.unregister(monitor);
+        assertThat(handlers.hasListeners(), is(false));
+        assertThat(handlers.hasListeners(EventPriority.MONITOR), is(false));
+    }
+
+    @Test
+    public void testHasListenersAfterBakeAll() {
+        handlers.register(listener(EventPriority.LOW));
+        HandlerList.bakeAll();
+        assertThat(handlers.hasListeners(EventPriority.LOW), is(true));
+
+        handlers.unregister(plugin);
+        HandlerList.bakeAll();
+        assertThat(handlers.hasListeners(), is(false));
+    }
+
+    @Test
+    public void testListenerPresence() {
+        ListenerPresence before = HandlerList.getListenerPresence();
+        assertThat(before.hasListeners(handlers), is(false));
+
+        handlers.register(listener(EventPriority.HIGH));
+        ListenerPresence after = HandlerList.getListenerPresence();
+        assertThat(after.hasListeners(handlers), is(true));
+        assertThat(after.hasListeners(handlers, EventPriority.HIGH), is(true));
+        assertThat(after.hasListeners(handlers, EventPriority.LOWEST), is(false));
+        // Snapshots are immutable
+        assertThat(before.hasListeners(handlers), is(false));
+        // and reused while nothing changes
+        handlers.register(listener(EventPriority.HIGH));
+        assertThat(HandlerList.getListenerPresence(), is(sameInstance(after)));
+
+        HandlerList.unregisterAll(plugin);
+        assertThat(HandlerList.getListenerPresence().hasListeners(handlers), is(false));
+    }
+
+    @Test
+    public void testListenerPresenceOfNewList() {
+        ListenerPresence presence = HandlerList.getListenerPresence();
+        HandlerList created = new HandlerList();
+        assertThat(presence.hasListeners(created), is(false));
+        assertThat(presence.hasListeners(created, EventPriority.NORMAL), is(false));
+    }
+
+    @Test
+    public void testDispatchPlanExcludesDisabledPlugins() {
+        TestPlugin other = new TestPlugin("Other");
+        RegisteredListener first = listener(EventPriority.LOW);
+        RegisteredListener second = listener(EventPriority.NORMAL, other, false);
+        handlers.register(first);
+        handlers.register(second);
+        assertThat(handlers.getDispatchPlan().getListeners(), is(new RegisteredListener[] { first, second }));
+
+        other.setEnabled(false);
+        assertThat(handlers.getDispatchPlan().getListeners(), is(new RegisteredListener[] { first }));
+        // Disabled listeners are still registered
+        assertThat(handlers.getRegisteredListeners(), is(new RegisteredListener[] { first, second }));
+
+        other.setEnabled(true);
+        assertThat(handlers.getDispatchPlan().getListeners(), is(new RegisteredListener[] { first, second }));
+        HandlerList.unregisterAll(other);
+    }
+
+    @Test
+    public void testDispatchPlanRuns() {
+        handlers.register(listener(EventPriority.LOWEST, plugin, false));
+        handlers.register(listener(EventPriority.LOW, plugin, true));
+        handlers.register(listener(EventPriority.NORMAL, plugin, true));
+        handlers.register(listener(EventPriority.MONITOR, plugin, false));
+
+        DispatchPlan plan = handlers.getDispatchPlan();
+        assertThat(plan.getRunCount(), is(3));
+        assertThat(plan.isIgnoringCancelled(0), is(false));
+        assertThat(plan.getRunStart(0), is(0));
+        assertThat(plan.getRunEnd(0), is(1));
+        assertThat(plan.isIgnoringCancelled(1), is(true));
+        assertThat(plan.getRunStart(1), is(1));
+        assertThat(plan.getRunEnd(1), is(3));
+        assertThat(plan.isIgnoringCancelled(2), is(false));
+        assertThat(plan.getRunStart(2), is(3));
+        assertThat(plan.getRunEnd(2), is(4));
+    }
+
+    @Test
+    public void testDispatchPlanReusedUntilChanged() {
+        handlers.register(listener(EventPriority.NORMAL));
+        DispatchPlan plan = handlers.getDispatchPlan();
+        HandlerList.bakeAll();
+        assertThat(handlers.getDispatchPlan(), is(sameInstance(plan)));
+
+        handlers.register(listener(EventPriority.HIGH));
+        assertThat(handlers.getDispatchPlan(), is(not(sameInstance(plan))));
+        assertThat(handlers.getDispatchPlan().getListeners().length, is(2));
+    }
+
+    @After
+    public void tearDown() {
+        HandlerList.unregisterAll(plugin);
+    }
+}
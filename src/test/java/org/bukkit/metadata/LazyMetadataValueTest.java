@@ -4,6 +4,7 @@ import org.bukkit.plugin.TestPlugin;
 import org.junit.Test;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -113,6 +114,88 @@ public class LazyMetadataValueTest {
         assertEquals(1, counter.value());
     }
 
+    @Test
+    public void testCacheStrategyForDuration() {
+        final Counter counter = new Counter();
+        final long[] now = new long[1];
+        subject = new LazyMetadataValue(plugin, 20, TimeUnit.MILLISECONDS, new Callable<Object>() {
+            public Object call() throws Exception {
+                counter.increment();
+                return 10;
+            }
+        }) {
+            @Override
+            long nanoTime() {
+                return now[0];
+            }
+        };
+
+        subject.value();
+        now[0] += TimeUnit.MILLISECONDS.toNanos(19);
+        subject.value();
+        assertEquals(1, counter.value());
+
+        now[0] += TimeUnit.MILLISECONDS.toNanos(1);
+        subject.value();
+        assertEquals(2, counter.value());
+
+        subject.invalidate();
+        subject.value();
+        assertEquals(3, counter.value());
+    }
+
+    @Test
+    public void testExpireAfterZeroTicks() {
+        final Counter counter = new Counter();
+        subject = LazyMetadataValue.expireAfterTicks(plugin, 0, new Callable<Object>() {
+            public Object call() throws Exception {
+                counter.increment();
+                return 10;
+            }
+        });
+
+        subject.value();
+        subject.value();
+        assertEquals(2, counter.value());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testCacheForDurationWithoutDuration() {
+        makeCallable(LazyMetadataValue.CacheStrategy.CACHE_FOR_DURATION, 10);
+    }
+
+    @Test
+    public void testHitAndMissCounts() {
+        subject = makeSimpleCallable(10);
+        assertEquals(0, subject.getHitCount());
+        assertEquals(0, subject.getMissCount());
+
+        subject.value();
+        subject.value();
+        subject.value();
+        assertEquals(2, subject.getHitCount());
+        assertEquals(1, subject.getMissCount());
+
+        subject.invalidate();
+        subject.value();
+        assertEquals(2, subject.getHitCount());
+        assertEquals(2, subject.getMissCount());
+
+        subject = makeCallable(LazyMetadataValue.CacheStrategy.NEVER_CACHE, 10);
+        subject.value();
+        subject.value();
+        assertEquals(0, subject.getHitCount());
+        assertEquals(2, subject.getMissCount());
+    }
+
+    private LazyMetadataValue makeCallable(LazyMetadataValue.CacheStrategy cacheStrategy, final Object value) {
+        return new LazyMetadataValue(plugin, cacheStrategy, new Callable<Object>() {
+            public Object call() throws Exception {
+                return value;
+            }
+        });
+    }
+
     private LazyMetadataValue makeSimpleCallable(final Object value) {
         return new LazyMetadataValue(plugin, new Callable<Object>() {
             public Object call() throws Exception {
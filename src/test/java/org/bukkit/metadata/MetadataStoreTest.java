@@ -2,10 +2,14 @@ package org.bukkit.metadata;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.TestPlugin;
@@ -69,6 +73,51 @@ public class MetadataStoreTest {
         assertEquals(1, counter.value());
     }
 
+    @Test
+    public void testInvalidateAllAfterRemoveAndSet() {
+        final Counter counter = new Counter();
+        Callable<Object> callable = new Callable<Object>() {
+            public Object call() throws Exception {
+                counter.increment();
+                return 10;
+            }
+        };
+
+        subject.setMetadata("subject", "key", new FixedMetadataValue(pluginX, 10));
+        subject.removeMetadata("subject", "key", pluginX);
+        subject.invalidateAll(pluginX);
+
+        subject.setMetadata("subject", "key", new LazyMetadataValue(pluginX, callable));
+        subject.setMetadata("other", "key", new LazyMetadataValue(pluginY, callable));
+        subject.getMetadata("subject", "key").get(0).value();
+        subject.getMetadata("other", "key").get(0).value();
+        assertEquals(2, counter.value());
+
+        subject.invalidateAll(pluginX);
+        subject.getMetadata("subject", "key").get(0).value();
+        subject.getMetadata("other", "key").get(0).value();
+        assertEquals(3, counter.value());
+    }
+
+    @Test
+    public void testRemoveUnindexesSubject() {
+        for (int i = 0; i < 100; i++) {
+            subject.setMetadata("subject" + i, "key", new FixedMetadataValue(pluginX, i));
+            subject.setMetadata("subject" + i, "key", new FixedMetadataValue(pluginY, i));
+            subject.setMetadata("subject" + i, "other", new FixedMetadataValue(pluginX, i));
+            subject.removeMetadata("subject" + i, "key", pluginX);
+            subject.removeMetadata("subject" + i, "other", pluginX);
+        }
+
+        assertEquals(0, subject.getIndexedSubjectCount(pluginX));
+        assertEquals(100, subject.getIndexedSubjectCount(pluginY));
+
+        for (int i = 0; i < 100; i++) {
+            subject.removeMetadata("subject" + i, "key", pluginY);
+        }
+        assertEquals(0, subject.getIndexedSubjectCount(pluginY));
+    }
+
     @Test
     public void testMetadataReplace() {
         subject.setMetadata("subject", "key", new FixedMetadataValue(pluginX, 10));
@@ -122,6 +171,95 @@ public class MetadataStoreTest {
         assertFalse(subject.hasMetadata("subject", "otherKey"));
     }
 
+    @Test
+    public void testSubjectKey() {
+        KeyedMetadataStore keyed = new KeyedMetadataStore();
+        keyed.setMetadata("subject", "key", new FixedMetadataValue(pluginX, 10));
+        keyed.setMetadata("subject", "other", new FixedMetadataValue(pluginY, 20));
+
+        assertTrue(keyed.hasMetadata("subject", "key"));
+        assertEquals(20, keyed.getMetadata("subject", "other").get(0).value());
+        assertFalse(keyed.hasMetadata("other subject", "key"));
+        assertEquals(0, keyed.disambiguated);
+
+        keyed.removeMetadata("subject", "key", pluginX);
+        keyed.removeMetadata("subject", "other", pluginY);
+
+        assertFalse(keyed.hasMetadata("subject", "key"));
+        assertFalse(keyed.hasMetadata("subject", "other"));
+    }
+
+    @Test
+    public void testReadsDoNotCopy() {
+        subject.setMetadata("subject", "key", new FixedMetadataValue(pluginX, 10));
+
+        assertSame(subject.getMetadata("subject", "key"), subject.getMetadata("subject", "key"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadsAreUnmodifiable() {
+        subject.setMetadata("subject", "key", new FixedMetadataValue(pluginX, 10));
+
+        subject.getMetadata("subject", "key").clear();
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Throwable {
+        final KeyedMetadataStore keyed = new KeyedMetadataStore();
+        final Plugin[] plugins = { pluginX, pluginY };
+        final Queue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; i++) {
+            final Plugin plugin = plugins[i % plugins.length];
+            final String subjectName = "subject" + (i / plugins.length);
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < 2000; j++) {
+                            keyed.setMetadata(subjectName, "key", new FixedMetadataValue(plugin, j));
+                            keyed.getMetadata("subject0", "key").size();
+                            keyed.removeMetadata(subjectName, "key", plugin);
+                        }
+                        keyed.setMetadata(subjectName, "key", new FixedMetadataValue(plugin, -1));
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (!failures.isEmpty()) {
+            throw failures.peek();
+        }
+        for (int i = 0; i < threads.length / plugins.length; i++) {
+            assertEquals(plugins.length, keyed.getMetadata("subject" + i, "key").size());
+        }
+    }
+
+    private class KeyedMetadataStore extends MetadataStoreBase<String> implements MetadataStore<String> {
+        private int disambiguated;
+
+        @Override
+        protected String disambiguate(String subject, String metadataKey) {
+            disambiguated++;
+            return subject + ":" + metadataKey;
+        }
+
+        @Override
+        protected Object getSubjectKey(String subject) {
+            return subject;
+        }
+    }
+
     private class StringMetadataStore extends MetadataStoreBase<String> implements MetadataStore<String> {
         @Override
         protected String disambiguate(String subject, String metadataKey) {
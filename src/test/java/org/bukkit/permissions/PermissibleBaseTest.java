@@ -0,0 +1,265 @@
+package org.bukkit.permissions;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.bukkit.TestServer;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.TestPlugin;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PermissibleBaseTest {
+    private static final PluginManager pm = TestServer.getInstance().getPluginManager();
+    private final TestPlugin plugin = new TestPlugin("permissible");
+
+    @BeforeClass
+    public static void registerPermissions() {
+        Map<String, Boolean> children = new HashMap<String, Boolean>();
+        children.put("pbtest.child.a", true);
+        children.put("pbtest.child.b", false);
+        pm.addPermission(new Permission("pbtest.parent", PermissionDefault.FALSE, children));
+
+        Map<String, Boolean> nested = new HashMap<String, Boolean>();
+        nested.put("pbtest.parent", true);
+        nested.put("pbtest.child.c", true);
+        pm.addPermission(new Permission("pbtest.root", PermissionDefault.FALSE, nested));
+    }
+
+    @Test
+    public void testAttachmentChildren() {
+        PermissibleBase permissible = new PermissibleBase(null);
+        PermissionAttachment attachment = permissible.addAttachment(plugin, "pbtest.root", true);
+
+        assertTrue(permissible.hasPermission("pbtest.root"));
+        assertTrue(permissible.hasPermission("pbtest.parent"));
+        assertTrue(permissible.hasPermission("pbtest.child.a"));
+        assertFalse(permissible.hasPermission("pbtest.child.b"));
+        assertTrue(permissible.isPermissionSet("pbtest.child.b"));
+        assertTrue(pm.getPermissionSubscriptions("pbtest.child.a").contains(permissible));
+
+        attachment.setPermission("pbtest.root", false);
+        assertFalse(permissible.hasPermission("pbtest.child.a"));
+        assertTrue(permissible.hasPermission("pbtest.child.b"));
+
+        attachment.unsetPermission("pbtest.root");
+        assertFalse(permissible.isPermissionSet("pbtest.child.a"));
+        assertFalse(pm.getPermissionSubscriptions("pbtest.child.a").contains(permissible));
+    }
+
+    @Test
+    public void testLaterAttachmentWins() {
+        PermissibleBase permissible = new PermissibleBase(null);
+        PermissionAttachment first = permissible.addAttachment(plugin);
+        PermissionAttachment second = permissible.addAttachment(plugin, "pbtest.child.a", false);
+
+        first.setPermission("pbtest.parent", true);
+        assertFalse(permissible.hasPermission("pbtest.child.a"));
+        assertTrue(permissible.hasPermission("pbtest.parent"));
+
+        second.remove();
+        assertTrue(permissible.hasPermission("pbtest.child.a"));
+
+        first.remove();
+        assertFalse(permissible.isPermissionSet("pbtest.child.a"));
+        assertFalse(pm.getPermissionSubscriptions("pbtest.parent").contains(permissible));
+    }
+
+    @Test
+    public void testOrderWithinAttachment() {
+        PermissibleBase permissible = new PermissibleBase(null);
+        PermissionAttachment attachment = permissible.addAttachment(plugin);
+
+        attachment.setPermission("pbtest.child.a", false);
+        attachment.setPermission("pbtest.parent", true);
+        assertTrue(permissible.hasPermission("pbtest.child.a"));
+
+        // Setting it again keeps its place before pbtest.parent
+        attachment.setPermission("pbtest.child.a", false);
+        assertTrue(permissible.hasPermission("pbtest.child.a"));
+
+        attachment.unsetPermission("pbtest.child.a");
+        attachment.setPermission("pbtest.child.a", false);
+        assertFalse(permissible.hasPermission("pbtest.child.a"));
+    }
+
+    @Test
+    public void testIncrementalMatchesRecalculation() {
+        PermissibleBase permissible = new PermissibleBase(null);
+        PermissionAttachment first = permissible.addAttachment(plugin);
+        PermissionAttachment second = permissible.addAttachment(plugin);
+
+        first.setPermission("pbtest.root", true);
+        second.setPermission("pbtest.child.b", true);
+        first.setPermission("pbtest.child.c", false);
+        second.setPermission("pbtest.parent", false);
+        first.unsetPermission("pbtest.root");
+        first.setPermission("pbtest.parent", true);
+
+        Map<String, Boolean> incremental = effective(permissible);
+        permissible.recalculatePermissions();
+        assertEquals(effective(permissible), incremental);
+    }
+
+    @Test
+    public void testChangeAfterClear() {
+        PermissibleBase permissible = new PermissibleBase(null);
+        PermissionAttachment attachment = permissible.addAttachment(plugin, "pbtest.parent", true);
+
+        permissible.clearPermissions();
+        assertFalse(permissible.isPermissionSet("pbtest.child.a"));
+
+        attachment.setPermission("pbtest.child.c", true);
+        assertTrue(permissible.hasPermission("pbtest.child.a"));
+        assertTrue(permissible.hasPermission("pbtest.child.c"));
+    }
+
+    @Test
+    public void testIgnoresCase() {
+        PermissibleBase permissible = new PermissibleBase(null);
+        PermissionAttachment attachment = permissible.addAttachment(plugin, "PBTest.Case", true);
+
+        assertTrue(permissible.hasPermission("pbtest.case"));
+        assertTrue(permissible.hasPermission("PBTEST.CASE"));
+        assertTrue(permissible.isPermissionSet("pbTest.cAse"));
+
+        attachment.setPermission("pbtest.CASE", false);
+        assertFalse(permissible.hasPermission("PBTest.Case"));
+    }
+
+    @Test
+    public void testIgnoresCaseRegardlessOfLocale() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            PermissibleBase permissible = new PermissibleBase(null);
+            permissible.addAttachment(plugin, "PBTest.Idle", true);
+            permissible.addAttachment(plugin, "pbtest.\u0130dle", true);
+
+            assertTrue(permissible.hasPermission("PBTest.Idle"));
+            assertTrue(permissible.hasPermission("pbtest.idle"));
+            assertTrue(permissible.hasPermission("PBTEST.IDLE"));
+            assertTrue(permissible.hasPermission("pbtest.\u0130dle"));
+            assertTrue(pm.getPermissionSubscriptions("PBTest.Idle").contains(permissible));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testPermissionsChanged() {
+        final int[] changes = new int[1];
+        PermissibleBase permissible = new PermissibleBase(null) {
+            @Override
+            protected void permissionsChanged() {
+                changes[0]++;
+            }
+        };
+        PermissionAttachment attachment = permissible.addAttachment(plugin);
+        int added = changes[0];
+
+        attachment.setPermission("pbtest.changed", true);
+        assertEquals(added + 1, changes[0]);
+        attachment.unsetPermission("pbtest.changed");
+        assertEquals(added + 2, changes[0]);
+        permissible.recalculatePermissions();
+        assertEquals(added + 3, changes[0]);
+    }
+
+    @Test
+    public void testOverriddenRecalculationIsCalled() {
+        final int[] recalculations = new int[1];
+        PermissibleBase permissible = new PermissibleBase(null) {
+            @Override
+            public void recalculatePermissions() {
+                recalculations[0]++;
+                super.recalculatePermissions();
+            }
+        };
+        PermissionAttachment attachment = permissible.addAttachment(plugin);
+        int added = recalculations[0];
+
+        attachment.setPermission("pbtest.overridden", true);
+        assertEquals(added + 1, recalculations[0]);
+        assertTrue(permissible.hasPermission("pbtest.overridden"));
+        attachment.unsetPermission("pbtest.overridden");
+        assertEquals(added + 2, recalculations[0]);
+        assertFalse(permissible.isPermissionSet("pbtest.overridden"));
+        attachment.remove();
+        assertEquals(added + 3, recalculations[0]);
+    }
+
+    @Test
+    public void testUnsetPermissionDefault() {
+        PermissibleBase permissible = new PermissibleBase(null);
+        assertFalse(permissible.hasPermission("pbtest.registered.later"));
+
+        Permission perm = new Permission("pbtest.registered.later", PermissionDefault.TRUE);
+        pm.addPermission(perm);
+        try {
+            assertTrue(permissible.hasPermission("pbtest.registered.later"));
+            perm.setDefault(PermissionDefault.FALSE);
+            assertFalse(permissible.hasPermission("pbtest.registered.later"));
+        } finally {
+            pm.removePermission(perm);
+        }
+        assertFalse(permissible.hasPermission("pbtest.registered.later"));
+    }
+
+    @Test
+    public void testUnsetPermissionDefaultIgnoresCase() {
+        PermissibleBase permissible = new PermissibleBase(null);
+        assertFalse(permissible.hasPermission("PBTest.Registered.Case"));
+
+        Permission perm = new Permission("pbtest.registered.case", PermissionDefault.TRUE);
+        pm.addPermission(perm);
+        try {
+            assertTrue(permissible.hasPermission("pbtest.registered.case"));
+            assertTrue(permissible.hasPermission("PBTest.Registered.Case"));
+            assertTrue(permissible.hasPermission("PBTEST.REGISTERED.CASE"));
+        } finally {
+            pm.removePermission(perm);
+        }
+        assertFalse(permissible.hasPermission("PBTest.Registered.Case"));
+    }
+
+    @Test
+    public void testWildcardsDisabled() {
+        PermissibleBase permissible = new PermissibleBase(null);
+        permissible.addAttachment(plugin, "pbtest.wild.*", true);
+
+        assertTrue(permissible.hasPermission("pbtest.wild.*"));
+        assertFalse(permissible.isPermissionSet("pbtest.wild.node"));
+    }
+
+    @Test
+    public void testWildcards() {
+        PermissibleBase permissible = new PermissibleBase(null, true);
+        PermissionAttachment attachment = permissible.addAttachment(plugin);
+        attachment.setPermission("pbtest.wild.*", true);
+        attachment.setPermission("pbtest.wild.deny.*", false);
+        attachment.setPermission("pbtest.wild.deny.allowed", true);
+
+        assertTrue(permissible.hasPermission("pbtest.wild.node"));
+        assertTrue(permissible.hasPermission("PBTest.Wild.A.B"));
+        assertFalse(permissible.hasPermission("pbtest.wild.deny.node"));
+        assertTrue(permissible.hasPermission("pbtest.wild.deny.allowed"));
+        assertFalse(permissible.isPermissionSet("pbtest.wild"));
+        assertFalse(permissible.isPermissionSet("pbtest.other.node"));
+
+        attachment.setPermission("*", true);
+        assertTrue(permissible.hasPermission("pbtest.other.node"));
+        assertTrue(permissible.hasPermission("anything"));
+    }
+
+    private static Map<String, Boolean> effective(PermissibleBase permissible) {
+        Map<String, Boolean> result = new HashMap<String, Boolean>();
+        for (PermissionAttachmentInfo info : permissible.getEffectivePermissions()) {
+            result.put(info.getPermission(), info.getValue());
+        }
+        return result;
+    }
+}
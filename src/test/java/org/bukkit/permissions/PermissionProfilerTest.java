@@ -0,0 +1,61 @@
+package org.bukkit.permissions;
+
+import static org.junit.Assert.*;
+
+import org.bukkit.TestServer;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.TestPlugin;
+import org.junit.After;
+import org.junit.Test;
+
+public class PermissionProfilerTest {
+    private static final PluginManager pm = TestServer.getInstance().getPluginManager();
+
+    @After
+    public void tearDown() {
+        PermissionProfiler.setEnabled(false);
+        PermissionProfiler.reset();
+    }
+
+    @Test
+    public void testDisabled() {
+        PermissibleBase permissible = new PermissibleBase(null);
+        permissible.hasPermission("profiler.disabled");
+
+        assertEquals(0, PermissionProfiler.getReport().getChecks());
+    }
+
+    @Test
+    public void testChecks() {
+        PermissionProfiler.setEnabled(true);
+        PermissibleBase permissible = new PermissibleBase(null);
+        permissible.addAttachment(new TestPlugin("profiler"), "profiler.set", true);
+
+        for (int i = 0; i < PermissionProfiler.CALLER_SAMPLE_INTERVAL; i++) {
+            permissible.hasPermission("Profiler.Set");
+            permissible.hasPermission("profiler.unset");
+        }
+
+        PermissionProfiler.Report report = PermissionProfiler.getReport();
+        assertEquals(PermissionProfiler.CALLER_SAMPLE_INTERVAL * 2, report.getChecks());
+        assertEquals(Long.valueOf(PermissionProfiler.CALLER_SAMPLE_INTERVAL), report.getNodeChecks().get("profiler.set"));
+        assertEquals(Long.valueOf(0), report.getNodeDefaults().get("profiler.set"));
+        assertEquals(Long.valueOf(PermissionProfiler.CALLER_SAMPLE_INTERVAL), report.getNodeDefaults().get("profiler.unset"));
+        assertEquals(Long.valueOf(PermissionProfiler.CALLER_SAMPLE_INTERVAL * 2), report.getPluginChecks().get("(server)"));
+        assertEquals(Integer.valueOf(1), report.getSubscriptions().get("profiler.set"));
+        assertEquals(1, report.getRecalculations().getCount());
+        assertEquals(1, report.getUpdates().getCount());
+    }
+
+    @Test
+    public void testReset() {
+        PermissionProfiler.setEnabled(true);
+        new PermissibleBase(null).hasPermission("profiler.reset");
+        PermissionProfiler.reset();
+
+        PermissionProfiler.Report report = PermissionProfiler.getReport();
+        assertEquals(0, report.getChecks());
+        assertTrue(report.getNodeChecks().isEmpty());
+        assertEquals(0, report.getRecalculations().getCount());
+    }
+}
@@ -0,0 +1,206 @@
+package org.bukkit.plugin;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class DependencyGraphTest {
+
+    private static List<String> list(String... names) {
+        return Arrays.asList(names);
+    }
+
+    @Test
+    public void testIndependentPluginsKeepDiscoveryOrder() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.add("C", null, null, null);
+        graph.add("A", null, null, null);
+        graph.add("B", null, null, null);
+
+        assertThat(graph.getLoadOrder(), is(list("C", "A", "B")));
+        assertThat(graph.getLoadStages().size(), is(1));
+    }
+
+    @Test
+    public void testDependenciesLoadFirst() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.add("A", list("B"), null, null);
+        graph.add("B", null, list("C"), null);
+        graph.add("C", null, null, list("D"));
+        graph.add("D", null, null, null);
+
+        assertThat(graph.getLoadOrder(), is(list("C", "B", "D", "A")));
+        assertThat(graph.getDependencies("A"), is((Object) ImmutableSet.of("B")));
+        assertThat(graph.getDependencies("D"), is((Object) ImmutableSet.of("C")));
+    }
+
+    @Test
+    public void testMissingDependencyCascades() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.add("A", list("Missing"), null, null);
+        graph.add("B", list("A"), null, null);
+        graph.add("C", null, list("A", "Absent"), null);
+
+        assertThat(graph.getLoadOrder(), is(list("C")));
+        assertThat(graph.getMissingDependencies(), is((Object) ImmutableMap.of("A", "Missing", "B", "A")));
+        assertThat(graph.getCycles().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testSoftCycleIsBroken() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.add("A", null, list("B"), null);
+        graph.add("B", list("C"), null, null);
+        graph.add("C", null, list("A"), null);
+
+        // Neither A nor C has a hard dependency, so A breaks the cycle
+        assertThat(graph.getLoadOrder(), is(list("A", "C", "B")));
+        assertThat(graph.getCycles().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testHardCycleIsReported() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.add("A", list("B"), null, null);
+        graph.add("B", list("C"), null, null);
+        graph.add("C", list("A"), null, null);
+        graph.add("D", list("C"), null, null);
+        graph.add("E", list("E"), null, null);
+        graph.add("F", null, list("D"), null);
+
+        assertThat(graph.getLoadOrder(), is(list("F")));
+        assertThat(graph.getCycles().size(), is(2));
+        assertThat(ImmutableSet.copyOf(graph.getCycles().get(0)), is((Object) ImmutableSet.of("A", "B", "C")));
+        assertThat(graph.getCycles().get(1), is((Object) ImmutableList.of("E")));
+        for (String plugin : list("A", "B", "C", "D", "E")) {
+            assertThat(plugin, graph.isCyclic(plugin), is(true));
+        }
+        assertThat(graph.isCyclic("F"), is(false));
+    }
+
+    @Test
+    public void testDuplicateReplacesHardAndMergesSoft() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.add("A", list("Missing"), list("B"), null);
+        graph.add("B", null, null, null);
+        graph.add("C", null, null, null);
+        graph.add("A", null, list("C"), null);
+
+        assertThat(graph.getMissingDependencies().isEmpty(), is(true));
+        assertThat(graph.getDependencies("A"), is((Object) ImmutableSet.of("B", "C")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddAfterResolve() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.getLoadOrder();
+        graph.add("A", null, null, null);
+    }
+
+    @Test
+    public void testLongChain() {
+        int size = 20000;
+        DependencyGraph graph = new DependencyGraph();
+        // Discovered in reverse, so every plugin waits on the next one
+        for (int i = size - 1; i >= 0; i--) {
+            graph.add("P" + i, i == 0 ? null : list("P" + (i - 1)), null, null);
+        }
+
+        List<String> order = graph.getLoadOrder();
+        assertThat(order.size(), is(size));
+        for (int i = 0; i < size; i++) {
+            assertThat(order.get(i), is("P" + i));
+        }
+        assertThat(graph.getLoadStages().size(), is(size));
+    }
+
+    @Test
+    public void testLongHardCycle() {
+        int size = 20000;
+        DependencyGraph graph = new DependencyGraph();
+        for (int i = 0; i < size; i++) {
+            graph.add("P" + i, list("P" + ((i + 1) % size)), null, null);
+        }
+
+        assertThat(graph.getLoadOrder().isEmpty(), is(true));
+        assertThat(graph.getCycles().size(), is(1));
+        assertThat(graph.getCycles().get(0).size(), is(size));
+    }
+
+    @Test
+    public void testRandomGraphRespectsDependencies() {
+        int size = 5000;
+        Random random = new Random(42);
+        DependencyGraph graph = new DependencyGraph();
+        String[][] depend = new String[size][];
+        String[][] softDepend = new String[size][];
+        String[][] loadBefore = new String[size][];
+
+        // Edges only point to lower numbers, so the graph is acyclic
+        for (int i = 0; i < size; i++) {
+            depend[i] = pick(random, i, 3);
+            softDepend[i] = pick(random, i, 3);
+            loadBefore[i] = new String[] { "P" + (i + 1 + random.nextInt(size)) };
+        }
+        List<Integer> discovery = new java.util.ArrayList<Integer>();
+        for (int i = 0; i < size; i++) {
+            discovery.add(i);
+        }
+        Collections.shuffle(discovery, random);
+        for (int i : discovery) {
+            graph.add("P" + i, list(depend[i]), list(softDepend[i]), list(loadBefore[i]));
+        }
+
+        List<String> order = graph.getLoadOrder();
+        assertThat(order.size(), is(size));
+        int[] position = new int[size];
+        for (int i = 0; i < size; i++) {
+            position[Integer.parseInt(order.get(i).substring(1))] = i;
+        }
+        for (int i = 0; i < size; i++) {
+            for (String dependency : depend[i]) {
+                assertThat(position[Integer.parseInt(dependency.substring(1))], is(lessThan(position[i])));
+            }
+            for (String dependency : softDepend[i]) {
+                assertThat(position[Integer.parseInt(dependency.substring(1))], is(lessThan(position[i])));
+            }
+            int target = Integer.parseInt(loadBefore[i][0].substring(1));
+            if (target < size) {
+                assertThat(position[i], is(lessThan(position[target])));
+            }
+        }
+
+        // No plugin depends on another plugin of the same stage
+        int stage = 0;
+        for (List<String> plugins : graph.getLoadStages()) {
+            for (String plugin : plugins) {
+                for (String dependency : graph.getDependencies(plugin)) {
+                    assertThat(plugins.contains(dependency), is(false));
+                }
+            }
+            stage++;
+        }
+        assertThat(stage, is(greaterThan(1)));
+    }
+
+    private static String[] pick(Random random, int below, int max) {
+        if (below == 0) {
+            return new String[0];
+        }
+        String[] picked = new String[random.nextInt(max + 1)];
+        for (int i = 0; i < picked.length; i++) {
+            picked[i] = "P" + random.nextInt(below);
+        }
+        return picked;
+    }
+}
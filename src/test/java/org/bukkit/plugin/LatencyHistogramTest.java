@@ -0,0 +1,71 @@
+package org.bukkit.plugin;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBounds() {
+        for (long value : new long[] { 0, 1, 7, 8, 15, 16, 17, 1000, 123456789L, 1L << 39 }) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertThat("Value " + value + " exceeds its bucket", value, is(lessThanOrEqualTo(LatencyHistogram.upperBoundOf(bucket))));
+            if (bucket > 0) {
+                assertThat("Value " + value + " fits a lower bucket", value, is(greaterThan(LatencyHistogram.upperBoundOf(bucket - 1))));
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount(), is(1000L));
+        assertThat(snapshot.getMax(), is(1000000L));
+        assertThat(snapshot.getMean(), is(500500L));
+        assertThat((double) snapshot.getPercentile(50), is(closeTo(500000, 500000 * 0.125)));
+        assertThat((double) snapshot.getPercentile(99), is(closeTo(990000, 990000 * 0.125)));
+        assertThat(snapshot.getPercentile(100), is(1000000L));
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5000);
+        histogram.reset();
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount(), is(0L));
+        assertThat(snapshot.getMax(), is(0L));
+        assertThat(snapshot.getPercentile(99), is(0L));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < 100000; j++) {
+                        histogram.record(j);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), is(400000L));
+        assertThat(snapshot.getMax(), is(99999L));
+    }
+}
@@ -0,0 +1,131 @@
+package org.bukkit.plugin;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class PluginDescriptionCacheTest {
+    private static final String PLUGIN_YML =
+            "name: Cached\n" +
+            "version: 1.2\n" +
+            "main: com.example.Cached\n" +
+            "depend: [Alpha, Beta]\n" +
+            "loadbefore: [Gamma]\n" +
+            "authors: [Someone]\n" +
+            "commands:\n" +
+            "  cache:\n" +
+            "    aliases: [c, ca]\n" +
+            "    description: Does things\n" +
+            "permissions:\n" +
+            "  cached.use:\n" +
+            "    default: true\n";
+
+    private File plugin;
+    private File cacheFile;
+
+    @After
+    public void tearDown() {
+        if (plugin != null) plugin.delete();
+        if (cacheFile != null) cacheFile.delete();
+    }
+
+    private void setUp() throws IOException {
+        plugin = File.createTempFile("plugin", ".jar");
+        cacheFile = File.createTempFile("descriptions", ".cache");
+        FileOutputStream out = new FileOutputStream(plugin);
+        out.write(new byte[] { 1, 2, 3 });
+        out.close();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        setUp();
+        PluginDescriptionCache cache = new PluginDescriptionCache(cacheFile);
+        cache.put(plugin, new PluginDescriptionFile(new StringReader(PLUGIN_YML)));
+        cache.save();
+
+        cache = new PluginDescriptionCache(cacheFile);
+        cache.load();
+        PluginDescriptionFile description = cache.get(plugin);
+        assertThat(description, is(notNullValue()));
+        assertThat(description.getName(), is("Cached"));
+        assertThat(description.getVersion(), is("1.2"));
+        assertThat(description.getMain(), is("com.example.Cached"));
+        assertThat(description.getDepend(), is((Object) ImmutableList.of("Alpha", "Beta")));
+        assertThat(description.getLoadBefore(), is((Object) ImmutableList.of("Gamma")));
+        assertThat(description.getCommands().get("cache").get("aliases"), is((Object) ImmutableList.of("c", "ca")));
+        assertThat(description.getAuthors(), is((Object) ImmutableList.of("Someone")));
+    }
+
+    @Test
+    public void testChangedFileIsNotCached() throws Exception {
+        setUp();
+        PluginDescriptionCache cache = new PluginDescriptionCache(cacheFile);
+        cache.put(plugin, new PluginDescriptionFile(new StringReader(PLUGIN_YML)));
+        cache.save();
+
+        FileOutputStream out = new FileOutputStream(plugin, true);
+        out.write(4);
+        out.close();
+
+        cache = new PluginDescriptionCache(cacheFile);
+        cache.load();
+        assertThat(cache.get(plugin), is(nullValue()));
+    }
+
+    @Test
+    public void testDamagedCacheIsIgnored() throws Exception {
+        setUp();
+        FileOutputStream out = new FileOutputStream(cacheFile);
+        out.write(new byte[] { 'B', 'P', 'D', 'C', 0, 0 });
+        out.close();
+
+        PluginDescriptionCache cache = new PluginDescriptionCache(cacheFile);
+        cache.load();
+        assertThat(cache.get(plugin), is(nullValue()));
+    }
+
+    @Test
+    public void testDamagedLengthIsIgnored() throws Exception {
+        setUp();
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(cacheFile));
+        out.writeInt(0x42504443);
+        out.writeInt(1);
+        out.writeInt(1);
+        out.writeUTF(plugin.getAbsolutePath());
+        out.writeLong(plugin.length());
+        out.writeLong(plugin.lastModified());
+        out.writeByte(6); // list
+        out.writeInt(Integer.MAX_VALUE);
+        out.close();
+
+        PluginDescriptionCache cache = new PluginDescriptionCache(cacheFile);
+        cache.load();
+        assertThat(cache.get(plugin), is(nullValue()));
+
+        out = new DataOutputStream(new FileOutputStream(cacheFile));
+        out.writeInt(0x42504443);
+        out.writeInt(1);
+        out.writeInt(1);
+        out.writeUTF(plugin.getAbsolutePath());
+        out.writeLong(plugin.length());
+        out.writeLong(plugin.lastModified());
+        out.writeByte(1); // string
+        out.writeInt(-1);
+        out.close();
+
+        cache = new PluginDescriptionCache(cacheFile);
+        cache.load();
+        assertThat(cache.get(plugin), is(nullValue()));
+    }
+}
@@ -3,10 +3,21 @@ package org.bukkit.plugin;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.bukkit.TestServer;
+import org.bukkit.event.Cancellable;
 import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
 import org.bukkit.event.TestEvent;
+import org.bukkit.permissions.Permissible;
+import org.bukkit.permissions.PermissibleBase;
 import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionDefault;
 
 import org.junit.After;
 import org.junit.Test;
@@ -123,6 +134,166 @@ public class PluginManagerTest {
         }
     }
 
+    @Test
+    public void testUnlockedDispatchUnderRegistration() throws InterruptedException {
+        final SimplePluginManager manager = (SimplePluginManager) pm;
+        final HandlerList handlers = TestEvent.getHandlerList();
+        final TestPlugin plugin = new TestPlugin("Stable");
+        final TestPlugin churnPlugin = new TestPlugin("Churn");
+        final int eventsPerThread = 20000;
+        final int threads = 4;
+
+        final List<AtomicInteger> counters = new ArrayList<AtomicInteger>();
+        for (EventPriority priority : EventPriority.values()) {
+            final AtomicInteger counter = new AtomicInteger();
+            counters.add(counter);
+            handlers.register(new RegisteredListener(new Listener() {}, new EventExecutor() {
+                public void execute(Listener listener, Event event) {
+                    counter.incrementAndGet();
+                }
+            }, priority, plugin, false));
+        }
+
+        final EventExecutor noop = new EventExecutor() {
+            public void execute(Listener listener, Event event) {}
+        };
+        final AtomicInteger running = new AtomicInteger(threads);
+        Thread churn = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while (running.get() > 0) {
+                        RegisteredListener transientListener = new RegisteredListener(new Listener() {}, noop, EventPriority.NORMAL, churnPlugin, false);
+                        handlers.register(transientListener);
+                        handlers.unregister(transientListener);
+                        handlers.register(new RegisteredListener(new Listener() {}, noop, EventPriority.HIGH, churnPlugin, false));
+                        handlers.unregister(churnPlugin);
+                    }
+                } catch (Throwable ex) {
+                    store.value = ex;
+                }
+            }
+        });
+
+        List<Thread> firing = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            firing.add(new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < eventsPerThread; j++) {
+                            manager.callEvent(new TestEvent(false));
+                        }
+                    } catch (Throwable ex) {
+                        store.value = ex;
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        manager.lockEventDispatch(false);
+        try {
+            churn.start();
+            for (Thread thread : firing) {
+                thread.start();
+            }
+            for (Thread thread : firing) {
+                thread.join();
+            }
+            churn.join();
+        } finally {
+            manager.lockEventDispatch(true);
+        }
+
+        if (store.value != null) {
+            throw new RuntimeException((Throwable) store.value);
+        }
+        for (AtomicInteger counter : counters) {
+            assertThat(counter.get(), is(eventsPerThread * threads));
+        }
+    }
+
+    @Test
+    public void testRegisterEventUsesDeclaringHandlerList() {
+        final TestPlugin plugin = new TestPlugin("Registrar");
+        final EventExecutor executor = new EventExecutor() {
+            public void execute(Listener listener, Event event) {}
+        };
+
+        for (int i = 0; i < 100; i++) {
+            pm.registerEvent(TestSubEvent.class, new Listener() {}, EventPriority.NORMAL, executor, plugin);
+        }
+        assertThat(TestEvent.getHandlerList().getRegisteredListeners().length, is(100));
+        assertThat(HandlerList.getRegisteredListeners(plugin).size(), is(100));
+    }
+
+    @Test(expected = IllegalPluginAccessException.class)
+    public void testRegisterEventWithoutHandlerList() {
+        pm.registerEvent(Event.class, new Listener() {}, EventPriority.NORMAL, new EventExecutor() {
+            public void execute(Listener listener, Event event) {}
+        }, new TestPlugin("Registrar"));
+    }
+
+    @Test
+    public void testCancelledEventSkipsIgnoringListeners() {
+        final TestPlugin plugin = new TestPlugin("Canceller");
+        final StringBuilder calls = new StringBuilder();
+        registerCancellable(plugin, calls, "a", EventPriority.LOWEST, false, false);
+        registerCancellable(plugin, calls, "b", EventPriority.LOW, true, true);
+        registerCancellable(plugin, calls, "c", EventPriority.NORMAL, true, false);
+        registerCancellable(plugin, calls, "d", EventPriority.HIGH, true, false);
+        registerCancellable(plugin, calls, "e", EventPriority.MONITOR, false, false);
+
+        TestCancellableEvent event = new TestCancellableEvent();
+        pm.callEvent(event);
+        assertThat(calls.toString(), is("abe"));
+        assertThat(event.isCancelled(), is(true));
+
+        calls.setLength(0);
+        plugin.setEnabled(false);
+        pm.callEvent(new TestCancellableEvent());
+        assertThat(calls.toString(), is(""));
+    }
+
+    private void registerCancellable(TestPlugin plugin, final StringBuilder calls, final String name, EventPriority priority, boolean ignoreCancelled, final boolean cancel) {
+        pm.registerEvent(TestCancellableEvent.class, new Listener() {}, priority, new EventExecutor() {
+            public void execute(Listener listener, Event event) {
+                calls.append(name);
+                if (cancel) {
+                    ((Cancellable) event).setCancelled(true);
+                }
+            }
+        }, plugin, ignoreCancelled);
+    }
+
+    public static class TestCancellableEvent extends Event implements Cancellable {
+        private static final HandlerList handlers = new HandlerList();
+        private boolean cancelled = false;
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void setCancelled(boolean cancel) {
+            cancelled = cancel;
+        }
+
+        @Override
+        public HandlerList getHandlers() {
+            return handlers;
+        }
+
+        public static HandlerList getHandlerList() {
+            return handlers;
+        }
+    }
+
+    public static class TestSubEvent extends TestEvent {
+        public TestSubEvent() {
+            super(false);
+        }
+    }
+
     @Test
     public void testRemovePermissionByNameLower() {
         this.testRemovePermissionByName("lower");
@@ -168,6 +339,95 @@ public class PluginManagerTest {
         assertThat("Permission \"" + name + "\" was not removed", pm.getPermission(name), is(nullValue()));
     }
 
+    @Test
+    public void testPermissionSubscriptions() {
+        final Permissible first = new PermissibleBase(null);
+        final Permissible second = new PermissibleBase(null);
+
+        pm.subscribeToPermission("Test.Subscribed", first);
+        pm.subscribeToPermission("test.subscribed", second);
+        assertThat(pm.getPermissionSubscriptions("TEST.subscribed"), containsInAnyOrder(first, second));
+
+        pm.unsubscribeFromPermission("TEST.SUBSCRIBED", first);
+        assertThat(pm.getPermissionSubscriptions("test.subscribed"), contains(second));
+
+        pm.unsubscribeFromPermission("test.subscribed", second);
+        assertThat(pm.getPermissionSubscriptions("test.subscribed"), is(empty()));
+        assertThat(((SimplePluginManager) pm).getPermissionSubscriptionCounts().containsKey("test.subscribed"), is(false));
+
+        pm.subscribeToPermission("test.subscribed", first);
+        assertThat(pm.getPermissionSubscriptions("test.subscribed"), contains(first));
+    }
+
+    @Test
+    public void testDeferredPermissionRecalculation() {
+        final SimplePluginManager manager = (SimplePluginManager) pm;
+        final AtomicInteger recalculations = new AtomicInteger();
+        final PermissibleBase permissible = new PermissibleBase(null) {
+            @Override
+            public void recalculatePermissions() {
+                recalculations.incrementAndGet();
+                super.recalculatePermissions();
+            }
+        };
+        recalculations.set(0);
+
+        manager.deferPermissionRecalculation(true);
+        try {
+            pm.addPermission(new Permission("test.deferred.a", PermissionDefault.TRUE));
+            pm.addPermission(new Permission("test.deferred.b", PermissionDefault.NOT_OP));
+            assertThat(recalculations.get(), is(0));
+            assertThat(permissible.isPermissionSet("test.deferred.a"), is(false));
+
+            manager.recalculateDirtyPermissibles();
+            assertThat(recalculations.get(), is(1));
+            assertThat(permissible.isPermissionSet("test.deferred.a"), is(true));
+            assertThat(permissible.isPermissionSet("test.deferred.b"), is(true));
+
+            manager.recalculateDirtyPermissibles();
+            assertThat(recalculations.get(), is(1));
+
+            pm.getPermission("test.deferred.b").setDefault(PermissionDefault.TRUE);
+            pm.addPermission(new Permission("test.deferred.c", PermissionDefault.NOT_OP));
+            assertThat(permissible.isPermissionSet("test.deferred.c"), is(false));
+        } finally {
+            manager.deferPermissionRecalculation(false);
+        }
+        assertThat(recalculations.get(), is(2));
+        assertThat(permissible.isPermissionSet("test.deferred.c"), is(true));
+    }
+
+    @Test
+    public void testDeferredChildrenRecalculation() {
+        final SimplePluginManager manager = (SimplePluginManager) pm;
+        final AtomicInteger recalculations = new AtomicInteger();
+        final PermissibleBase permissible = new PermissibleBase(null) {
+            @Override
+            public void recalculatePermissions() {
+                recalculations.incrementAndGet();
+                super.recalculatePermissions();
+            }
+        };
+        Permission parent = new Permission("test.deferred.parent", PermissionDefault.FALSE);
+        pm.addPermission(parent);
+        permissible.addAttachment(new TestPlugin("deferred"), "test.deferred.parent", true);
+        recalculations.set(0);
+
+        manager.deferPermissionRecalculation(true);
+        try {
+            parent.getChildren().put("test.deferred.child", true);
+            parent.recalculatePermissibles();
+            assertThat(recalculations.get(), is(0));
+            assertThat(permissible.isPermissionSet("test.deferred.child"), is(false));
+
+            manager.recalculateDirtyPermissibles();
+            assertThat(recalculations.get(), is(1));
+            assertThat(permissible.hasPermission("test.deferred.child"), is(true));
+        } finally {
+            manager.deferPermissionRecalculation(false);
+        }
+    }
+
     @After
     public void tearDown() {
         pm.clearPlugins();
@@ -8,6 +8,7 @@ import org.bukkit.Server;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.event.HandlerList;
 import org.bukkit.generator.ChunkGenerator;
 
 import com.avaje.ebean.EbeanServer;
@@ -23,6 +24,7 @@ public class TestPlugin extends PluginBase {
 
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
+        HandlerList.invalidateDispatchPlans();
     }
 
     public File getDataFolder() {
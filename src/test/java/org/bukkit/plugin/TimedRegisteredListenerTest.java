@@ -7,6 +7,7 @@ import org.bukkit.event.Event;
 import org.bukkit.event.EventException;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.TestEvent;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.player.PlayerEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
@@ -53,4 +54,40 @@ public class TimedRegisteredListenerTest {
         trl.callEvent(moveEvent);
         assertThat(trl.getEventClass(), is((Object) Event.class));
     }
+
+    @Test
+    public void testHistograms() throws EventException {
+        Listener listener = new Listener() {};
+        EventExecutor executor = new EventExecutor() {
+            public void execute(Listener listener, Event event) {}
+        };
+        TimedRegisteredListener trl = new TimedRegisteredListener(listener, executor, EventPriority.NORMAL, new TestPlugin("Test"), false);
+
+        PlayerMoveEvent moveEvent = new PlayerMoveEvent(null, null, null);
+        BlockBreakEvent breakEvent = new BlockBreakEvent(null, null);
+        trl.callEvent(moveEvent);
+        trl.callEvent(moveEvent);
+        trl.callEvent(breakEvent);
+
+        assertThat(trl.getCount(), is(3));
+        assertThat(trl.getHistograms().size(), is(2));
+        assertThat(trl.getHistogram(PlayerMoveEvent.class).getCount(), is(2L));
+        assertThat(trl.getHistogram(BlockBreakEvent.class).getCount(), is(1L));
+        assertThat(trl.getHistogram(PlayerEvent.class), is(nullValue()));
+
+        trl.reset();
+        assertThat(trl.getCount(), is(0));
+        assertThat(trl.getHistogram(PlayerMoveEvent.class).getCount(), is(0L));
+    }
+
+    @Test
+    public void testAsyncEventsTimed() throws EventException {
+        TimedRegisteredListener trl = new TimedRegisteredListener(new Listener() {}, new EventExecutor() {
+            public void execute(Listener listener, Event event) {}
+        }, EventPriority.NORMAL, new TestPlugin("Test"), false);
+
+        trl.callEvent(new TestEvent(true));
+        assertThat(trl.getCount(), is(1));
+        assertThat(trl.getHistogram(TestEvent.class).getCount(), is(1L));
+    }
 }
@@ -0,0 +1,111 @@
+package org.bukkit.plugin.java;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Method;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.Listener;
+import org.bukkit.event.TestEvent;
+import org.bukkit.plugin.EventExecutor;
+import org.junit.Test;
+
+public class EventExecutorFactoryTest {
+
+    public static class CountingListener implements Listener {
+        int calls = 0;
+        Event last = null;
+
+        public void onTest(TestEvent event) {
+            calls++;
+            last = event;
+        }
+
+        public long onTestReturning(TestEvent event) {
+            calls++;
+            return calls;
+        }
+
+        public void onTestThrowing(TestEvent event) {
+            throw new IllegalStateException("handler failure");
+        }
+    }
+
+    static class HiddenListener implements Listener {
+        int calls = 0;
+
+        public void onTest(TestEvent event) {
+            calls++;
+        }
+    }
+
+    @Test
+    public void testGeneratedExecutorCallsHandler() throws Exception {
+        CountingListener listener = new CountingListener();
+        EventExecutor executor = EventExecutorFactory.createGenerated(CountingListener.class.getMethod("onTest", TestEvent.class), TestEvent.class);
+        assertThat(executor, is(notNullValue()));
+
+        TestEvent event = new TestEvent(false);
+        executor.execute(listener, event);
+        assertThat(listener.calls, is(1));
+        assertThat(listener.last, is((Event) event));
+    }
+
+    @Test
+    public void testGeneratedExecutorSkipsOtherEvents() throws Exception {
+        CountingListener listener = new CountingListener();
+        EventExecutor executor = EventExecutorFactory.createGenerated(CountingListener.class.getMethod("onTest", TestEvent.class), TestEvent.class);
+
+        executor.execute(listener, new Event() {
+            @Override
+            public org.bukkit.event.HandlerList getHandlers() {
+                return null;
+            }
+        });
+        assertThat(listener.calls, is(0));
+    }
+
+    @Test
+    public void testGeneratedExecutorDiscardsReturnValue() throws Exception {
+        CountingListener listener = new CountingListener();
+        EventExecutor executor = EventExecutorFactory.createGenerated(CountingListener.class.getMethod("onTestReturning", TestEvent.class), TestEvent.class);
+        assertThat(executor, is(notNullValue()));
+
+        executor.execute(listener, new TestEvent(false));
+        executor.execute(listener, new TestEvent(false));
+        assertThat(listener.calls, is(2));
+    }
+
+    @Test
+    public void testGeneratedExecutorWrapsExceptions() throws Exception {
+        this.testWrapsExceptions(EventExecutorFactory.createGenerated(CountingListener.class.getMethod("onTestThrowing", TestEvent.class), TestEvent.class));
+    }
+
+    @Test
+    public void testReflectiveExecutorWrapsExceptions() throws Exception {
+        this.testWrapsExceptions(EventExecutorFactory.createReflective(CountingListener.class.getMethod("onTestThrowing", TestEvent.class), TestEvent.class));
+    }
+
+    private void testWrapsExceptions(EventExecutor executor) {
+        try {
+            executor.execute(new CountingListener(), new TestEvent(false));
+        } catch (EventException ex) {
+            assertThat(ex.getCause(), is(instanceOf(IllegalStateException.class)));
+            assertThat(ex.getCause().getMessage(), is("handler failure"));
+            return;
+        }
+        fail("No exception thrown");
+    }
+
+    @Test
+    public void testNonPublicListenerFallsBack() throws Exception {
+        Method method = HiddenListener.class.getMethod("onTest", TestEvent.class);
+        assertThat(EventExecutorFactory.createGenerated(method, TestEvent.class), is(nullValue()));
+
+        HiddenListener listener = new HiddenListener();
+        EventExecutorFactory.create(method, TestEvent.class).execute(listener, new TestEvent(false));
+        assertThat(listener.calls, is(1));
+    }
+}
@@ -0,0 +1,140 @@
+package org.bukkit.plugin.java;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.bukkit.TestServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PluginClassIndexTest {
+    private static final String SHARED = "org.junit.Assert";
+
+    private JavaPluginLoader javaLoader;
+    private File first;
+    private File second;
+
+    @Before
+    public void setUp() throws IOException {
+        javaLoader = new JavaPluginLoader(TestServer.getInstance());
+        first = TestJars.createJar("com.example.first.Api", "com.example.first.Internal", SHARED);
+        second = TestJars.createJar("com.example.second.Api", SHARED);
+    }
+
+    @After
+    public void tearDown() {
+        first.delete();
+        second.delete();
+    }
+
+    @Test
+    public void testFirstLoaderOwnsClass() throws IOException {
+        PluginClassIndex index = new PluginClassIndex();
+        PluginClassLoader firstLoader = createLoader(first);
+        PluginClassLoader secondLoader = createLoader(second);
+        index.add(firstLoader, first.toURI().toURL());
+        index.add(secondLoader, second.toURI().toURL());
+
+        assertThat(index.getOwner("com.example.first.Internal"), is(firstLoader));
+        assertThat(index.getOwner("com.example.second.Api"), is(secondLoader));
+        assertThat(index.getOwner(SHARED), is(firstLoader));
+        assertThat(index.getOwner("com.example.Unknown"), is(nullValue()));
+        assertThat(index.isIndexed(firstLoader), is(true));
+
+        index.remove(firstLoader);
+        assertThat(index.getOwner("com.example.first.Internal"), is(nullValue()));
+        assertThat(index.isIndexed(firstLoader), is(false));
+    }
+
+    @Test
+    public void testUnreadableUrlIsNotIndexed() throws IOException {
+        PluginClassIndex index = new PluginClassIndex();
+        PluginClassLoader loader = createLoader(first);
+        index.add(loader, first.toURI().toURL());
+        index.add(loader, new File(first.getParentFile(), "missing-" + first.getName()).toURI().toURL());
+
+        assertThat(index.getOwner("com.example.first.Api"), is(loader));
+        assertThat(index.isIndexed(loader), is(false));
+    }
+
+    @Test
+    public void testMissingClearedOnChange() throws IOException {
+        PluginClassIndex index = new PluginClassIndex();
+        index.addMissing("com.example.second.Api");
+        assertThat(index.isMissing("com.example.second.Api"), is(true));
+
+        index.add(createLoader(second), second.toURI().toURL());
+        assertThat(index.isMissing("com.example.second.Api"), is(false));
+    }
+
+    @Test
+    public void testLookupThroughIndex() throws IOException {
+        PluginClassLoader firstLoader = createLoader(first);
+        PluginClassLoader secondLoader = createLoader(second);
+        javaLoader.loaders.put("First", firstLoader);
+        javaLoader.loaders.put("Second", secondLoader);
+        javaLoader.classIndex.add(firstLoader, first.toURI().toURL());
+        javaLoader.classIndex.add(secondLoader, second.toURI().toURL());
+
+        Class<?> shared = javaLoader.getClassByName0(SHARED);
+        assertThat(shared, is(notNullValue()));
+        assertThat(shared.getClassLoader(), is((ClassLoader) firstLoader));
+
+        assertThat(javaLoader.getClassByName0("com.example.Unknown"), is(nullValue()));
+        assertThat(javaLoader.classIndex.isMissing("com.example.Unknown"), is(true));
+    }
+
+    @Test
+    public void testNextOwnerPromotedOnRemove() throws IOException {
+        PluginClassIndex index = new PluginClassIndex();
+        PluginClassLoader firstLoader = createLoader(first);
+        PluginClassLoader secondLoader = createLoader(second);
+        index.add(firstLoader, first.toURI().toURL());
+        index.add(secondLoader, second.toURI().toURL());
+        assertThat(index.getOwners(SHARED), contains(firstLoader, secondLoader));
+
+        index.remove(firstLoader);
+        assertThat(index.getOwner(SHARED), is(secondLoader));
+        assertThat(index.getOwners(SHARED), contains(secondLoader));
+
+        index.remove(secondLoader);
+        assertThat(index.getOwner(SHARED), is(nullValue()));
+        assertThat(index.getOwners(SHARED).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testSharedClassFoundAfterFirstOwnerDisabled() throws IOException {
+        PluginClassLoader firstLoader = createLoader(first);
+        PluginClassLoader secondLoader = createLoader(second);
+        javaLoader.loaders.put("First", firstLoader);
+        javaLoader.loaders.put("Second", secondLoader);
+        javaLoader.classIndex.add(firstLoader, first.toURI().toURL());
+        javaLoader.classIndex.add(secondLoader, second.toURI().toURL());
+
+        javaLoader.loaders.remove("First");
+        javaLoader.classIndex.remove(firstLoader);
+
+        Class<?> shared = javaLoader.getClassByName0(SHARED);
+        assertThat(shared, is(notNullValue()));
+        assertThat(shared.getClassLoader(), is((ClassLoader) secondLoader));
+        assertThat(javaLoader.classIndex.isMissing(SHARED), is(false));
+    }
+
+    @Test
+    public void testLookupSearchesUnindexedLoaders() throws IOException {
+        PluginClassLoader loader = createLoader(first);
+        javaLoader.loaders.put("First", loader);
+
+        Class<?> shared = javaLoader.getClassByName0(SHARED);
+        assertThat(shared, is(notNullValue()));
+        assertThat(shared.getClassLoader(), is((ClassLoader) loader));
+    }
+
+    private PluginClassLoader createLoader(File jar) throws IOException {
+        return TestJars.createLoader(javaLoader, jar);
+    }
+}
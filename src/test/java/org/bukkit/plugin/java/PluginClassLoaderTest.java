@@ -0,0 +1,111 @@
+package org.bukkit.plugin.java;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.bukkit.TestServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PluginClassLoaderTest {
+    private static final String[] FIRST_CLASSES = { "org.junit.Assert", "org.junit.Test" };
+    private static final String[] SECOND_CLASSES = { "org.hamcrest.Matchers", "org.hamcrest.CoreMatchers" };
+
+    private JavaPluginLoader javaLoader;
+    private File first;
+    private File second;
+
+    @Before
+    public void setUp() throws IOException {
+        javaLoader = new JavaPluginLoader(TestServer.getInstance());
+        first = TestJars.createJar(FIRST_CLASSES);
+        second = TestJars.createJar(SECOND_CLASSES);
+    }
+
+    @After
+    public void tearDown() {
+        first.delete();
+        second.delete();
+    }
+
+    @Test
+    public void testConcurrentLoading() throws Throwable {
+        // Every round starts with fresh loaders, so each class is defined
+        // again while all threads race for it
+        for (int round = 0; round < 50; round++) {
+            javaLoader = new JavaPluginLoader(TestServer.getInstance());
+            testConcurrentLoadingRound();
+        }
+    }
+
+    private void testConcurrentLoadingRound() throws Throwable {
+        final PluginClassLoader firstLoader = createLoader(first);
+        final PluginClassLoader secondLoader = createLoader(second);
+        javaLoader.loaders.put("First", firstLoader);
+        javaLoader.loaders.put("Second", secondLoader);
+        javaLoader.classIndex.add(firstLoader, first.toURI().toURL());
+        javaLoader.classIndex.add(secondLoader, second.toURI().toURL());
+
+        final String[] names = { FIRST_CLASSES[0], SECOND_CLASSES[0], FIRST_CLASSES[1], SECOND_CLASSES[1] };
+        final ConcurrentMap<String, Class<?>> seen = new ConcurrentHashMap<String, Class<?>>();
+        final Queue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[16];
+
+        for (int i = 0; i < threads.length; i++) {
+            final int offset = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < names.length * 8; j++) {
+                            String name = names[(offset + j) % names.length];
+                            PluginClassLoader loader = (offset + j) % 3 == 0 ? secondLoader : firstLoader;
+                            Class<?> clazz = j % 2 == 0 ? loader.findClass0(name, true) : javaLoader.getClassByName0(name);
+                            Class<?> previous = seen.putIfAbsent(name, clazz);
+                            if (previous != null && previous != clazz) {
+                                throw new AssertionError("Loaded " + name + " twice");
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (!failures.isEmpty()) {
+            throw failures.peek();
+        }
+        for (String name : FIRST_CLASSES) {
+            assertThat(seen.get(name).getClassLoader(), is((ClassLoader) firstLoader));
+        }
+        for (String name : SECOND_CLASSES) {
+            assertThat(seen.get(name).getClassLoader(), is((ClassLoader) secondLoader));
+        }
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testBukkitClassesAreNotLoaded() throws Exception {
+        createLoader(first).findClass0("org.bukkit.Bukkit", true);
+    }
+
+    private PluginClassLoader createLoader(File jar) throws IOException {
+        return TestJars.createLoader(javaLoader, jar);
+    }
+}
@@ -0,0 +1,62 @@
+package org.bukkit.plugin.java;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Builds temporary plugin jars and class loaders for the class loading tests.
+ */
+final class TestJars {
+    private TestJars() {}
+
+    /**
+     * Creates a temporary jar holding the given classes. Classes found on the
+     * test class path are copied into it, any other class gets an empty
+     * entry, which is enough to index it.
+     *
+     * @param classes the names of the classes
+     * @return the jar, which the caller has to delete
+     */
+    static File createJar(String... classes) throws IOException {
+        File file = File.createTempFile("bukkit-test-", ".jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+        try {
+            for (String name : classes) {
+                String entry = name.replace('.', '/') + ".class";
+                out.putNextEntry(new JarEntry(entry));
+                InputStream in = TestJars.class.getClassLoader().getResourceAsStream(entry);
+                if (in != null) {
+                    try {
+                        byte[] buffer = new byte[4096];
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    } finally {
+                        in.close();
+                    }
+                }
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Creates a plugin class loader for a jar, without a plugin.
+     *
+     * @param javaLoader the plugin loader owning the class loader
+     * @param jar the jar to load classes from
+     * @return the class loader
+     */
+    static PluginClassLoader createLoader(JavaPluginLoader javaLoader, File jar) throws IOException {
+        return new PluginClassLoader(javaLoader, new URL[] { jar.toURI().toURL() }, TestJars.class.getClassLoader(), null);
+    }
+}
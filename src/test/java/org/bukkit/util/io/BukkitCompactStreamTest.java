@@ -0,0 +1,166 @@
+package org.bukkit.util.io;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Color;
+import org.bukkit.FireworkEffect;
+import org.bukkit.FireworkEffect.Type;
+import org.bukkit.util.Vector;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class BukkitCompactStreamTest {
+    private static final List<Object> VALUES = ImmutableList.<Object>of(
+        Color.TEAL,
+        new Vector(624.72, 5154.61, 314.912),
+        FireworkEffect.builder()
+            .withColor(Color.BLACK, Color.SILVER)
+            .with(Type.BALL_LARGE)
+            .withFade(Color.WHITE)
+            .withFlicker()
+            .build(),
+        "text é",
+        Integer.MIN_VALUE,
+        Long.MAX_VALUE,
+        -1.5f,
+        (short) -3,
+        (byte) 7,
+        'c',
+        true,
+        Arrays.asList(1, "two", null)
+        );
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        assertThat(readAll(write(false)), is(VALUES));
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws IOException {
+        assertThat(readAll(write(true)), is(VALUES));
+    }
+
+    @Test
+    public void testMaps() throws IOException {
+        Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+        map.put("key", Color.RED);
+        map.put(3, Arrays.asList(new Vector(1, 2, 3)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BukkitCompactOutputStream out = new BukkitCompactOutputStream(bytes);
+        out.writeObject(map);
+        out.close();
+
+        BukkitCompactInputStream in = new BukkitCompactInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(in.readObject(), is((Object) map));
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() throws IOException {
+        List<Color> colors = ImmutableList.of(Color.WHITE, Color.TEAL, Color.PURPLE, Color.RED, Color.ORANGE);
+
+        ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+        ObjectOutputStream legacyOut = new BukkitObjectOutputStream(legacy);
+        legacyOut.writeObject(colors);
+        legacyOut.close();
+
+        ByteArrayOutputStream compact = new ByteArrayOutputStream();
+        BukkitCompactOutputStream compactOut = new BukkitCompactOutputStream(compact);
+        compactOut.writeObject(colors);
+        compactOut.close();
+
+        assertThat(compact.size() * 4, is(lessThan(legacy.size())));
+    }
+
+    @Test
+    public void testReadsLegacyStreams() throws IOException {
+        List<Object> values = ImmutableList.<Object>of(Color.RED, new Vector(1, 2, 3));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new BukkitObjectOutputStream(bytes);
+        out.writeObject(values);
+        out.close();
+
+        BukkitCompactInputStream in = new BukkitCompactInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(in.readObject(), is((Object) values));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testRejectsUnknownData() throws IOException {
+        new BukkitCompactInputStream(new ByteArrayInputStream("not a stream".getBytes()));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedStream() throws IOException {
+        byte[] data = write(false);
+        BukkitCompactInputStream in = new BukkitCompactInputStream(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 2)));
+        for (int i = 0; i <= VALUES.size(); i++) {
+            in.readObject();
+        }
+    }
+
+    @Test
+    public void testLongString() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.append(i).append('\u00e9');
+        }
+        String value = builder.toString();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BukkitCompactOutputStream out = new BukkitCompactOutputStream(bytes);
+        out.writeObject(value);
+        out.close();
+
+        BukkitCompactInputStream in = new BukkitCompactInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(in.readObject(), is((Object) value));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testCorruptStringLength() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(BukkitCompactOutputStream.MAGIC);
+        bytes.write(BukkitCompactOutputStream.VERSION);
+        bytes.write(0);
+        bytes.write(BukkitCompactOutputStream.TYPE_STRING);
+        // A length of Integer.MAX_VALUE, followed by far fewer bytes
+        bytes.write(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 });
+        bytes.write("short".getBytes());
+
+        new BukkitCompactInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    private byte[] write(boolean compress) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BukkitCompactOutputStream out = new BukkitCompactOutputStream(bytes, compress);
+        for (Object value : VALUES) {
+            out.writeObject(value);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private List<Object> readAll(byte[] data) throws IOException {
+        BukkitCompactInputStream in = new BukkitCompactInputStream(new ByteArrayInputStream(data));
+        List<Object> result = new ArrayList<Object>();
+        for (int i = 0; i < VALUES.size(); i++) {
+            result.add(in.readObject());
+        }
+        in.close();
+        return result;
+    }
+}